@@ -0,0 +1,30 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+
+/** A pose tracked by an {@link ARSession}, see {@link com.google.ar.core.Anchor}. */
+public interface ARAnchor {
+  TrackingState getTrackingState();
+
+  /** Returns the pose in world space, which changes as the session refines its map. */
+  Pose getPose();
+
+  /** Stops tracking the anchor, its tracking state becomes STOPPED. */
+  void detach();
+}
@@ -15,14 +15,14 @@ limitations under the License.
  */
 package com.github.claywilkinson.arcore.gdx;
 
+import android.util.Log;
 import android.view.Surface;
 import android.view.WindowManager;
 
 import com.badlogic.gdx.backends.android.AndroidApplicationConfiguration;
 import com.badlogic.gdx.backends.android.AndroidGraphics;
 import com.badlogic.gdx.backends.android.surfaceview.ResolutionStrategy;
-import com.google.ar.core.Frame;
-
+import com.badlogic.gdx.utils.TimeUtils;
 
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -34,10 +34,14 @@ import javax.microedition.khronos.opengles.GL10;
  * to the ARCore session.
  */
 public class ARCoreGraphics extends AndroidGraphics {
+  private static final String TAG = "ARCoreGraphics";
 
   private ARFragmentApplication application;
   private BackgroundRendererHelper mBackgroundRenderer;
-  private AtomicReference<Frame> mCurrentFrame;
+  // Draws the camera image, shared by the scenes.
+  private BackgroundRenderer mBackgroundDrawer;
+  private AtomicReference<ARFrame> mCurrentFrame;
+  private boolean mSurfaceCreated;
 
   public ARCoreGraphics(
       ARFragmentApplication arCoreApplication,
@@ -66,31 +70,63 @@ public class ARCoreGraphics extends AndroidGraphics {
 
   @Override
   public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+    // The context is preserved while paused, so this is only called again when it was lost.
+    boolean contextLost = mSurfaceCreated;
+    long start = TimeUtils.millis();
+    // This reloads the managed meshes, textures and shaders when the context was lost.
     super.onSurfaceCreated(gl, config);
+    if (contextLost) {
+      Log.i(TAG, "GL context lost, reloaded resources in " + TimeUtils.timeSinceMillis(start)
+              + " ms");
+    }
+    mSurfaceCreated = true;
     mBackgroundRenderer.createOnGlThread(application.requireContext());
     application.getSessionSupport().setCameraTextureName(mBackgroundRenderer.getTextureId());
+    // Compile the background shader now rather than in the first frame.
+    getBackgroundRenderer();
   }
 
   @Override
   public void onDrawFrame(GL10 gl) {
-    super.onDrawFrame(gl);
-    mCurrentFrame.set(null);
+    long start = FrameTracer.begin("onDrawFrame");
+    try {
+      super.onDrawFrame(gl);
+      mCurrentFrame.set(null);
+    } finally {
+      FrameTracer.end("onDrawFrame", start);
+    }
   }
 
-  public int getBackgroundTexture() {
-    return mBackgroundRenderer.getTextureId();
+  /**
+   * Returns the renderer of the camera image, creating it on first use.  It is kept while scenes
+   * are swapped and disposed with the application.  This is only used from the GL thread.
+   */
+  BackgroundRenderer getBackgroundRenderer() {
+    if (mBackgroundDrawer == null) {
+      mBackgroundDrawer = new BackgroundRenderer();
+    }
+    return mBackgroundDrawer;
+  }
+
+  /** Draws the camera image of the frame, see {@link ARCoreHost#drawBackground(ARFrame)}. */
+  void drawBackground(ARFrame frame) {
+    getBackgroundRenderer().render(frame, mBackgroundRenderer);
   }
 
-  public float[] getBackgroundVertices(Frame frame) {
-    return mBackgroundRenderer.getVertices(frame);
+  void disposeBackgroundRenderer() {
+    if (mBackgroundDrawer != null) {
+      mBackgroundDrawer.dispose();
+      mBackgroundDrawer = null;
+    }
   }
 
   /**
-   * Returns the current ARCore frame.  This is reset at the end of the render loop.
+   * Returns the current frame of the application's session.  This is reset at the end of the
+   * render loop.
    */
-  public Frame getCurrentFrame() {
+  public ARFrame getCurrentFrame() {
     if (mCurrentFrame.get() == null) {
-        mCurrentFrame.compareAndSet(null, application.getSessionSupport().update());
+        mCurrentFrame.compareAndSet(null, application.getSession().update());
     }
     return mCurrentFrame.get();
   }
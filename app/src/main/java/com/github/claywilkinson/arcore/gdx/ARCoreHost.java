@@ -0,0 +1,44 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * The application running an {@link ARCoreScene}, which is {@link com.badlogic.gdx.Gdx#app}. This
+ * is {@link ARFragmentApplication} on a device, other implementations run the scenes without one,
+ * for example to profile them.
+ */
+public interface ARCoreHost {
+  /** Returns the frame of the current render loop, null until the session is running. */
+  @Nullable
+  ARFrame getCurrentFrame();
+
+  /** Returns the AR session, null until the application is created. */
+  @Nullable
+  ARSession getSession();
+
+  /** Returns the taps on the view, which are read by the scene on the GL thread. */
+  TapQueue getTapQueue();
+
+  /** Draws the camera image of the frame as the background. */
+  void drawBackground(ARFrame frame);
+
+  /** Returns the Android view being rendered to, null if there is none. */
+  @Nullable
+  View getView();
+}
@@ -21,10 +21,12 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
 import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
 import com.badlogic.gdx.math.Matrix4;
-import com.google.ar.core.Frame;
-import com.google.ar.core.Session;
+import com.badlogic.gdx.utils.TimeUtils;
+import java.util.List;
 
 /**
  * ARCoreScene is the base class for the scene to render. Application specific scenes extend this
@@ -33,22 +35,43 @@ import com.google.ar.core.Session;
  *
  * <p>This class handles the basic boilerplate of rendering the background image, moving the camera
  * based on the ARCore frame pose, and basic batch rendering.
+ *
+ * <p>The GL context is kept while the application is paused, so the scene keeps its resources. If
+ * the context is lost anyway, libGDX reloads the meshes, textures and shaders it manages from
+ * their source data, so scenes should create their resources as managed ones, for example textures
+ * loaded from files rather than from pixmaps, and dispose them in {@link #dispose()}.
  */
 public abstract class ARCoreScene implements ApplicationListener {
+  private static final String TAG = "ARCoreScene";
 
   // The camera which is controlled by the ARCore pose.
   private PerspectiveCamera camera;
-  // Renderer for the camera image which is the background for the ARCore app.
-  private BackgroundRenderer backgroundRenderer;
   // Drawing batch.
   private ModelBatch modelBatch;
+  // Screen sizes, as fractions of the screen height, below which models use each simpler level of
+  // detail.
+  private float[] levelOfDetailThresholds = LodModelInstance.DEFAULT_THRESHOLDS;
+  private float levelOfDetailHysteresis = LodModelInstance.DEFAULT_HYSTERESIS;
+  // Time the scene was resumed, until the first ARCore frame is drawn, 0 otherwise.
+  private long resumeTime;
+  private long resumeToFirstFrameMillis = -1;
+  private final float[] cameraMatrix = new float[16];
+  // Taps hit tested per frame, the others wait for the next frames.
+  private int maxHitTestsPerFrame = 4;
+  private final TapQueue.Tap tap = new TapQueue.Tap();
+  // Set from any thread, the overlay is created and disposed on the GL thread.
+  private volatile boolean performanceHudEnabled;
+  private PerformanceHud performanceHud;
+  // Set from any thread, the timer is created and disposed on the GL thread.
+  private volatile boolean gpuTimingEnabled;
+  private GpuTimer gpuTimer;
 
   /**
    * Called to render the scene and provide the current ARCore frame.
    *
    * @param frame - The ARCore frame.
    */
-  protected abstract void render(Frame frame, ModelBatch modelBatch);
+  protected abstract void render(ARFrame frame, ModelBatch modelBatch);
 
   /**
    * Camera controlled by ARCore. This is used to determine where the user is looking.
@@ -66,21 +89,146 @@ public abstract class ARCoreScene implements ApplicationListener {
   }
 
   /**
-   * ARCore session object.
+   * Compiles the shaders used by the renderable provider, such as a model instance, ahead of the
+   * frame it is first drawn in.
+   */
+  protected void prepareShaders(RenderableProvider renderableProvider) {
+    SimpleShaderProvider.prepareShaders(modelBatch.getShaderProvider(), renderableProvider);
+  }
+
+  /**
+   * Sets when models switch to their simpler levels of detail, see {@link
+   * LodModelInstance#updateLevel}.
+   *
+   * @param hysteresis - how far past a threshold the size needs to go to change the level.
+   * @param thresholds - screen sizes below which each simpler level is used, in decreasing order.
+   */
+  protected void setLevelOfDetailThresholds(float hysteresis, float... thresholds) {
+    levelOfDetailHysteresis = hysteresis;
+    levelOfDetailThresholds = thresholds;
+  }
+
+  /**
+   * Picks the level of detail of each {@link LodModelInstance} from its size on screen, other
+   * instances are left as they are. This is called each frame before rendering the instances.
+   */
+  protected void updateLevelsOfDetail(Iterable<? extends ModelInstance> instances) {
+    LodModelInstance.updateLevels(
+        instances, camera, levelOfDetailThresholds, levelOfDetailHysteresis);
+  }
+
+  /**
+   * Called with the hit results of a tap on the screen, from {@link #processTaps(ARFrame)}.
+   *
+   * @param frame - the ARCore frame the tap was hit tested against.
+   * @param tap - the tap, only valid during the call.
+   * @param hits - the hit results, sorted by increasing distance.
+   */
+  protected void onTap(ARFrame frame, TapQueue.Tap tap, List<ARHitResult> hits) {}
+
+  /**
+   * Hit tests the taps since the last call against the frame, and calls {@link #onTap} for each
+   * one. At most {@link #setMaxHitTestsPerFrame(int)} taps are tested per call, the others are
+   * kept for the next frames so a burst of taps does not make a long frame.
+   */
+  protected void processTaps(ARFrame frame) {
+    TapQueue taps = getHost().getTapQueue();
+    for (int i = 0; i < maxHitTestsPerFrame && taps.poll(tap); i++) {
+      onTap(frame, tap, frame.hitTest(tap.x, tap.y));
+    }
+  }
+
+  /**
+   * Drops the taps since the last call, for frames where they cannot be handled, such as when the
+   * camera is not tracking.
+   */
+  protected void discardTaps() {
+    getHost().getTapQueue().clear();
+  }
+
+  /** Sets the number of taps hit tested per frame by {@link #processTaps(ARFrame)}. */
+  protected void setMaxHitTestsPerFrame(int maxHitTestsPerFrame) {
+    this.maxHitTestsPerFrame = maxHitTestsPerFrame;
+  }
+
+  /**
+   * Shows the {@link PerformanceHud} over the scene, to see the frame times, draw calls and
+   * tracking on the device without a profiler.  This can be called from any thread.
    */
-  protected Session getSession() {
-    return ((ARFragmentApplication) Gdx.app).getSessionSupport().getSession();
+  public void setPerformanceHudEnabled(boolean enabled) {
+    performanceHudEnabled = enabled;
+  }
+
+  public boolean isPerformanceHudEnabled() {
+    return performanceHudEnabled;
   }
 
   /**
-   * Gets the Android View being used for rendering.
+   * Measures the time the GPU spends drawing the camera image, the models and the overlay, with a
+   * {@link GpuTimer}. The times are shown by the overlay and recorded by the {@link FrameTracer}.
+   * This can be called from any thread.
+   */
+  public void setGpuTimingEnabled(boolean enabled) {
+    gpuTimingEnabled = enabled;
+  }
+
+  public boolean isGpuTimingEnabled() {
+    return gpuTimingEnabled;
+  }
+
+  /**
+   * Starts measuring the time the GPU spends on a pass of the scene, when GPU timing is enabled.
+   * The passes cannot overlap, and the models given to the batch are drawn in a pass of their own
+   * after {@link #render(ARFrame, ModelBatch)}, so this is for what a scene draws itself.
+   *
+   * @param name - the name of the pass, a constant.
+   */
+  protected void beginGpuPass(String name) {
+    if (gpuTimer != null) {
+      gpuTimer.begin(name);
+    }
+  }
+
+  /** Ends the pass begun by {@link #beginGpuPass(String)}. */
+  protected void endGpuPass() {
+    if (gpuTimer != null) {
+      gpuTimer.end();
+    }
+  }
+
+  /**
+   * Returns the time from the last resume, or create, to the first frame drawn with the camera
+   * image, in milliseconds. This is -1 until that frame is drawn.
+   */
+  public long getResumeToFirstFrameMillis() {
+    return resumeToFirstFrameMillis;
+  }
+
+  /**
+   * The application running the scene.
+   */
+  protected ARCoreHost getHost() {
+    return (ARCoreHost) Gdx.app;
+  }
+
+  /**
+   * The AR session, which is ARCore on a device.
+   */
+  protected ARSession getSession() {
+    return getHost().getSession();
+  }
+
+  /**
+   * Gets the Android View being used for rendering, this is null when the scene is not rendered to
+   * a view.
    */
   protected View getView() {
-    return ((ARCoreGraphics) Gdx.graphics).getView();
+    return getHost().getView();
   }
 
   @Override
   public void create() {
+    resumeTime = TimeUtils.millis();
     camera = new PerspectiveCamera(67, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
     camera.position.set(0, 1.6f, 0f);
     camera.lookAt(0, 0, 1f);
@@ -88,8 +236,6 @@ public abstract class ARCoreScene implements ApplicationListener {
     camera.far = 30f;
     camera.update();
 
-    backgroundRenderer = new BackgroundRenderer();
-
     // TODO(wilkinsonclay): make a better shader provider.
     modelBatch = new ModelBatch(createShaderProvider());
   }
@@ -99,47 +245,97 @@ public abstract class ARCoreScene implements ApplicationListener {
 
   @Override
   public void render() {
+    long start = FrameTracer.begin("ARCoreScene.render");
+    try {
+      renderFrame();
+    } finally {
+      FrameTracer.end("ARCoreScene.render", start);
+    }
+  }
 
+  private void renderFrame() {
     // Boiler plate rendering code goes here, the intent is that this sets up the scene object,
-    // Application specific rendering should be done from render(Frame).
-    ARCoreGraphics arCoreGraphics = (ARCoreGraphics) Gdx.graphics;
-    Frame frame = arCoreGraphics.getCurrentFrame();
+    // Application specific rendering should be done from render(ARFrame).
+    ARCoreHost host = getHost();
+    ARFrame frame = host.getCurrentFrame();
 
     // Frame can be null when initializing or if ARCore is not supported on this device.
     if (frame == null) {
       return;
     }
+    if (resumeTime != 0) {
+      resumeToFirstFrameMillis = TimeUtils.timeSinceMillis(resumeTime);
+      resumeTime = 0;
+      Gdx.app.log(TAG, "Resume to first frame: " + resumeToFirstFrameMillis + " ms");
+    }
+
+    if (gpuTimingEnabled) {
+      if (gpuTimer == null) {
+        gpuTimer = new GpuTimer();
+      }
+      gpuTimer.update();
+    } else if (gpuTimer != null) {
+      gpuTimer.dispose();
+      gpuTimer = null;
+    }
 
     Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_DEPTH_BUFFER_BIT);
 
-    backgroundRenderer.render(frame);
+    beginGpuPass("background");
+    host.drawBackground(frame);
+    endGpuPass();
 
     Gdx.gl.glDepthMask(true);
     Gdx.gl.glEnable(GL20.GL_DEPTH_TEST);
     Gdx.gl.glEnable(GL20.GL_CULL_FACE);
 
     // Move the camera, and then render.
-    float vm[] = new float[16];
-
-    frame.getCamera().getProjectionMatrix(vm, 0, camera.near, camera.far);
-    camera.projection.set(vm);
-    frame.getCamera().getViewMatrix(vm, 0);
-    camera.view.set(vm);
+    frame.getProjectionMatrix(cameraMatrix, 0, camera.near, camera.far);
+    camera.projection.set(cameraMatrix);
+    frame.getViewMatrix(cameraMatrix, 0);
+    camera.view.set(cameraMatrix);
     camera.combined.set(camera.projection);
     Matrix4.mul(camera.combined.val, camera.view.val);
 
     // Here is the rendering batch.
     modelBatch.begin(camera);
     render(frame, modelBatch);
+    beginGpuPass("models");
     modelBatch.end();
+    endGpuPass();
+
+    if (performanceHudEnabled) {
+      if (performanceHud == null) {
+        performanceHud = new PerformanceHud();
+      }
+      beginGpuPass("hud");
+      performanceHud.render(frame, host.getSession(), gpuTimer);
+      endGpuPass();
+    } else if (performanceHud != null) {
+      performanceHud.dispose();
+      performanceHud = null;
+    }
   }
 
   @Override
   public void pause() {}
 
   @Override
-  public void resume() {}
+  public void resume() {
+    resumeTime = TimeUtils.millis();
+    resumeToFirstFrameMillis = -1;
+  }
 
   @Override
-  public void dispose() {}
+  public void dispose() {
+    modelBatch.dispose();
+    if (performanceHud != null) {
+      performanceHud.dispose();
+      performanceHud = null;
+    }
+    if (gpuTimer != null) {
+      gpuTimer.dispose();
+      gpuTimer = null;
+    }
+  }
 }
@@ -0,0 +1,297 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.support.annotation.Nullable;
+import com.github.claywilkinson.arcore.gdx.util.ARSessionSupport;
+import com.google.ar.core.Anchor;
+import com.google.ar.core.Camera;
+import com.google.ar.core.Frame;
+import com.google.ar.core.HitResult;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.Session;
+import com.google.ar.core.Trackable;
+import com.google.ar.core.TrackingState;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The {@link ARSession} of a device, over the ARCore session of an {@link ARSessionSupport}. The
+ * ARCore trackables are wrapped once, so the wrappers are the same objects in every frame.  The
+ * wrappers of the planes that stopped or were merged are dropped, a plane wrapped again is equal to
+ * its previous wrapper.  This is only used from the GL thread.
+ */
+class ARCoreSession implements ARSession {
+  private final ARSessionSupport sessionSupport;
+  private final ARCoreFrame frame = new ARCoreFrame();
+  // The session the wrappers belong to, they are dropped when it changes.
+  private Session session;
+  private final HashMap<Plane, ARCorePlane> planes = new HashMap<>();
+  private final HashMap<Anchor, ARCoreAnchor> anchors = new HashMap<>();
+
+  ARCoreSession(ARSessionSupport sessionSupport) {
+    this.sessionSupport = sessionSupport;
+  }
+
+  @Nullable
+  @Override
+  public ARFrame update() {
+    Frame current = sessionSupport.update();
+    if (current == null) {
+      return null;
+    }
+    checkSession();
+    frame.set(current);
+    return frame;
+  }
+
+  @Override
+  public Collection<ARPlane> getAllPlanes() {
+    if (!checkSession()) {
+      return Collections.emptyList();
+    }
+    return wrapPlanes(session.getAllTrackables(Plane.class));
+  }
+
+  @Override
+  public Collection<ARAnchor> getAllAnchors() {
+    if (!checkSession()) {
+      return Collections.emptyList();
+    }
+    return wrapAnchors(session.getAllAnchors());
+  }
+
+  @Override
+  public ARAnchor createAnchor(Pose pose) {
+    if (!checkSession()) {
+      throw new IllegalStateException("The session is not created");
+    }
+    return wrap(session.createAnchor(pose));
+  }
+
+  /** Returns false if there is no session, drops the wrappers if the session changed. */
+  private boolean checkSession() {
+    Session current = sessionSupport.getSession();
+    if (current != session) {
+      session = current;
+      planes.clear();
+      anchors.clear();
+    }
+    return current != null;
+  }
+
+  private ARCorePlane wrap(Plane plane) {
+    ARCorePlane wrapper = planes.get(plane);
+    if (wrapper == null) {
+      wrapper = new ARCorePlane(plane);
+      if (!isGone(plane)) {
+        planes.put(plane, wrapper);
+      }
+    }
+    return wrapper;
+  }
+
+  /** Returns true if the plane stopped or was merged into another, it is then not updated. */
+  private static boolean isGone(Plane plane) {
+    return plane.getSubsumedBy() != null || plane.getTrackingState() == TrackingState.STOPPED;
+  }
+
+  private ARCoreAnchor wrap(Anchor anchor) {
+    ARCoreAnchor wrapper = anchors.get(anchor);
+    if (wrapper == null) {
+      wrapper = new ARCoreAnchor(anchor);
+      anchors.put(anchor, wrapper);
+    }
+    return wrapper;
+  }
+
+  private Collection<ARPlane> wrapPlanes(Collection<Plane> arPlanes) {
+    List<ARPlane> wrappers = new ArrayList<>(arPlanes.size());
+    for (Plane plane : arPlanes) {
+      wrappers.add(wrap(plane));
+    }
+    return wrappers;
+  }
+
+  private Collection<ARAnchor> wrapAnchors(Collection<Anchor> arAnchors) {
+    List<ARAnchor> wrappers = new ArrayList<>(arAnchors.size());
+    for (Anchor anchor : arAnchors) {
+      wrappers.add(wrap(anchor));
+    }
+    return wrappers;
+  }
+
+  /** The current ARCore frame, the same object is reused by every update. */
+  private class ARCoreFrame implements ARFrame {
+    private Frame frame;
+    private Camera camera;
+
+    void set(Frame frame) {
+      this.frame = frame;
+      camera = frame.getCamera();
+    }
+
+    @Override
+    public long getTimestamp() {
+      return frame.getTimestamp();
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return camera.getTrackingState();
+    }
+
+    @Override
+    public void getProjectionMatrix(float[] dest, int offset, float near, float far) {
+      camera.getProjectionMatrix(dest, offset, near, far);
+    }
+
+    @Override
+    public void getViewMatrix(float[] dest, int offset) {
+      camera.getViewMatrix(dest, offset);
+    }
+
+    @Override
+    public boolean hasDisplayGeometryChanged() {
+      return frame.hasDisplayGeometryChanged();
+    }
+
+    @Override
+    public void transformDisplayUvCoords(FloatBuffer uvCoords, FloatBuffer outUvCoords) {
+      frame.transformDisplayUvCoords(uvCoords, outUvCoords);
+    }
+
+    @Override
+    public List<ARHitResult> hitTest(float x, float y) {
+      List<HitResult> hits = frame.hitTest(x, y);
+      List<ARHitResult> results = new ArrayList<>(hits.size());
+      for (HitResult hit : hits) {
+        Trackable trackable = hit.getTrackable();
+        ARPlane plane = trackable instanceof Plane ? wrap((Plane) trackable) : null;
+        results.add(new ARHitResult(plane, hit.getHitPose(), hit.getDistance()));
+      }
+      return results;
+    }
+
+    @Override
+    public Collection<ARPlane> getUpdatedPlanes() {
+      Collection<ARPlane> updated = wrapPlanes(frame.getUpdatedTrackables(Plane.class));
+      // The planes that stopped or were merged are reported once more, then their wrappers are
+      // dropped.
+      for (ARPlane wrapper : updated) {
+        Plane plane = ((ARCorePlane) wrapper).plane;
+        if (isGone(plane)) {
+          planes.remove(plane);
+        }
+      }
+      return updated;
+    }
+
+    @Override
+    public Collection<ARAnchor> getUpdatedAnchors() {
+      return wrapAnchors(frame.getUpdatedAnchors());
+    }
+  }
+
+  private class ARCorePlane implements ARPlane {
+    private final Plane plane;
+
+    ARCorePlane(Plane plane) {
+      this.plane = plane;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof ARCorePlane && ((ARCorePlane) other).plane.equals(plane);
+    }
+
+    @Override
+    public int hashCode() {
+      return plane.hashCode();
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return plane.getTrackingState();
+    }
+
+    @Override
+    public Plane.Type getType() {
+      return plane.getType();
+    }
+
+    @Override
+    public Pose getCenterPose() {
+      return plane.getCenterPose();
+    }
+
+    @Override
+    public float getExtentX() {
+      return plane.getExtentX();
+    }
+
+    @Override
+    public float getExtentZ() {
+      return plane.getExtentZ();
+    }
+
+    @Override
+    public FloatBuffer getPolygon() {
+      return plane.getPolygon();
+    }
+
+    @Nullable
+    @Override
+    public ARPlane getSubsumedBy() {
+      Plane subsumedBy = plane.getSubsumedBy();
+      return subsumedBy != null ? wrap(subsumedBy) : null;
+    }
+
+    @Override
+    public boolean isPoseInPolygon(Pose pose) {
+      return plane.isPoseInPolygon(pose);
+    }
+  }
+
+  private class ARCoreAnchor implements ARAnchor {
+    private final Anchor anchor;
+
+    ARCoreAnchor(Anchor anchor) {
+      this.anchor = anchor;
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return anchor.getTrackingState();
+    }
+
+    @Override
+    public Pose getPose() {
+      return anchor.getPose();
+    }
+
+    @Override
+    public void detach() {
+      anchor.detach();
+      anchors.remove(anchor);
+    }
+  }
+}
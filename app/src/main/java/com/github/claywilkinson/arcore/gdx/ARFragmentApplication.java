@@ -24,7 +24,9 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.design.widget.BaseTransientBottomBar;
 import android.support.design.widget.Snackbar;
+import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -34,32 +36,58 @@ import com.badlogic.gdx.backends.android.AndroidApplicationConfiguration;
 import com.badlogic.gdx.backends.android.AndroidFragmentApplication;
 import com.badlogic.gdx.backends.android.AndroidInputFactory;
 import com.badlogic.gdx.backends.android.surfaceview.FillResolutionStrategy;
+import com.github.claywilkinson.arcore.gdx.trace.TraceRecorder;
+import com.github.claywilkinson.arcore.gdx.util.ARSessionConfig;
 import com.github.claywilkinson.arcore.gdx.util.ARSessionSupport;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Android Fragment subclass that handles initializing ARCore and the underlying graphics engine
  * used for drawing 3d and 2d models in the context of the ARCore Frame. This class is based on the
  * libgdx library for Android game development.
  */
 public class ARFragmentApplication extends AndroidFragmentApplication implements LifecycleOwner,
-        ARSessionSupport.StatusChangeListener {
+        ARSessionSupport.StatusChangeListener, ARCoreHost {
+  private static final String TAG = "ARFragmentApplication";
 
   // ARCore specific stuff
   private ARSessionSupport sessionSupport;
+  private ARCoreSession arCoreSession;
+  // The session given to the scenes, the ARCore one or a recorder of it.  Only used from the GL
+  // thread.
+  private ARSession session;
+  private TraceRecorder traceRecorder;
   private Snackbar messageSnackbar;
 
   // Implement the LifecycleOwner interface since AndroidApplication does not extend AppCompatActivity.
   // All this means is forward the events to the lifecycleRegistry object.
   private LifecycleRegistry lifecycleRegistry;
-  private ARCoreScene scene;
+  private volatile ARCoreScene scene;
+  // Forwards to the current scene, and swaps the scenes on the GL thread.
+  private final SceneHost sceneHost = new SceneHost();
   private AndroidApplicationConfiguration configuration;
+  private ARSessionConfig sessionConfig;
+  // Taps from the UI thread, hit tested by the scene on the GL thread.
+  private final TapQueue tapQueue = new TapQueue(64);
 
   public ARFragmentApplication() {
 
   }
 
+  /**
+   * Sets the scene to render.  This can be called at any time: once the application is running,
+   * the current scene is paused and disposed and the new one is created on the GL thread, while the
+   * ARCore session, the camera image and the asset cache are kept.  Tracking continues, so anchors
+   * created by the new scene are placed in the same world as the old ones.
+   */
   public void setScene(ARCoreScene scene) {
     this.scene = scene;
+    if (graphics != null) {
+      postRunnable(() -> sceneHost.setScene(scene));
+    }
   }
 
   public ARCoreScene getScene() {
@@ -74,6 +102,90 @@ public class ARFragmentApplication extends AndroidFragmentApplication implements
     this.configuration = configuration;
   }
 
+  /**
+   * Sets the configuration of the ARCore session.  This can be called before the fragment is
+   * created, to configure the session when it is created, or later to change it.
+   */
+  public void setSessionConfig(ARSessionConfig sessionConfig) {
+    this.sessionConfig = sessionConfig;
+    if (sessionSupport != null) {
+      sessionSupport.setConfig(sessionConfig);
+    }
+  }
+
+  /**
+   * Gets a copy of the configuration of the ARCore session.
+   */
+  public ARSessionConfig getSessionConfig() {
+    return sessionSupport != null ? sessionSupport.getConfig() : new ARSessionConfig(
+            sessionConfig != null ? sessionConfig : new ARSessionConfig());
+  }
+
+  /**
+   * Gets the taps on the view, which are read by the scene on the GL thread.
+   */
+  @Override
+  public TapQueue getTapQueue() {
+    return tapQueue;
+  }
+
+  @Nullable
+  @Override
+  public ARFrame getCurrentFrame() {
+    return ((ARCoreGraphics) graphics).getCurrentFrame();
+  }
+
+  /**
+   * Gets the session given to the scenes, which reads the ARCore session once it is created.  This
+   * is null until the fragment is created.
+   */
+  @Nullable
+  @Override
+  public ARSession getSession() {
+    return session;
+  }
+
+  /**
+   * Starts recording the session to a trace file, which {@link
+   * com.github.claywilkinson.arcore.gdx.trace.TracePlayer} replays without a device.  The
+   * recording starts with the next frame, and lasts until {@link #stopTraceRecording()} is called
+   * or the application is disposed.  This can be called once the fragment is created.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  public void startTraceRecording(File file) throws IOException {
+    TraceRecorder recorder = new TraceRecorder(arCoreSession, file);
+    postRunnable(() -> {
+      closeTraceRecorder();
+      traceRecorder = recorder;
+      session = recorder;
+    });
+  }
+
+  /** Stops recording the session, see {@link #startTraceRecording(File)}. */
+  public void stopTraceRecording() {
+    postRunnable(this::closeTraceRecorder);
+  }
+
+  private void closeTraceRecorder() {
+    if (traceRecorder == null) {
+      return;
+    }
+    try {
+      traceRecorder.close();
+      Log.i(TAG, "Recorded " + traceRecorder.getFrameCount() + " frames");
+    } catch (IOException e) {
+      Log.e(TAG, "Cannot close the trace", e);
+    }
+    traceRecorder = null;
+    session = arCoreSession;
+  }
+
+  @Override
+  public void drawBackground(ARFrame frame) {
+    ((ARCoreGraphics) graphics).drawBackground(frame);
+  }
+
   /**
    * Gets the ARCore session.  It can be null if the
    * permissions were not granted by the user or if the device does not support ARCore.
@@ -89,6 +201,13 @@ public class ARFragmentApplication extends AndroidFragmentApplication implements
     lifecycleRegistry = new LifecycleRegistry(this);
     lifecycleRegistry.markState(Lifecycle.State.CREATED);
     sessionSupport = new ARSessionSupport(requireActivity(), lifecycleRegistry, this);
+    arCoreSession = new ARCoreSession(sessionSupport);
+    session = arCoreSession;
+    if (sessionConfig != null) {
+      sessionSupport.setConfig(sessionConfig);
+    }
+    // The shaders compiled by the previous launches are loaded rather than compiled again.
+    ProgramBinaryCache.setDirectory(new File(requireContext().getCacheDir(), "programs"));
   }
 
   @Nullable
@@ -98,7 +217,7 @@ public class ARFragmentApplication extends AndroidFragmentApplication implements
     if (config == null) {
       config= new AndroidApplicationConfiguration();
     }
-    return  initializeForView(getScene(), config);
+    return  initializeForView(sceneHost, config);
   }
 
   @Override
@@ -173,6 +292,11 @@ public class ARFragmentApplication extends AndroidFragmentApplication implements
                             ? new FillResolutionStrategy()
                             : config.resolutionStrategy);
     input = AndroidInputFactory.newAndroidInput(this, requireContext(), graphics.getView(), config);
+    // Queue the taps as they arrive, then let libGDX handle the event as usual.
+    graphics.getView().setOnTouchListener((view, event) -> {
+      queueTap(event);
+      return input.onTouch(view, event);
+    });
     Gdx.app = this;
     Gdx.input = this.getInput();
     Gdx.audio = this.getAudio();
@@ -181,6 +305,90 @@ public class ARFragmentApplication extends AndroidFragmentApplication implements
     Gdx.net = this.getNet();
   }
 
+  /**
+   * Application listener of the fragment, which forwards to the current scene so the scene can be
+   * changed without recreating the GL context.  Only used from the GL thread.
+   */
+  private class SceneHost implements ApplicationListener {
+    private ARCoreScene current;
+    private boolean created;
+    private int width;
+    private int height;
+
+    void setScene(ARCoreScene newScene) {
+      if (newScene == current || !created) {
+        return;
+      }
+      if (current != null) {
+        current.pause();
+        current.dispose();
+      }
+      current = newScene;
+      if (current != null) {
+        current.create();
+        current.resize(width, height);
+      }
+    }
+
+    @Override
+    public void create() {
+      created = true;
+      current = scene;
+      if (current != null) {
+        current.create();
+      }
+    }
+
+    @Override
+    public void resize(int width, int height) {
+      this.width = width;
+      this.height = height;
+      if (current != null) {
+        current.resize(width, height);
+      }
+    }
+
+    @Override
+    public void render() {
+      if (current != null) {
+        current.render();
+      }
+    }
+
+    @Override
+    public void pause() {
+      if (current != null) {
+        current.pause();
+      }
+    }
+
+    @Override
+    public void resume() {
+      if (current != null) {
+        current.resume();
+      }
+    }
+
+    @Override
+    public void dispose() {
+      if (current != null) {
+        current.dispose();
+        current = null;
+      }
+      closeTraceRecorder();
+      ((ARCoreGraphics) graphics).disposeBackgroundRenderer();
+    }
+  }
+
+  private void queueTap(MotionEvent event) {
+    int action = event.getActionMasked();
+    if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN) {
+      int index = event.getActionIndex();
+      tapQueue.offer(event.getX(index), event.getY(index),
+              TimeUnit.MILLISECONDS.toNanos(event.getEventTime()));
+    }
+  }
+
   @NonNull
   @Override
   public Lifecycle getLifecycle() {
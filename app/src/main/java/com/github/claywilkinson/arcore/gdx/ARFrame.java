@@ -0,0 +1,66 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.google.ar.core.TrackingState;
+import java.nio.FloatBuffer;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A frame of an {@link ARSession}: the camera and the trackables which changed since the previous
+ * frame. This is the part of the ARCore {@link com.google.ar.core.Frame} and {@link
+ * com.google.ar.core.Camera} used by the scenes. A frame is only valid during its render loop.
+ */
+public interface ARFrame {
+  /** Returns the time of the camera image, in nanoseconds. */
+  long getTimestamp();
+
+  /** Returns the tracking state of the camera. */
+  TrackingState getTrackingState();
+
+  /** Writes the projection matrix of the camera for the clip planes, column major. */
+  void getProjectionMatrix(float[] dest, int offset, float near, float far);
+
+  /** Writes the view matrix of the camera, column major. */
+  void getViewMatrix(float[] dest, int offset);
+
+  /** Returns true if the display rotation or size changed since the previous frame. */
+  boolean hasDisplayGeometryChanged();
+
+  /**
+   * Transforms texture coordinates of the view into the coordinates of the camera image.
+   *
+   * @param uvCoords - u and v of each point, in [0, 1].
+   * @param outUvCoords - receives the transformed coordinates, it can be the same buffer.
+   */
+  void transformDisplayUvCoords(FloatBuffer uvCoords, FloatBuffer outUvCoords);
+
+  /**
+   * Intersects the ray through a point of the view with the trackables.
+   *
+   * @param x - position in the view, in pixels.
+   * @param y - position in the view, in pixels.
+   * @return the hits, sorted by increasing distance.
+   */
+  List<ARHitResult> hitTest(float x, float y);
+
+  /** Returns the planes which changed in this frame. */
+  Collection<ARPlane> getUpdatedPlanes();
+
+  /** Returns the anchors which changed in this frame. */
+  Collection<ARAnchor> getUpdatedAnchors();
+}
@@ -0,0 +1,51 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.support.annotation.Nullable;
+import com.google.ar.core.Pose;
+
+/** A hit of {@link ARFrame#hitTest(float, float)}, see {@link com.google.ar.core.HitResult}. */
+public class ARHitResult {
+  private final ARPlane plane;
+  private final Pose hitPose;
+  private final float distance;
+
+  /**
+   * @param plane - the plane hit, null if the hit is another kind of trackable.
+   * @param hitPose - the pose of the hit, its y axis is the normal of the surface.
+   * @param distance - the distance from the camera, in meters.
+   */
+  public ARHitResult(@Nullable ARPlane plane, Pose hitPose, float distance) {
+    this.plane = plane;
+    this.hitPose = hitPose;
+    this.distance = distance;
+  }
+
+  /** Returns the plane hit, null if the hit is another kind of trackable, such as a point. */
+  @Nullable
+  public ARPlane getPlane() {
+    return plane;
+  }
+
+  public Pose getHitPose() {
+    return hitPose;
+  }
+
+  public float getDistance() {
+    return distance;
+  }
+}
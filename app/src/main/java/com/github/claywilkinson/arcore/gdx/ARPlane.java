@@ -0,0 +1,51 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.support.annotation.Nullable;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import java.nio.FloatBuffer;
+
+/** A plane detected by an {@link ARSession}, see {@link Plane}. */
+public interface ARPlane {
+  TrackingState getTrackingState();
+
+  Plane.Type getType();
+
+  /** Returns the pose of the center of the plane, its y axis is the normal. */
+  Pose getCenterPose();
+
+  /** Returns the length of the bounding rectangle along the x axis of the center pose. */
+  float getExtentX();
+
+  /** Returns the length of the bounding rectangle along the z axis of the center pose. */
+  float getExtentZ();
+
+  /**
+   * Returns the boundary of the plane, as x and z of each vertex in the space of the center pose.
+   * A new buffer is returned when the polygon changes, it must not be modified.
+   */
+  FloatBuffer getPolygon();
+
+  /** Returns the plane this plane was merged into, null if it was not. */
+  @Nullable
+  ARPlane getSubsumedBy();
+
+  /** Returns true if the pose, projected on the plane, is inside the polygon. */
+  boolean isPoseInPolygon(Pose pose);
+}
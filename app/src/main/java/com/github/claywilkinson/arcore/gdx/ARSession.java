@@ -0,0 +1,50 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.support.annotation.Nullable;
+import com.google.ar.core.Pose;
+import java.util.Collection;
+
+/**
+ * The AR session the scenes read, see {@link ARCoreHost#getSession()}. On a device this is the
+ * ARCore {@link com.google.ar.core.Session}, other implementations replay recorded or scripted
+ * sessions, see {@link com.github.claywilkinson.arcore.gdx.trace.TracePlayer}.
+ *
+ * <p>The trackables are the same objects in every frame, so they can be used as map keys. The
+ * collections returned must not be modified.
+ */
+public interface ARSession {
+  /**
+   * Returns the next frame, null if there is none yet. This is called by the host once per render
+   * loop, scenes use {@link ARCoreHost#getCurrentFrame()}.
+   */
+  @Nullable
+  ARFrame update();
+
+  /** Returns all the planes detected, including the ones which stopped tracking. */
+  Collection<ARPlane> getAllPlanes();
+
+  /** Returns the anchors which were not detached. */
+  Collection<ARAnchor> getAllAnchors();
+
+  /**
+   * Creates an anchor tracking a pose in world space.
+   *
+   * @throws com.google.ar.core.exceptions.NotTrackingException if the camera is not tracking.
+   */
+  ARAnchor createAnchor(Pose pose);
+}
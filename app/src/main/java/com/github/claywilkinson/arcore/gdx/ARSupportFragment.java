@@ -22,7 +22,9 @@ import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
+import android.util.Log;
 
+import com.github.claywilkinson.arcore.gdx.util.ARAvailabilityCache;
 import com.github.claywilkinson.arcore.gdx.util.AcceptableFuture;
 import com.google.ar.core.ArCoreApk;
 
@@ -32,15 +34,24 @@ import com.google.ar.core.ArCoreApk;
  * <p/>
  * To use this fragment, add it to the activity and call {@link ARSupportFragment#getArSupported}
  * to get the result determining if ARCore is supported or not.
+ * <p/>
+ * The last definitive availability is cached, so later launches complete the result right away
+ * while ARCore is checked again in the background.
  */
 public class ARSupportFragment extends Fragment {
   public static final String TAG = "ARSupportFragment";
   private static final int RC_PERMISSIONS = 1000;
+  // Delays between availability checks while the result is transient, doubling up to the max.
+  private static final long INITIAL_POLL_DELAY_MS = 25;
+  private static final long MAX_POLL_DELAY_MS = 800;
 
   private Handler handler;
   private AcceptableFuture<Boolean> future;
   private boolean userRequestedInstall = true;
-
+  private ARAvailabilityCache availabilityCache;
+  private ArCoreApk.Availability cachedAvailability;
+  private long pollDelay;
+  private final Runnable pollAvailability = this::pollAvailability;
 
 
   public ARSupportFragment() {
@@ -66,7 +77,7 @@ public class ARSupportFragment extends Fragment {
   @Override
   public void onAttach(Context context) {
     super.onAttach(context);
-
+    availabilityCache = new ARAvailabilityCache(context);
 
   }
 
@@ -98,12 +109,49 @@ public class ARSupportFragment extends Fragment {
   }
 
   private void checkArCore() {
+    cachedAvailability = availabilityCache.get();
+    // Use the result of the last launch, the check below confirms it for the next one.  Results
+    // that need an install are not used, the check starts the install once.
+    if (!future.isDone()) {
+      if (cachedAvailability == ArCoreApk.Availability.SUPPORTED_INSTALLED) {
+        future.complete(true);
+      } else if (cachedAvailability == ArCoreApk.Availability.UNSUPPORTED_DEVICE_NOT_CAPABLE) {
+        future.complete(false);
+      }
+    }
+    handler.removeCallbacks(pollAvailability);
+    pollDelay = INITIAL_POLL_DELAY_MS;
+    pollAvailability();
+  }
+
+  private void pollAvailability() {
+    if (future.isCancelled() || getActivity() == null) {
+      return;
+    }
     ArCoreApk.Availability availability = ArCoreApk.getInstance().checkAvailability(getActivity());
-    if (availability.isTransient() && !future.isCancelled()) {
-      // re-query at 5Hz while we check compatibility.
-      handler.postDelayed(this::checkArCore, 200);
+    if (availability.isTransient()) {
+      // re-query while we check compatibility, backing off since this can take a while.
+      handler.postDelayed(pollAvailability, pollDelay);
+      pollDelay = Math.min(pollDelay * 2, MAX_POLL_DELAY_MS);
       return;
     }
+    availabilityCache.put(availability);
+    if (!future.isDone()) {
+      handleAvailability(availability);
+    } else if (availability == ArCoreApk.Availability.SUPPORTED_APK_TOO_OLD
+            || availability == ArCoreApk.Availability.SUPPORTED_NOT_INSTALLED) {
+      // The cached result was wrong, for example ARCore was uninstalled, so install it now rather
+      // than failing to create the session.
+      Log.w(TAG, "ARCore availability changed from " + cachedAvailability + " to "
+              + availability + ", requesting the install");
+      startInstallation();
+    } else if (availability != cachedAvailability) {
+      Log.w(TAG, "ARCore availability changed from " + cachedAvailability + " to "
+              + availability + ", using it on the next launch");
+    }
+  }
+
+  private void handleAvailability(ArCoreApk.Availability availability) {
     switch (availability) {
       case SUPPORTED_INSTALLED:
         //Done!
@@ -0,0 +1,335 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.LifecycleListener;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetErrorListener;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.glutils.KTXTextureData;
+import com.badlogic.gdx.utils.Disposable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of models and textures shared by the scenes of an application. Assets are reference
+ * counted: each {@link #load} needs a matching {@link #release}. Assets that are no longer
+ * referenced stay loaded so the next scene that needs them can reuse them, until the GPU memory
+ * used by the cache goes over the budget. The least recently used unreferenced assets are then
+ * unloaded.
+ *
+ * <p>GPU objects belong to the GL context, so there is one cache per libGDX application, see {@link
+ * #get()}. The cache is disposed along with the application. It is only used from the GL thread.
+ */
+public class AssetCache implements Disposable {
+  private static final String TAG = "AssetCache";
+  private static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+  // From GLES30, which is not available on the minimum API level.
+  private static final int GL_COMPRESSED_RGBA8_ETC2_EAC = 0x9278;
+  private static final int GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+  private static final int GL_ETC1_RGB8_OES = 0x8D64;
+
+  private static final Map<Application, AssetCache> caches = new HashMap<>();
+
+  private final AssetManager assetManager = new AssetManager();
+  // Entries in least recently used order.
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long budgetBytes;
+  private long usedBytes;
+  private boolean disposed;
+
+  private static class Entry {
+    final Class<?> type;
+    int references;
+    // GPU memory used by the asset, -1 until it is loaded.
+    long bytes = -1;
+    // Set when the asset couldn't be loaded, it is then not in the asset manager.
+    boolean failed;
+
+    Entry(Class<?> type) {
+      this.type = type;
+    }
+  }
+
+  /** Returns the cache for the current application, creating it if needed. */
+  public static synchronized AssetCache get() {
+    final Application app = Gdx.app;
+    AssetCache cache = caches.get(app);
+    if (cache == null) {
+      final AssetCache newCache = new AssetCache(DEFAULT_BUDGET_BYTES);
+      app.addLifecycleListener(
+          new LifecycleListener() {
+            @Override
+            public void pause() {}
+
+            @Override
+            public void resume() {}
+
+            @Override
+            public void dispose() {
+              synchronized (AssetCache.class) {
+                caches.remove(app);
+              }
+              newCache.dispose();
+            }
+          });
+      caches.put(app, newCache);
+      cache = newCache;
+    }
+    return cache;
+  }
+
+  /** @param budgetBytes - GPU memory the cache can hold before it unloads unused assets. */
+  public AssetCache(long budgetBytes) {
+    this.budgetBytes = budgetBytes;
+    assetManager.setErrorListener(new AssetErrorListener() {
+      @Override
+      public void error(AssetDescriptor asset, Throwable throwable) {
+        Gdx.app.error(TAG, "Couldn't load " + asset.fileName, throwable);
+        Entry entry = entries.get(asset.fileName);
+        if (entry == null) {
+          return;
+        }
+        if (entry.references == 0) {
+          entries.remove(asset.fileName);
+        } else {
+          entry.failed = true;
+          entry.bytes = 0;
+        }
+      }
+    });
+  }
+
+  /**
+   * The asset manager used for loading. This is exposed to set loaders, assets should be loaded
+   * through the cache.
+   */
+  public AssetManager getAssetManager() {
+    return assetManager;
+  }
+
+  /** Sets the GPU memory budget, unloading unused assets if the cache is over it. */
+  public void setBudget(long budgetBytes) {
+    this.budgetBytes = budgetBytes;
+    evict();
+  }
+
+  public long getBudget() {
+    return budgetBytes;
+  }
+
+  /** Returns the GPU memory used by the loaded assets, in bytes. */
+  public long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * Adds a reference to the asset, starting to load it if it is not already cached. The parameters
+   * are only used when the asset is loaded. An asset that fails to load is logged and never becomes
+   * loaded, loading it again tries again.
+   */
+  public <T> void load(String path, Class<T> type, AssetLoaderParameters<T> parameters) {
+    Entry entry = entries.get(path);
+    if (entry == null) {
+      entry = new Entry(type);
+      entries.put(path, entry);
+      assetManager.load(path, type, parameters);
+    } else if (entry.failed) {
+      // Try again, the asset may be there now.
+      entry.failed = false;
+      entry.bytes = -1;
+      assetManager.load(path, type, parameters);
+    }
+    entry.references++;
+  }
+
+  public <T> void load(String path, Class<T> type) {
+    load(path, type, null);
+  }
+
+  /**
+   * Removes a reference added by {@link #load}. The asset is unloaded when the cache needs room.
+   */
+  public void release(String path) {
+    if (disposed) {
+      // The application disposes the cache before its listener, which releases its assets.
+      return;
+    }
+    Entry entry = entries.get(path);
+    if (entry == null || entry.references == 0) {
+      Gdx.app.error(TAG, "Released " + path + " which is not referenced");
+      return;
+    }
+    entry.references--;
+    if (entry.references == 0 && entry.failed) {
+      entries.remove(path);
+    }
+    evict();
+  }
+
+  public <T> boolean isLoaded(String path, Class<T> type) {
+    return assetManager.isLoaded(path, type);
+  }
+
+  /** Gets a loaded asset, this marks it as recently used. */
+  public <T> T get(String path, Class<T> type) {
+    entries.get(path);
+    return assetManager.get(path, type);
+  }
+
+  /**
+   * Continues loading, spending at most the given time on the GL thread. This needs to be called
+   * each frame while assets are loading.
+   *
+   * @return true when all the assets are loaded.
+   */
+  public boolean update(int millis) {
+    long start = FrameTracer.begin("AssetCache.update");
+    boolean done = assetManager.update(millis);
+    for (Map.Entry<String, Entry> item : entries.entrySet()) {
+      Entry entry = item.getValue();
+      if (entry.bytes < 0 && assetManager.isLoaded(item.getKey(), entry.type)) {
+        entry.bytes = measure(assetManager.get(item.getKey(), entry.type));
+        usedBytes += entry.bytes;
+      }
+    }
+    evict();
+    FrameTracer.end("AssetCache.update", start);
+    return done;
+  }
+
+  /** Unloads all the assets that are not referenced, for example when memory is low. */
+  public void clearUnused() {
+    evict(0);
+  }
+
+  @Override
+  public void dispose() {
+    disposed = true;
+    assetManager.dispose();
+    entries.clear();
+    usedBytes = 0;
+  }
+
+  private void evict() {
+    evict(budgetBytes);
+  }
+
+  private void evict(long limit) {
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (usedBytes > limit && iterator.hasNext()) {
+      Map.Entry<String, Entry> item = iterator.next();
+      Entry entry = item.getValue();
+      // Assets that are referenced or still loading are kept.
+      if (entry.references == 0 && entry.bytes >= 0) {
+        assetManager.unload(item.getKey());
+        usedBytes -= entry.bytes;
+        iterator.remove();
+      }
+    }
+  }
+
+  /** Returns the GPU memory used by an asset. */
+  static long measure(Object asset) {
+    if (asset instanceof Texture) {
+      return measure((Texture) asset);
+    }
+    if (asset instanceof Model) {
+      long bytes = 0;
+      for (Mesh mesh : ((Model) asset).meshes) {
+        bytes += measure(mesh);
+      }
+      return bytes;
+    }
+    if (asset instanceof Mesh) {
+      return measure((Mesh) asset);
+    }
+    return 0;
+  }
+
+  /** Returns the size of the vertex and index buffers of the mesh. */
+  static long measure(Mesh mesh) {
+    return (long) mesh.getNumVertices() * mesh.getVertexSize() + mesh.getNumIndices() * 2L;
+  }
+
+  /** Returns the size of the texture, including the mipmap levels. */
+  static long measure(Texture texture) {
+    TextureData data = AssetPreloader.unwrap(texture.getTextureData());
+    int width = texture.getWidth();
+    int height = texture.getHeight();
+    if (data instanceof KTXTextureData) {
+      KTXTextureData ktx = (KTXTextureData) data;
+      int blockBytes = blockBytes(ktx.getGlInternalFormat());
+      if (blockBytes > 0) {
+        long bytes = 0;
+        for (int level = 0; level < ktx.getNumberOfMipMapLevels(); level++) {
+          int levelWidth = Math.max(1, width >> level);
+          int levelHeight = Math.max(1, height >> level);
+          bytes += (long) ((levelWidth + 3) / 4) * ((levelHeight + 3) / 4) * blockBytes;
+        }
+        return bytes * ktx.getNumberOfFaces();
+      }
+    }
+    // Custom data such as KTX handles its format itself, getFormat() throws, so assume 4 bytes.
+    int pixelBytes = data.getType() == TextureData.TextureDataType.Custom
+        ? 4 : pixelBytes(data.getFormat());
+    long bytes = (long) width * height * pixelBytes;
+    if (data.useMipMaps()) {
+      // The full chain of mipmaps adds a third.
+      bytes += bytes / 3;
+    }
+    return bytes;
+  }
+
+  private static int blockBytes(int glInternalFormat) {
+    switch (glInternalFormat) {
+      case GL_ETC1_RGB8_OES:
+      case GL_COMPRESSED_RGB8_ETC2:
+        return 8;
+      case GL_COMPRESSED_RGBA8_ETC2_EAC:
+        return 16;
+      default:
+        return 0;
+    }
+  }
+
+  private static int pixelBytes(Pixmap.Format format) {
+    switch (format) {
+      case Alpha:
+      case Intensity:
+        return 1;
+      case LuminanceAlpha:
+      case RGB565:
+      case RGBA4444:
+        return 2;
+      case RGB888:
+        return 3;
+      default:
+        return 4;
+    }
+  }
+}
@@ -0,0 +1,254 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.content.Context;
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.backends.android.AndroidFiles;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g3d.model.data.ModelData;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads assets on background threads before the libGDX application is running. This is used to
+ * parse models and decode textures while the activity is still checking for ARCore support and
+ * permissions, so that only the GL work is left when the scene is created.
+ *
+ * <p>The scene takes the preloaded data and hands it to its AssetManager through the loader
+ * parameters, see {@link ObjLoaderImproved.ObjLoaderParameters#modelData} and {@link
+ * #takeTextureData(String)}. Anything that is not taken is released by {@link #dispose()}.
+ */
+public class AssetPreloader {
+  private static final int THREAD_COUNT = 2;
+
+  private final Files files;
+  private final CompressedTextures.Format expectedFormat;
+  private final ExecutorService executor;
+  private final Map<String, Future<ModelData>> models = new HashMap<>();
+  private final Map<String, Future<TextureData>> textures = new HashMap<>();
+
+  public AssetPreloader(Context context) {
+    files = new AndroidFiles(context.getApplicationContext().getAssets());
+    expectedFormat = CompressedTextures.getExpectedFormat(context);
+    executor =
+        Executors.newFixedThreadPool(
+            THREAD_COUNT,
+            runnable -> {
+              Thread thread = new Thread(runnable, "AssetPreloader");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Starts parsing the OBJ model at the internal path. */
+  public synchronized void preloadModel(
+      final String path, final ObjLoaderImproved.ObjLoaderParameters parameters) {
+    if (models.containsKey(path)) {
+      return;
+    }
+    models.put(
+        path,
+        executor.submit(
+            () -> {
+              long start = FrameTracer.begin("AssetPreloader.loadModel");
+              try {
+                ModelData data =
+                    new ObjLoaderImproved().loadModelData(files.internal(path), parameters);
+                if (data == null) {
+                  throw new GdxRuntimeException("Couldn't load model " + path);
+                }
+                return data;
+              } finally {
+                FrameTracer.end("AssetPreloader.loadModel", start);
+              }
+            }));
+  }
+
+  /**
+   * Starts decoding the texture for the image at the internal path. The compressed version of the
+   * image that the device is expected to support is loaded, see {@link CompressedTextures}.
+   */
+  public synchronized void preloadTexture(String path) {
+    final String selected = CompressedTextures.select(files, expectedFormat, path);
+    if (textures.containsKey(selected)) {
+      return;
+    }
+    textures.put(
+        selected,
+        executor.submit(
+            () -> {
+              long start = FrameTracer.begin("AssetPreloader.loadTexture");
+              try {
+                // Decoding images needs the libGDX natives, the application loads them later.
+                GdxNativesLoader.load();
+                TextureData data =
+                    TextureData.Factory.loadFromFile(files.internal(selected), false);
+                if (!data.isPrepared()) {
+                  data.prepare();
+                }
+                return data;
+              } finally {
+                FrameTracer.end("AssetPreloader.loadTexture", start);
+              }
+            }));
+  }
+
+  /**
+   * Takes the model data being loaded for the path, to set on {@link
+   * ObjLoaderImproved.ObjLoaderParameters#modelData}. Returns null if the model was not preloaded.
+   */
+  public synchronized Future<ModelData> takeModelData(String path) {
+    return models.remove(path);
+  }
+
+  /**
+   * Takes the texture data being loaded for the path, to set on the texture parameters given to the
+   * AssetManager. The path is the texture actually being loaded, which is the result of {@link
+   * CompressedTextures#select(String)}. Returns null if that texture was not preloaded, for example
+   * when the device supports a different compressed format than expected.
+   */
+  public synchronized TextureData takeTextureData(String path) {
+    Future<TextureData> data = textures.remove(path);
+    return data == null ? null : new PreloadedTextureData(data);
+  }
+
+  /**
+   * Returns the data a texture was loaded from, which is the preloaded data for the textures given
+   * the data returned by {@link #takeTextureData(String)}. The texture needs to be loaded.
+   */
+  static TextureData unwrap(TextureData data) {
+    return data instanceof PreloadedTextureData ? ((PreloadedTextureData) data).getData() : data;
+  }
+
+  /**
+   * Stops loading and releases the data that was not taken. Data that was taken finishes loading
+   * for the scene using it.
+   */
+  public synchronized void dispose() {
+    executor.shutdown();
+    for (Future<TextureData> texture : textures.values()) {
+      if (!texture.isDone()) {
+        texture.cancel(true);
+        continue;
+      }
+      try {
+        TextureData data = texture.get();
+        if (data.isPrepared() && data.getType() == TextureData.TextureDataType.Pixmap) {
+          Pixmap pixmap = data.consumePixmap();
+          if (data.disposePixmap()) {
+            pixmap.dispose();
+          }
+        }
+      } catch (InterruptedException | ExecutionException e) {
+        // Nothing was loaded, so there is nothing to release.
+      }
+    }
+    for (Future<ModelData> model : models.values()) {
+      model.cancel(true);
+    }
+    textures.clear();
+    models.clear();
+  }
+
+  /**
+   * Texture data that waits for the preloaded data when it is prepared. The AssetManager prepares
+   * texture data on its loading thread, so this does not block the GL thread.
+   */
+  private static class PreloadedTextureData implements TextureData {
+    private final Future<TextureData> future;
+
+    PreloadedTextureData(Future<TextureData> future) {
+      this.future = future;
+    }
+
+    private TextureData getData() {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new GdxRuntimeException("Interrupted waiting for texture", e);
+      } catch (ExecutionException e) {
+        throw new GdxRuntimeException("Couldn't load texture", e.getCause());
+      }
+    }
+
+    @Override
+    public TextureDataType getType() {
+      return getData().getType();
+    }
+
+    @Override
+    public boolean isPrepared() {
+      return future.isDone() && getData().isPrepared();
+    }
+
+    @Override
+    public void prepare() {
+      TextureData data = getData();
+      if (!data.isPrepared()) {
+        data.prepare();
+      }
+    }
+
+    @Override
+    public Pixmap consumePixmap() {
+      return getData().consumePixmap();
+    }
+
+    @Override
+    public boolean disposePixmap() {
+      return getData().disposePixmap();
+    }
+
+    @Override
+    public void consumeCustomData(int target) {
+      getData().consumeCustomData(target);
+    }
+
+    @Override
+    public int getWidth() {
+      return getData().getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return getData().getHeight();
+    }
+
+    @Override
+    public Pixmap.Format getFormat() {
+      return getData().getFormat();
+    }
+
+    @Override
+    public boolean useMipMaps() {
+      return getData().useMipMaps();
+    }
+
+    @Override
+    public boolean isManaged() {
+      return getData().isManaged();
+    }
+  }
+}
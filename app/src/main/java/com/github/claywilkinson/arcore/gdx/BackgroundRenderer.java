@@ -16,13 +16,11 @@ limitations under the License.
 package com.github.claywilkinson.arcore.gdx;
 
 import android.opengl.GLES11Ext;
-import android.opengl.GLES20;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Mesh;
 import com.badlogic.gdx.graphics.VertexAttribute;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-import com.google.ar.core.Frame;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
@@ -64,15 +62,21 @@ class BackgroundRenderer {
 
   public BackgroundRenderer() {
 
-    shader = new ShaderProgram(vertexShaderCode, fragmentShaderCode);
+    shader = ProgramBinaryCache.createProgram(vertexShaderCode, fragmentShaderCode);
 
     mesh = new Mesh(true, 4, 0, VertexAttribute.Position(), VertexAttribute.TexCoords(0));
   }
 
-  public void render(Frame frame) {
-
+  /**
+   * Draws the camera image.
+   *
+   * @param frame - the ARCore frame.
+   * @param helper - the camera texture, and the quad it is drawn on.
+   */
+  public void render(ARFrame frame, BackgroundRendererHelper helper) {
+    long start = FrameTracer.begin("BackgroundRenderer.render");
     if (mesh.getNumVertices() == 0 || frame.hasDisplayGeometryChanged()) {
-      mesh.setVertices(((ARCoreGraphics) Gdx.graphics).getBackgroundVertices(frame));
+      mesh.setVertices(helper.getVertices(frame));
     }
 
     // Save the state of the glContext before drawing.
@@ -90,11 +94,10 @@ class BackgroundRenderer {
     saveFlags[2] = intbuf.get(0);
 
     // Disable depth, bind the texture and render it on the mesh.
-    gl.glDisable(GLES20.GL_DEPTH_TEST);
+    gl.glDisable(GL20.GL_DEPTH_TEST);
     gl.glDepthMask(false);
 
-    GLES20.glBindTexture(
-        GLES11Ext.GL_TEXTURE_EXTERNAL_OES, ((ARCoreGraphics) Gdx.graphics).getBackgroundTexture());
+    gl.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, helper.getTextureId());
     shader.begin();
     mesh.render(shader, GL20.GL_TRIANGLE_STRIP);
     shader.end();
@@ -105,5 +108,11 @@ class BackgroundRenderer {
     }
     gl.glDepthMask(saveFlags[1] == GL20.GL_TRUE);
     gl.glDepthFunc(saveFlags[2]);
+    FrameTracer.end("BackgroundRenderer.render", start);
+  }
+
+  public void dispose() {
+    shader.dispose();
+    mesh.dispose();
   }
 }
@@ -18,7 +18,6 @@ package com.github.claywilkinson.arcore.gdx;
 import android.content.Context;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
-import com.google.ar.core.Frame;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -32,32 +31,19 @@ public class BackgroundRendererHelper {
   private static final int COORDS_PER_VERTEX = 3;
   private static final int TEXCOORDS_PER_VERTEX = 2;
   private static final int FLOAT_SIZE = 4;
+  /** Number of floats returned by {@link #getVertices(ARFrame)}. */
+  static final int VERTEX_FLOATS = 4 * (COORDS_PER_VERTEX + TEXCOORDS_PER_VERTEX);
 
   private FloatBuffer quadVertices;
   private FloatBuffer quadTexCoord;
   private FloatBuffer quadTexCoordTransformed;
+  private final float[] vertices = new float[VERTEX_FLOATS];
 
   private int mTextureId = -1;
   private int mTextureTarget = GLES11Ext.GL_TEXTURE_EXTERNAL_OES;
 
-  public BackgroundRendererHelper() {}
-
-  public int getTextureId() {
-    return mTextureId;
-  }
-
-  public void createOnGlThread(Context context) {
-
-    // Generate the background texture.
-    int textures[] = new int[1];
-    GLES20.glGenTextures(1, textures, 0);
-    mTextureId = textures[0];
-    GLES20.glBindTexture(mTextureTarget, mTextureId);
-    GLES20.glTexParameteri(mTextureTarget, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-    GLES20.glTexParameteri(mTextureTarget, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-    GLES20.glTexParameteri(mTextureTarget, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-    GLES20.glTexParameteri(mTextureTarget, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
-
+  public BackgroundRendererHelper() {
+    // The quad does not need the GL context, so it can be used without one.
     int numVertices = 4;
     if (numVertices != QUAD_COORDS.length / COORDS_PER_VERTEX) {
       throw new RuntimeException("Unexpected number of vertices in BackgroundRenderer.");
@@ -82,6 +68,23 @@ public class BackgroundRendererHelper {
     quadTexCoordTransformed = bbTexCoordsTransformed.asFloatBuffer();
   }
 
+  public int getTextureId() {
+    return mTextureId;
+  }
+
+  public void createOnGlThread(Context context) {
+
+    // Generate the background texture.
+    int textures[] = new int[1];
+    GLES20.glGenTextures(1, textures, 0);
+    mTextureId = textures[0];
+    GLES20.glBindTexture(mTextureTarget, mTextureId);
+    GLES20.glTexParameteri(mTextureTarget, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+    GLES20.glTexParameteri(mTextureTarget, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+    GLES20.glTexParameteri(mTextureTarget, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+    GLES20.glTexParameteri(mTextureTarget, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+  }
+
   private static final float[] QUAD_COORDS =
       new float[] {
         -1.0f, -1.0f, 0.0f, -1.0f, +1.0f, 0.0f, +1.0f, -1.0f, 0.0f, +1.0f, +1.0f, 0.0f,
@@ -95,18 +98,31 @@ public class BackgroundRendererHelper {
         1.0f, 0.0f,
       };
 
-  float[] getVertices(Frame frame) {
+  /**
+   * Returns the position and texture coordinates of the quad, with the texture coordinates
+   * transformed for the display geometry.  The array is reused by the next call.
+   */
+  float[] getVertices(ARFrame frame) {
     if (frame != null && frame.hasDisplayGeometryChanged()) {
       frame.transformDisplayUvCoords(quadTexCoord, quadTexCoordTransformed);
     }
-    float[] ret = new float[QUAD_COORDS.length + QUAD_TEXCOORDS.length];
+    buildVertices(quadTexCoordTransformed, vertices);
+    return vertices;
+  }
+
+  /**
+   * Interleaves the quad positions with the texture coordinates.
+   *
+   * @param texCoords - u and v of each vertex of the quad.
+   * @param out - receives x, y, z, u and v of each vertex.
+   */
+  static void buildVertices(FloatBuffer texCoords, float[] out) {
     for (int i = 0; i < 4; i++) {
-      ret[(i * 5) + 0] = QUAD_COORDS[i * 3];
-      ret[(i * 5) + 1] = QUAD_COORDS[(i * 3) + 1];
-      ret[(i * 5) + 2] = QUAD_COORDS[(i * 3) + 2];
-      ret[(i * 5) + 3] = quadTexCoordTransformed.get((i * 2));
-      ret[(i * 5) + 4] = quadTexCoordTransformed.get((i * 2) + 1);
+      out[(i * 5) + 0] = QUAD_COORDS[i * 3];
+      out[(i * 5) + 1] = QUAD_COORDS[(i * 3) + 1];
+      out[(i * 5) + 2] = QUAD_COORDS[(i * 3) + 2];
+      out[(i * 5) + 3] = texCoords.get((i * 2));
+      out[(i * 5) + 4] = texCoords.get((i * 2) + 1);
     }
-    return ret;
   }
 }
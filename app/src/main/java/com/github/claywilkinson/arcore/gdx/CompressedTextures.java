@@ -0,0 +1,179 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.BufferUtils;
+import java.nio.IntBuffer;
+
+/**
+ * Selects the GPU compressed version of a texture asset. The compressed textures are generated at
+ * build time next to the source image, replacing the extension with:
+ *
+ * <ul>
+ *   <li>.etc2.ktx - ETC2 (with EAC alpha if the image has alpha), used on OpenGL ES 3 devices.
+ *   <li>.etc1.ktx - ETC1, which has no alpha. Images where only the alpha matters, like shadows,
+ *       are stored with the alpha copied into the color channels.
+ * </ul>
+ *
+ * Both include the full mipmap chain. If the device does not support either format, or the asset
+ * was not generated, the original image is used.
+ *
+ * <p>Unless they are given the format and files to use, these methods query the GL, so they need to
+ * be called on the GL thread.
+ */
+public class CompressedTextures {
+  /** The kinds of compressed texture that can be selected. */
+  public enum Format {
+    NONE(null),
+    ETC1(".etc1.ktx"),
+    ETC2(".etc2.ktx");
+
+    private final String suffix;
+
+    Format(String suffix) {
+      this.suffix = suffix;
+    }
+  }
+
+  // From GLES30, which is not available on the minimum API level.
+  private static final int GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+  private static final int GL_COMPRESSED_RGBA8_ETC2_EAC = 0x9278;
+
+  private static Format supported;
+
+  /** Returns the best compressed format supported by the device. */
+  public static synchronized Format getSupportedFormat() {
+    if (supported == null) {
+      supported = querySupportedFormat();
+    }
+    return supported;
+  }
+
+  /**
+   * Returns the format that is expected to be supported, before the GL is available. This is based
+   * on the OpenGL ES version of the device, ETC2 is part of OpenGL ES 3 and ETC1 is supported by
+   * OpenGL ES 2 devices.
+   */
+  public static Format getExpectedFormat(Context context) {
+    ActivityManager activityManager =
+        (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    if (activityManager.getDeviceConfigurationInfo().reqGlEsVersion >= 0x30000) {
+      return Format.ETC2;
+    }
+    return Format.ETC1;
+  }
+
+  /** Returns the format of the texture that {@link #select(String)} picks for the given image. */
+  public static Format getFormat(String path) {
+    return getFormat(Gdx.files, getSupportedFormat(), path);
+  }
+
+  /** Returns the format of the texture to use for the image, given the supported format. */
+  public static Format getFormat(Files files, Format supported, String path) {
+    Format format = supported;
+    if (format == Format.ETC2 && !exists(files, path, Format.ETC2)) {
+      format = Format.ETC1;
+    }
+    if (format == Format.ETC1 && !exists(files, path, Format.ETC1)) {
+      format = Format.NONE;
+    }
+    return format;
+  }
+
+  /**
+   * Returns the path of the texture to load for the given image. This is the compressed version if
+   * there is one the device can use, otherwise it is the image itself.
+   */
+  public static String select(String path) {
+    return select(Gdx.files, getSupportedFormat(), path);
+  }
+
+  /** Returns the path of the texture to load for the image, given the supported format. */
+  public static String select(Files files, Format supported, String path) {
+    Format format = getFormat(files, supported, path);
+    return format == Format.NONE ? path : compressedPath(path, format);
+  }
+
+  /**
+   * Returns the parameters for loading the texture at the given path through the asset manager.
+   * Compressed textures include their mipmaps, so they use mipmap filtering. Images are loaded as
+   * before.
+   */
+  public static TextureLoader.TextureParameter getParameters(String path) {
+    TextureLoader.TextureParameter parameters = new TextureLoader.TextureParameter();
+    if (isCompressed(path)) {
+      parameters.minFilter = Texture.TextureFilter.MipMapLinearNearest;
+      parameters.magFilter = Texture.TextureFilter.Linear;
+    }
+    return parameters;
+  }
+
+  /** Creates a texture for the given image, using the compressed version when possible. */
+  public static Texture load(String path) {
+    String selected = select(path);
+    Texture texture = new Texture(Gdx.files.internal(selected));
+    if (isCompressed(selected)) {
+      texture.setFilter(Texture.TextureFilter.MipMapLinearNearest, Texture.TextureFilter.Linear);
+    }
+    return texture;
+  }
+
+  /** Returns true if the path is one of the compressed textures. */
+  public static boolean isCompressed(String path) {
+    return path.endsWith(Format.ETC1.suffix) || path.endsWith(Format.ETC2.suffix);
+  }
+
+  private static String compressedPath(String path, Format format) {
+    int dot = path.lastIndexOf('.');
+    return (dot > path.lastIndexOf('/') ? path.substring(0, dot) : path) + format.suffix;
+  }
+
+  private static boolean exists(Files files, String path, Format format) {
+    return files.internal(compressedPath(path, format)).exists();
+  }
+
+  private static Format querySupportedFormat() {
+    IntBuffer count = BufferUtils.newIntBuffer(16);
+    Gdx.gl.glGetIntegerv(GL20.GL_NUM_COMPRESSED_TEXTURE_FORMATS, count);
+    int numFormats = count.get(0);
+    if (numFormats > 0) {
+      IntBuffer formats = BufferUtils.newIntBuffer(Math.max(numFormats, 16));
+      Gdx.gl.glGetIntegerv(GL20.GL_COMPRESSED_TEXTURE_FORMATS, formats);
+      boolean rgb = false;
+      boolean rgba = false;
+      for (int i = 0; i < numFormats; i++) {
+        int format = formats.get(i);
+        rgb |= format == GL_COMPRESSED_RGB8_ETC2;
+        rgba |= format == GL_COMPRESSED_RGBA8_ETC2_EAC;
+      }
+      if (rgb && rgba) {
+        return Format.ETC2;
+      }
+    }
+    if (Gdx.graphics.supportsExtension("GL_OES_compressed_ETC1_RGB8_texture")) {
+      return Format.ETC1;
+    }
+    Gdx.app.log("CompressedTextures", "No compressed texture support, using uncompressed images");
+    return Format.NONE;
+  }
+}
@@ -0,0 +1,264 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.os.Trace;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Records spans of the work done in each frame, to find out after the fact what a hitch overlapped
+ * with, such as loading assets or updating the planes. The spans are kept in a ring buffer of the
+ * last few thousand, and written on demand as a Chrome trace with {@link #write(File)}, which is
+ * opened by Perfetto or chrome://tracing.
+ *
+ * <p>The spans are also sections of the system trace, see {@link Trace}. Recording a span does not
+ * allocate, the names are expected to be constants:
+ *
+ * <pre>
+ *   long start = FrameTracer.begin("update");
+ *   try {
+ *     ...
+ *   } finally {
+ *     FrameTracer.end("update", start);
+ *   }
+ * </pre>
+ *
+ * Spans end in the reverse order they begin in, on the thread they begin on.
+ */
+public class FrameTracer {
+  /** The number of spans kept. */
+  public static final int CAPACITY = 8192;
+  // The threads named in the trace, more spans are recorded but their threads are not named.
+  private static final int MAX_THREADS = 16;
+  // The track of the GPU spans measured by GpuTimer, next to the threads.
+  private static final long GPU_TRACK = -1;
+  // The Android framework is not there when the sources are run on the development machine, see
+  // the benchmarks module.
+  private static final boolean SYSTEM_TRACE = hasSystemTrace();
+
+  private static volatile boolean enabled;
+
+  private static final String[] names = new String[CAPACITY];
+  private static final long[] starts = new long[CAPACITY];
+  private static final long[] durations = new long[CAPACITY];
+  private static final long[] threads = new long[CAPACITY];
+  private static final long[] threadIds = new long[MAX_THREADS];
+  private static final String[] threadNames = new String[MAX_THREADS];
+  private static int numThreads;
+  // The total number of spans recorded, the next one goes at count % CAPACITY.
+  private static long count;
+
+  private FrameTracer() {}
+
+  /**
+   * Starts or stops recording the spans. They are not recorded by default, so the spans cost a
+   * single check unless the trace is wanted.
+   */
+  public static void setEnabled(boolean enabled) {
+    FrameTracer.enabled = enabled;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Begins a span.
+   *
+   * @param name - the name of the span, a constant.
+   * @return the start time to pass to {@link #end(String, long)}.
+   */
+  public static long begin(String name) {
+    if (!enabled) {
+      return 0;
+    }
+    if (SYSTEM_TRACE) {
+      Trace.beginSection(name);
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Ends the span begun by {@link #begin(String)}.
+   *
+   * @param name - the name given to begin.
+   * @param start - the time returned by begin.
+   */
+  public static void end(String name, long start) {
+    if (start == 0) {
+      // Begun while disabled.
+      return;
+    }
+    long duration = System.nanoTime() - start;
+    if (SYSTEM_TRACE) {
+      Trace.endSection();
+    }
+    Thread thread = Thread.currentThread();
+    long threadId = thread.getId();
+    synchronized (FrameTracer.class) {
+      record(name, start, duration, threadId);
+      if (!isNamed(threadId)) {
+        nameThread(threadId, thread.getName());
+      }
+    }
+  }
+
+  /**
+   * Records a span of the GPU, on its own track, see {@link GpuTimer}.
+   *
+   * @param start - the time the pass was sent to the GPU.
+   * @param duration - the time the GPU spent on the pass.
+   */
+  static void addGpuSpan(String name, long start, long duration) {
+    if (!enabled) {
+      return;
+    }
+    synchronized (FrameTracer.class) {
+      record(name, start, duration, GPU_TRACK);
+      if (!isNamed(GPU_TRACK)) {
+        nameThread(GPU_TRACK, "GPU");
+      }
+    }
+  }
+
+  private static void record(String name, long start, long duration, long threadId) {
+    int i = (int) (count++ % CAPACITY);
+    names[i] = name;
+    starts[i] = start;
+    durations[i] = duration;
+    threads[i] = threadId;
+  }
+
+  private static boolean isNamed(long threadId) {
+    for (int i = 0; i < numThreads; i++) {
+      if (threadIds[i] == threadId) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void nameThread(long threadId, String name) {
+    if (numThreads < MAX_THREADS) {
+      threadIds[numThreads] = threadId;
+      threadNames[numThreads] = name;
+      numThreads++;
+    }
+  }
+
+  /** Removes the recorded spans. */
+  public static synchronized void clear() {
+    count = 0;
+  }
+
+  /**
+   * Writes the recorded spans to a file in the Chrome trace event format. This can be called from
+   * any thread, the spans are copied before they are written.
+   */
+  public static void write(File file) throws IOException {
+    try (Writer writer =
+        new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+      write(writer);
+    }
+  }
+
+  /** Writes the recorded spans in the Chrome trace event format. */
+  public static void write(Writer writer) throws IOException {
+    String[] spanNames;
+    long[] spanStarts;
+    long[] spanDurations;
+    long[] spanThreads;
+    long[] ids;
+    String[] idNames;
+    synchronized (FrameTracer.class) {
+      int size = (int) Math.min(count, CAPACITY);
+      int first = (int) ((count - size) % CAPACITY);
+      spanNames = new String[size];
+      spanStarts = new long[size];
+      spanDurations = new long[size];
+      spanThreads = new long[size];
+      for (int i = 0; i < size; i++) {
+        int j = (first + i) % CAPACITY;
+        spanNames[i] = names[j];
+        spanStarts[i] = starts[j];
+        spanDurations[i] = durations[j];
+        spanThreads[i] = threads[j];
+      }
+      ids = new long[numThreads];
+      idNames = new String[numThreads];
+      System.arraycopy(threadIds, 0, ids, 0, numThreads);
+      System.arraycopy(threadNames, 0, idNames, 0, numThreads);
+    }
+
+    writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    boolean first = true;
+    for (int i = 0; i < ids.length; i++) {
+      first = separate(writer, first);
+      writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + ids[i]
+          + ",\"args\":{\"name\":" + quote(idNames[i]) + "}}");
+    }
+    for (int i = 0; i < spanNames.length; i++) {
+      first = separate(writer, first);
+      // The times are in microseconds.
+      writer.write("{\"name\":" + quote(spanNames[i]) + ",\"ph\":\"X\",\"pid\":1,\"tid\":"
+          + spanThreads[i] + ",\"ts\":" + micros(spanStarts[i]) + ",\"dur\":"
+          + micros(spanDurations[i]) + "}");
+    }
+    writer.write("]}\n");
+  }
+
+  private static boolean separate(Writer writer, boolean first) throws IOException {
+    if (!first) {
+      writer.write(",\n");
+    }
+    return false;
+  }
+
+  private static String micros(long nanos) {
+    return nanos / 1000 + "." + String.format(Locale.US, "%03d", nanos % 1000);
+  }
+
+  private static String quote(String text) {
+    StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(String.format(Locale.US, "\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private static boolean hasSystemTrace() {
+    try {
+      Trace.beginSection("FrameTracer");
+      Trace.endSection();
+      return true;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+}
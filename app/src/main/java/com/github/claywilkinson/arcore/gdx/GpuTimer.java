@@ -0,0 +1,173 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.opengl.GLES30;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.glutils.GLVersion;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Measures the time the GPU spends on the passes of a frame, with the timer queries of
+ * EXT_disjoint_timer_query. The CPU only shows when the commands are sent, not how long the GPU
+ * takes to run them, so this is what shows which pass makes a frame GPU bound.
+ *
+ * <p>The results are read a few frames later, once the GPU has them, so measuring never waits for
+ * the GPU. They are recorded as spans of the GPU in the {@link FrameTracer}, at the time the pass
+ * was sent, and the last time of each pass is kept, see {@link #getPassNanos(int)}. Results that
+ * the GPU marks as disjoint, for example because its clock changed, are dropped.
+ *
+ * <p>On devices without the extension, or without OpenGL ES 3, nothing is measured. The queries
+ * are not created again if the GL context is lost, the timer stops measuring then.
+ */
+public class GpuTimer implements Disposable {
+  private static final String EXTENSION = "GL_EXT_disjoint_timer_query";
+  // From EXT_disjoint_timer_query.
+  private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+  private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+  // Queries in flight. The GPU is a few frames behind at most, so this is enough for a dozen
+  // passes per frame.
+  private static final int QUERIES = 64;
+  // The passes which have their last time kept.
+  private static final int MAX_PASSES = 16;
+
+  private final boolean supported;
+  private final int[] ids = new int[QUERIES];
+  private final String[] queryNames = new String[QUERIES];
+  private final long[] queryStarts = new long[QUERIES];
+  // The queries from head to tail are in flight, the ones before valid were sent before the last
+  // disjoint operation.
+  private long head;
+  private long tail;
+  private long valid;
+  private boolean active;
+  private final int[] result = new int[1];
+
+  private final String[] passNames = new String[MAX_PASSES];
+  private final long[] passNanos = new long[MAX_PASSES];
+  private int numPasses;
+
+  /** Creates the queries, on the GL thread. */
+  public GpuTimer() {
+    GLVersion version = Gdx.graphics.getGLVersion();
+    supported = version != null
+        && version.isVersionEqualToOrHigher(3, 0)
+        && Gdx.graphics.supportsExtension(EXTENSION);
+    if (supported) {
+      GLES30.glGenQueries(QUERIES, ids, 0);
+      // Clears the flag, which is set by whatever happened before.
+      GLES30.glGetIntegerv(GL_GPU_DISJOINT_EXT, result, 0);
+    }
+  }
+
+  /** Returns false if the device cannot measure the GPU, the other methods do nothing then. */
+  public boolean isSupported() {
+    return supported;
+  }
+
+  /**
+   * Reads the results the GPU has finished. This is called once per frame, before the first pass.
+   */
+  public void update() {
+    if (!supported) {
+      return;
+    }
+    GLES30.glGetIntegerv(GL_GPU_DISJOINT_EXT, result, 0);
+    if (result[0] != 0) {
+      // The results of the queries in flight are undefined.
+      valid = tail;
+    }
+    while (head < tail) {
+      int i = (int) (head % QUERIES);
+      GLES30.glGetQueryObjectuiv(ids[i], GLES30.GL_QUERY_RESULT_AVAILABLE, result, 0);
+      if (result[0] == 0) {
+        // The GPU finishes the queries in order.
+        break;
+      }
+      GLES30.glGetQueryObjectuiv(ids[i], GLES30.GL_QUERY_RESULT, result, 0);
+      if (head >= valid) {
+        long nanos = result[0] & 0xffffffffL;
+        FrameTracer.addGpuSpan(queryNames[i], queryStarts[i], nanos);
+        setPassNanos(queryNames[i], nanos);
+      }
+      head++;
+    }
+  }
+
+  /**
+   * Starts measuring a pass. Passes cannot overlap, this is followed by {@link #end()} before the
+   * next pass begins.
+   *
+   * @param name - the name of the pass, a constant.
+   */
+  public void begin(String name) {
+    // Skipped when the queries are all in flight.
+    if (!supported || active || tail - head == QUERIES) {
+      return;
+    }
+    int i = (int) (tail % QUERIES);
+    queryNames[i] = name;
+    queryStarts[i] = System.nanoTime();
+    GLES30.glBeginQuery(GL_TIME_ELAPSED_EXT, ids[i]);
+    active = true;
+  }
+
+  /** Ends the pass begun by {@link #begin(String)}. */
+  public void end() {
+    if (!active) {
+      return;
+    }
+    GLES30.glEndQuery(GL_TIME_ELAPSED_EXT);
+    tail++;
+    active = false;
+  }
+
+  /** Returns the number of passes measured so far. */
+  public int getPassCount() {
+    return numPasses;
+  }
+
+  public String getPassName(int pass) {
+    return passNames[pass];
+  }
+
+  /** Returns the last time the GPU spent on the pass, in nanoseconds. */
+  public long getPassNanos(int pass) {
+    return passNanos[pass];
+  }
+
+  private void setPassNanos(String name, long nanos) {
+    for (int i = 0; i < numPasses; i++) {
+      if (passNames[i].equals(name)) {
+        passNanos[i] = nanos;
+        return;
+      }
+    }
+    if (numPasses < MAX_PASSES) {
+      passNames[numPasses] = name;
+      passNanos[numPasses] = nanos;
+      numPasses++;
+    }
+  }
+
+  @Override
+  public void dispose() {
+    if (supported) {
+      end();
+      GLES30.glDeleteQueries(QUERIES, ids, 0);
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
+import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Model instance that can be drawn with simplified versions of its meshes when it is small on
+ * screen. The simplified levels are extra mesh parts of the model that are not used by any node,
+ * with the id of the full part followed by {@link #LEVEL_SEPARATOR} and the level number. The
+ * OBJ loader generates them, see {@link
+ * ObjLoaderImproved.ObjLoaderParameters#levelsOfDetail}.
+ *
+ * <p>Each instance has its own level, which is usually picked by {@link
+ * ARCoreScene#updateLevelsOfDetail(Iterable)}.
+ */
+public class LodModelInstance extends ModelInstance {
+  public static final String LEVEL_SEPARATOR = "#lod";
+  // The default screen sizes and hysteresis, see updateLevel.
+  static final float[] DEFAULT_THRESHOLDS = {0.2f, 0.08f};
+  static final float DEFAULT_HYSTERESIS = 0.15f;
+
+  // The node parts of the instance, and the mesh part of each level for each of them.
+  private final Array<NodePart> nodeParts = new Array<>();
+  private final Array<MeshPart[]> levels = new Array<>();
+  private final int levelCount;
+  private int level;
+
+  // Bounds of the model, in model space.
+  private final Vector3 center = new Vector3();
+  private final float radius;
+
+  private final Vector3 tmp = new Vector3();
+
+  public LodModelInstance(Model model) {
+    super(model);
+    int maxLevels = 1;
+    addNodeParts(nodes);
+    for (NodePart nodePart : nodeParts) {
+      MeshPart[] partLevels = getLevels(model, nodePart.meshPart);
+      levels.add(partLevels);
+      maxLevels = Math.max(maxLevels, partLevels.length);
+    }
+    levelCount = maxLevels;
+
+    BoundingBox bounds = calculateBoundingBox(new BoundingBox());
+    bounds.getCenter(center);
+    radius = bounds.getDimensions(tmp).len() / 2;
+  }
+
+  /** Returns the id of the mesh part holding a simplified level of a part. */
+  public static String getLevelId(String partId, int level) {
+    return partId + LEVEL_SEPARATOR + level;
+  }
+
+  /** Returns true if the mesh part is a simplified level of another part. */
+  public static boolean isLevel(MeshPart part) {
+    return part.id != null && part.id.contains(LEVEL_SEPARATOR);
+  }
+
+  /**
+   * Adds the simplified levels in the source model to the target model. This is needed when the
+   * target is built from the parts of the source, for example with a ModelBuilder, which only adds
+   * the parts of its nodes.
+   */
+  public static void copyLevels(Model source, Model target) {
+    for (MeshPart part : source.meshParts) {
+      if (isLevel(part)) {
+        target.meshParts.add(part);
+      }
+    }
+  }
+
+  /** Returns the number of levels, including the full detail level 0. */
+  public int getLevelCount() {
+    return levelCount;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Sets the level of detail, 0 is the full detail. Parts with fewer levels use their simplest
+   * level.
+   */
+  public void setLevel(int level) {
+    this.level = Math.max(0, Math.min(level, levelCount - 1));
+    for (int i = 0; i < nodeParts.size; i++) {
+      MeshPart[] partLevels = levels.get(i);
+      nodeParts.get(i).meshPart.set(partLevels[Math.min(this.level, partLevels.length - 1)]);
+    }
+  }
+
+  /**
+   * Returns the size of the instance on screen, as the fraction of the screen height covered by
+   * its bounding sphere. This is infinite when the camera is inside the sphere.
+   */
+  public float getScreenSize(Camera camera) {
+    tmp.set(center).mul(transform).mul(camera.view);
+    float scale =
+        Math.max(transform.getScaleX(), Math.max(transform.getScaleY(), transform.getScaleZ()));
+    float worldRadius = radius * scale;
+    // The camera looks down -z in view space.
+    float depth = -tmp.z;
+    if (depth <= worldRadius) {
+      return Float.POSITIVE_INFINITY;
+    }
+    return worldRadius * camera.projection.val[Matrix4.M11] / depth;
+  }
+
+  /**
+   * Picks the level of detail from the size of the instance on screen.
+   *
+   * @param thresholds - screen sizes below which each simpler level is used, as fractions of the
+   *     screen height in decreasing order. Level 1 is used below the first size, and so on.
+   * @param hysteresis - how far past a threshold the size needs to go to change the level, as a
+   *     fraction of the threshold. This keeps the level from flickering when the size stays close
+   *     to a threshold.
+   */
+  public void updateLevel(Camera camera, float[] thresholds, float hysteresis) {
+    float size = getScreenSize(camera);
+    int target = 0;
+    for (int i = 0; i < thresholds.length && target < levelCount - 1; i++) {
+      // Switching to the simpler level needs the size to drop below the threshold, switching back
+      // needs it to grow above it.
+      float threshold = thresholds[i] * (level > i ? 1 + hysteresis : 1 - hysteresis);
+      if (size >= threshold) {
+        break;
+      }
+      target = i + 1;
+    }
+    if (target != level) {
+      setLevel(target);
+    }
+  }
+
+  /**
+   * Picks the level of detail of each LodModelInstance with the default thresholds, for scenes
+   * that are not an {@link ARCoreScene}, see {@link ARCoreScene#updateLevelsOfDetail(Iterable)}.
+   * Other instances are left as they are.
+   */
+  public static void updateLevels(Iterable<? extends ModelInstance> instances, Camera camera) {
+    updateLevels(instances, camera, DEFAULT_THRESHOLDS, DEFAULT_HYSTERESIS);
+  }
+
+  static void updateLevels(Iterable<? extends ModelInstance> instances, Camera camera,
+      float[] thresholds, float hysteresis) {
+    for (ModelInstance instance : instances) {
+      if (instance instanceof LodModelInstance) {
+        ((LodModelInstance) instance).updateLevel(camera, thresholds, hysteresis);
+      }
+    }
+  }
+
+  private void addNodeParts(Iterable<Node> nodes) {
+    for (Node node : nodes) {
+      nodeParts.addAll(node.parts);
+      addNodeParts(node.getChildren());
+    }
+  }
+
+  /** Returns the mesh part of each level, starting with the full detail part. */
+  private static MeshPart[] getLevels(Model model, MeshPart part) {
+    Array<MeshPart> found = new Array<>();
+    found.add(new MeshPart(part));
+    if (part.id == null) {
+      return found.toArray(MeshPart.class);
+    }
+    String prefix = part.id + LEVEL_SEPARATOR;
+    for (MeshPart candidate : model.meshParts) {
+      if (candidate.id == null || !candidate.id.startsWith(prefix)) {
+        continue;
+      }
+      int level = Integer.parseInt(candidate.id.substring(prefix.length()));
+      while (found.size <= level) {
+        found.add(null);
+      }
+      found.set(level, candidate);
+    }
+    // Missing levels use the previous level.
+    for (int i = 1; i < found.size; i++) {
+      if (found.get(i) == null) {
+        found.set(i, found.get(i - 1));
+      }
+    }
+    return found.toArray(MeshPart.class);
+  }
+}
@@ -0,0 +1,291 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import java.util.Arrays;
+
+/**
+ * Optimizes indexed triangle lists for the GPU's post-transform vertex cache:
+ *
+ * <ol>
+ *   <li>{@link #weld} merges identical vertices, so they can be shared by triangles.
+ *   <li>{@link #optimizeTriangleOrder} reorders the triangles so vertices are reused while they are
+ *       still in the cache, using Tom Forsyth's "Linear-Speed Vertex Cache Optimisation".
+ *   <li>{@link #reorderVertices} renumbers the vertices in the order they are first used, so the
+ *       vertex fetches walk through memory.
+ * </ol>
+ *
+ * {@link #acmr} measures the result as the average cache miss ratio, the number of vertices
+ * transformed per triangle. It is 3 for unshared vertices and approaches 0.5 for large regular
+ * meshes.
+ */
+public class MeshOptimizer {
+  /** Size of the FIFO cache used to report the ACMR, typical for mobile GPUs. */
+  public static final int REPORT_CACHE_SIZE = 16;
+
+  // Scoring constants from the Forsyth paper, which models an LRU cache of 32 entries.
+  private static final int SCORE_CACHE_SIZE = 32;
+  private static final float CACHE_DECAY_POWER = 1.5f;
+  private static final float LAST_TRIANGLE_SCORE = 0.75f;
+  private static final float VALENCE_BOOST_SCALE = 2.0f;
+  private static final float VALENCE_BOOST_POWER = 0.5f;
+  private static final int MAX_VALENCE_SCORE = 32;
+
+  private static final float[] cacheScores = new float[SCORE_CACHE_SIZE];
+  private static final float[] valenceScores = new float[MAX_VALENCE_SCORE];
+
+  static {
+    for (int i = 0; i < SCORE_CACHE_SIZE; i++) {
+      if (i < 3) {
+        // The last triangle's vertices are scored lower so its neighbors are not always picked
+        // first, which gives long strips instead of compact patches.
+        cacheScores[i] = LAST_TRIANGLE_SCORE;
+      } else {
+        float scale = 1f / (SCORE_CACHE_SIZE - 3);
+        cacheScores[i] = (float) Math.pow(1f - (i - 3) * scale, CACHE_DECAY_POWER);
+      }
+    }
+    for (int i = 1; i < MAX_VALENCE_SCORE; i++) {
+      valenceScores[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+    }
+  }
+
+  private MeshOptimizer() {}
+
+  /**
+   * Merges identical vertices. Each vertex is described by a run of ints, such as the position,
+   * normal and uv indices of an OBJ face corner.
+   *
+   * @param keys - the runs describing each vertex, stride ints per vertex.
+   * @param count - the number of vertices in keys.
+   * @param stride - the number of ints describing a vertex.
+   * @param indices - receives the merged vertex used for each vertex in keys.
+   * @param firstVertex - receives the first vertex in keys for each merged vertex.
+   * @return the number of merged vertices.
+   */
+  public static int weld(int[] keys, int count, int stride, int[] indices, int[] firstVertex) {
+    int tableSize = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+    int mask = tableSize - 1;
+    // Merged vertex + 1 in each slot, 0 for empty slots.
+    int[] table = new int[tableSize];
+    int numVertices = 0;
+    for (int i = 0; i < count; i++) {
+      int slot = hash(keys, i * stride, stride) & mask;
+      while (true) {
+        int vertex = table[slot] - 1;
+        if (vertex < 0) {
+          table[slot] = numVertices + 1;
+          firstVertex[numVertices] = i;
+          indices[i] = numVertices++;
+          break;
+        }
+        if (equal(keys, firstVertex[vertex] * stride, i * stride, stride)) {
+          indices[i] = vertex;
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+    return numVertices;
+  }
+
+  /**
+   * Reorders the triangles of an indexed triangle list for the vertex cache.
+   *
+   * @param indices - three vertex indices per triangle.
+   * @param numVertices - the number of vertices referenced by the indices.
+   * @return the indices of the reordered triangles.
+   */
+  public static int[] optimizeTriangleOrder(int[] indices, int numVertices) {
+    final int numTriangles = indices.length / 3;
+
+    // Triangles using each vertex. The live triangles of vertex v are
+    // triangles[offsets[v] .. offsets[v] + remaining[v]).
+    int[] remaining = new int[numVertices];
+    for (int index : indices) {
+      remaining[index]++;
+    }
+    int[] offsets = new int[numVertices];
+    for (int v = 1; v < numVertices; v++) {
+      offsets[v] = offsets[v - 1] + remaining[v - 1];
+    }
+    int[] triangles = new int[indices.length];
+    int[] filled = new int[numVertices];
+    for (int i = 0; i < indices.length; i++) {
+      int v = indices[i];
+      triangles[offsets[v] + filled[v]++] = i / 3;
+    }
+
+    int[] cachePosition = new int[numVertices];
+    Arrays.fill(cachePosition, -1);
+    float[] vertexScores = new float[numVertices];
+    for (int v = 0; v < numVertices; v++) {
+      vertexScores[v] = vertexScore(-1, remaining[v]);
+    }
+    boolean[] added = new boolean[numTriangles];
+
+    int[] cache = new int[SCORE_CACHE_SIZE + 3];
+    int[] newCache = new int[SCORE_CACHE_SIZE + 3];
+    int cacheCount = 0;
+
+    int[] result = new int[numTriangles * 3];
+    int bestTriangle = -1;
+    int scanCursor = 0;
+    for (int out = 0; out < numTriangles; out++) {
+      if (bestTriangle < 0) {
+        // Nothing in the cache has triangles left, start from the next unused triangle.
+        while (added[scanCursor]) {
+          scanCursor++;
+        }
+        bestTriangle = scanCursor;
+      }
+      final int t = bestTriangle;
+      added[t] = true;
+
+      // Emit the triangle and put its vertices at the front of the cache.
+      int newCount = 0;
+      for (int k = 0; k < 3; k++) {
+        int v = indices[t * 3 + k];
+        result[out * 3 + k] = v;
+        removeTriangle(triangles, offsets[v], remaining, v, t);
+        newCache[newCount++] = v;
+      }
+      for (int i = 0; i < cacheCount; i++) {
+        int v = cache[i];
+        if (v != newCache[0] && v != newCache[1] && v != newCache[2]) {
+          newCache[newCount++] = v;
+        }
+      }
+
+      // Rescore the vertices that moved in the cache, including the ones pushed out of it.
+      for (int i = 0; i < newCount; i++) {
+        int v = newCache[i];
+        cachePosition[v] = i < SCORE_CACHE_SIZE ? i : -1;
+        vertexScores[v] = vertexScore(cachePosition[v], remaining[v]);
+      }
+
+      // The next triangle is the best one using a vertex in the cache.
+      bestTriangle = -1;
+      float bestScore = -1;
+      cacheCount = Math.min(newCount, SCORE_CACHE_SIZE);
+      for (int i = 0; i < cacheCount; i++) {
+        int v = newCache[i];
+        for (int j = offsets[v]; j < offsets[v] + remaining[v]; j++) {
+          int candidate = triangles[j];
+          float score =
+              vertexScores[indices[candidate * 3]]
+                  + vertexScores[indices[candidate * 3 + 1]]
+                  + vertexScores[indices[candidate * 3 + 2]];
+          if (score > bestScore) {
+            bestScore = score;
+            bestTriangle = candidate;
+          }
+        }
+      }
+
+      int[] swap = cache;
+      cache = newCache;
+      newCache = swap;
+    }
+    return result;
+  }
+
+  /**
+   * Renumbers the vertices in the order they are first used by the indices, which are updated.
+   *
+   * @param remap - receives the new number of each vertex, or -1 if it is not used.
+   * @return the number of vertices used.
+   */
+  public static int reorderVertices(int[] indices, int numVertices, int[] remap) {
+    Arrays.fill(remap, 0, numVertices, -1);
+    int next = 0;
+    for (int i = 0; i < indices.length; i++) {
+      int v = indices[i];
+      if (remap[v] < 0) {
+        remap[v] = next++;
+      }
+      indices[i] = remap[v];
+    }
+    return next;
+  }
+
+  /**
+   * Returns the average cache miss ratio of a triangle list, the number of vertices transformed
+   * per triangle, for a FIFO cache of the given size.
+   */
+  public static float acmr(int[] indices, int count, int cacheSize) {
+    if (count < 3) {
+      return 0;
+    }
+    int numVertices = 0;
+    for (int i = 0; i < count; i++) {
+      numVertices = Math.max(numVertices, indices[i] + 1);
+    }
+    // The number of misses when each vertex was last added to the cache. A vertex is still in the
+    // FIFO until cacheSize more vertices are added.
+    int[] added = new int[numVertices];
+    Arrays.fill(added, Integer.MIN_VALUE / 2);
+    int misses = 0;
+    for (int i = 0; i < count; i++) {
+      int v = indices[i];
+      if (misses - added[v] > cacheSize) {
+        added[v] = misses++;
+      }
+    }
+    return (float) misses / (count / 3);
+  }
+
+  private static float vertexScore(int cachePosition, int remaining) {
+    if (remaining == 0) {
+      // No triangles left, so this vertex is not needed.
+      return -1;
+    }
+    float score = cachePosition < 0 ? 0 : cacheScores[cachePosition];
+    return score + valenceScores[Math.min(remaining, MAX_VALENCE_SCORE - 1)];
+  }
+
+  private static void removeTriangle(
+      int[] triangles, int offset, int[] remaining, int vertex, int triangle) {
+    int last = offset + remaining[vertex] - 1;
+    for (int i = offset; i <= last; i++) {
+      if (triangles[i] == triangle) {
+        triangles[i] = triangles[last];
+        triangles[last] = triangle;
+        remaining[vertex]--;
+        return;
+      }
+    }
+  }
+
+  private static int hash(int[] keys, int offset, int stride) {
+    int h = 0;
+    for (int i = 0; i < stride; i++) {
+      h = h * 31 + keys[offset + i];
+    }
+    // Spread the bits, the keys are small sequential numbers.
+    h *= 0x9E3779B1;
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean equal(int[] keys, int a, int b, int stride) {
+    for (int i = 0; i < stride; i++) {
+      if (keys[a + i] != keys[b + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
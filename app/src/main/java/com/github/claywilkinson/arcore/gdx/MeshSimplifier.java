@@ -0,0 +1,276 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies indexed triangle lists by collapsing edges, using the quadric error metric of Garland
+ * and Heckbert. Each edge collapse moves a vertex onto one of its neighbors, so the simplified
+ * triangles use a subset of the original vertices and can share their vertex buffer. This is used
+ * to generate levels of detail, see {@link LodModelInstance}.
+ *
+ * <p>Vertices on the border of the mesh are never moved. Vertices are split where the normals or
+ * texture coordinates are discontinuous, so this also keeps the seams in place.
+ */
+public class MeshSimplifier {
+  // Number of doubles in a quadric, the upper half of a symmetric 4x4 matrix.
+  private static final int QUADRIC_SIZE = 10;
+
+  private MeshSimplifier() {}
+
+  /**
+   * Simplifies the triangles until there are at most targetCount indices, or until no edge can be
+   * collapsed without changing the border or flipping a triangle.
+   *
+   * @param indices - three vertex indices per triangle.
+   * @param positions - x, y and z of each vertex.
+   * @param targetCount - the number of indices to reduce the triangles to.
+   * @return the indices of the simplified triangles.
+   */
+  public static int[] simplify(int[] indices, float[] positions, int targetCount) {
+    final int numVertices = positions.length / 3;
+    int[] current = indices.clone();
+    int count = current.length;
+
+    boolean[] locked = findBorders(current, count, numVertices);
+    float[] oldNormal = new float[3];
+    float[] newNormal = new float[3];
+    double[] quadrics = new double[numVertices * QUADRIC_SIZE];
+    for (int i = 0; i < count; i += 3) {
+      addTriangleQuadric(
+          quadrics, positions, current[i], current[i + 1], current[i + 2], oldNormal);
+    }
+
+    int[] offsets = new int[numVertices + 1];
+    int[] triangles = new int[count];
+    int[] remap = new int[numVertices];
+    boolean[] touched = new boolean[numVertices];
+    long[] candidates = new long[count * 2];
+    int[] collapseFrom = new int[count * 2];
+    int[] collapseTo = new int[count * 2];
+
+    // Each pass collapses the cheapest edges whose neighborhoods do not overlap.
+    while (count > targetCount) {
+      buildAdjacency(current, count, numVertices, offsets, triangles);
+
+      int numCandidates = 0;
+      for (int i = 0; i < count; i++) {
+        int a = current[i];
+        int b = current[i - i % 3 + (i + 1) % 3];
+        for (int direction = 0; direction < 2; direction++) {
+          int from = direction == 0 ? a : b;
+          int to = direction == 0 ? b : a;
+          if (locked[from]) {
+            continue;
+          }
+          float cost = (float) Math.max(0, collapseError(quadrics, positions, from, to));
+          // Non-negative floats sort like their bits, which keeps the sort on primitives.
+          candidates[numCandidates] =
+              ((long) Float.floatToIntBits(cost) << 32) | numCandidates;
+          collapseFrom[numCandidates] = from;
+          collapseTo[numCandidates] = to;
+          numCandidates++;
+        }
+      }
+      Arrays.sort(candidates, 0, numCandidates);
+
+      for (int v = 0; v < numVertices; v++) {
+        remap[v] = v;
+      }
+      Arrays.fill(touched, false);
+      int removed = 0;
+      int collapses = 0;
+      for (int c = 0; c < numCandidates && count - removed > targetCount; c++) {
+        int candidate = (int) candidates[c];
+        int from = collapseFrom[candidate];
+        int to = collapseTo[candidate];
+        if (touched[from]
+            || touched[to]
+            || flips(current, offsets, triangles, positions, from, to, oldNormal, newNormal)) {
+          continue;
+        }
+        remap[from] = to;
+        for (int q = 0; q < QUADRIC_SIZE; q++) {
+          quadrics[to * QUADRIC_SIZE + q] += quadrics[from * QUADRIC_SIZE + q];
+        }
+        // The triangles around the vertex change, so its neighbors are left for the next pass.
+        for (int j = offsets[from]; j < offsets[from + 1]; j++) {
+          int t = triangles[j] * 3;
+          boolean degenerate = false;
+          for (int k = 0; k < 3; k++) {
+            touched[current[t + k]] = true;
+            degenerate |= current[t + k] == to;
+          }
+          if (degenerate) {
+            removed += 3;
+          }
+        }
+        touched[to] = true;
+        collapses++;
+      }
+      if (collapses == 0) {
+        break;
+      }
+
+      int newCount = 0;
+      for (int i = 0; i < count; i += 3) {
+        int v0 = remap[current[i]];
+        int v1 = remap[current[i + 1]];
+        int v2 = remap[current[i + 2]];
+        if (v0 != v1 && v1 != v2 && v2 != v0) {
+          current[newCount++] = v0;
+          current[newCount++] = v1;
+          current[newCount++] = v2;
+        }
+      }
+      count = newCount;
+    }
+    return Arrays.copyOf(current, count);
+  }
+
+  /** Returns the vertices on edges that are not shared by exactly two triangles. */
+  private static boolean[] findBorders(int[] indices, int count, int numVertices) {
+    long[] edges = new long[count];
+    for (int i = 0; i < count; i++) {
+      int a = indices[i];
+      int b = indices[i - i % 3 + (i + 1) % 3];
+      edges[i] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+    Arrays.sort(edges);
+    boolean[] locked = new boolean[numVertices];
+    int start = 0;
+    for (int i = 1; i <= count; i++) {
+      if (i == count || edges[i] != edges[start]) {
+        if (i - start != 2) {
+          locked[(int) (edges[start] >>> 32)] = true;
+          locked[(int) edges[start]] = true;
+        }
+        start = i;
+      }
+    }
+    return locked;
+  }
+
+  /** Lists the triangles of each vertex v in triangles[offsets[v] .. offsets[v + 1]). */
+  private static void buildAdjacency(
+      int[] indices, int count, int numVertices, int[] offsets, int[] triangles) {
+    Arrays.fill(offsets, 0);
+    for (int i = 0; i < count; i++) {
+      offsets[indices[i]]++;
+    }
+    for (int v = 1; v < numVertices; v++) {
+      offsets[v] += offsets[v - 1];
+    }
+    offsets[numVertices] = count;
+    for (int i = 0; i < count; i++) {
+      // Fill each range from its end, which leaves the offsets pointing at the starts.
+      triangles[--offsets[indices[i]]] = i / 3;
+    }
+  }
+
+  /** Returns true if moving the vertex from onto to flips any of its remaining triangles. */
+  private static boolean flips(
+      int[] indices,
+      int[] offsets,
+      int[] triangles,
+      float[] positions,
+      int from,
+      int to,
+      float[] oldNormal,
+      float[] newNormal) {
+    for (int j = offsets[from]; j < offsets[from + 1]; j++) {
+      int t = triangles[j] * 3;
+      int v0 = indices[t];
+      int v1 = indices[t + 1];
+      int v2 = indices[t + 2];
+      if (v0 == to || v1 == to || v2 == to) {
+        // This triangle is removed by the collapse.
+        continue;
+      }
+      normal(positions, v0, v1, v2, oldNormal);
+      normal(
+          positions,
+          v0 == from ? to : v0,
+          v1 == from ? to : v1,
+          v2 == from ? to : v2,
+          newNormal);
+      float dot =
+          oldNormal[0] * newNormal[0] + oldNormal[1] * newNormal[1] + oldNormal[2] * newNormal[2];
+      if (dot <= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Computes the cross product of the edges of a triangle, its normal scaled by twice its area. */
+  private static void normal(float[] positions, int v0, int v1, int v2, float[] out) {
+    float ax = positions[v1 * 3] - positions[v0 * 3];
+    float ay = positions[v1 * 3 + 1] - positions[v0 * 3 + 1];
+    float az = positions[v1 * 3 + 2] - positions[v0 * 3 + 2];
+    float bx = positions[v2 * 3] - positions[v0 * 3];
+    float by = positions[v2 * 3 + 1] - positions[v0 * 3 + 1];
+    float bz = positions[v2 * 3 + 2] - positions[v0 * 3 + 2];
+    out[0] = ay * bz - az * by;
+    out[1] = az * bx - ax * bz;
+    out[2] = ax * by - ay * bx;
+  }
+
+  /** Adds the squared distance to the plane of the triangle, weighted by its area. */
+  private static void addTriangleQuadric(
+      double[] quadrics, float[] positions, int v0, int v1, int v2, float[] normal) {
+    normal(positions, v0, v1, v2, normal);
+    double length =
+        Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2]);
+    if (length == 0) {
+      return;
+    }
+    double a = normal[0] / length;
+    double b = normal[1] / length;
+    double c = normal[2] / length;
+    double d = -(a * positions[v0 * 3] + b * positions[v0 * 3 + 1] + c * positions[v0 * 3 + 2]);
+    double weight = length * 0.5;
+    double[] plane = {a * a, a * b, a * c, a * d, b * b, b * c, b * d, c * c, c * d, d * d};
+    for (int q = 0; q < QUADRIC_SIZE; q++) {
+      quadrics[v0 * QUADRIC_SIZE + q] += plane[q] * weight;
+      quadrics[v1 * QUADRIC_SIZE + q] += plane[q] * weight;
+      quadrics[v2 * QUADRIC_SIZE + q] += plane[q] * weight;
+    }
+  }
+
+  /** Returns the error of moving the vertex from onto to, with the combined quadric. */
+  private static double collapseError(double[] quadrics, float[] positions, int from, int to) {
+    double x = positions[to * 3];
+    double y = positions[to * 3 + 1];
+    double z = positions[to * 3 + 2];
+    return quadricError(quadrics, from, x, y, z) + quadricError(quadrics, to, x, y, z);
+  }
+
+  private static double quadricError(double[] quadrics, int vertex, double x, double y, double z) {
+    int q = vertex * QUADRIC_SIZE;
+    return quadrics[q] * x * x
+        + 2 * quadrics[q + 1] * x * y
+        + 2 * quadrics[q + 2] * x * z
+        + 2 * quadrics[q + 3] * x
+        + quadrics[q + 4] * y * y
+        + 2 * quadrics[q + 5] * y * z
+        + 2 * quadrics[q + 6] * y
+        + quadrics[q + 7] * z * z
+        + 2 * quadrics[q + 8] * z
+        + quadrics[q + 9];
+  }
+}
@@ -0,0 +1,152 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import java.nio.charset.Charset;
+
+/**
+ * Parses a run of lines from a Wavefront OBJ file into primitive buffers. The parser does not know
+ * about the lines before it, so it does not apply group or material statements, it just records
+ * them in order along with the faces. {@link ObjLoaderImproved} merges the chunks in file order,
+ * resolving the relative (negative) indices and replaying the statements to build the groups.
+ *
+ * <p>This allows a large file to be split at line boundaries and parsed on several threads.
+ */
+class ObjChunkParser {
+  // Layout of the entries in triangles.  The low bits are the number of face indices used by the
+  // triangle, the high bits flag the presence of normals and uvs.
+  static final int TRIANGLE_SIZE_MASK = 0x0f;
+  static final int TRIANGLE_NORMALS = 0x10;
+  static final int TRIANGLE_UVS = 0x20;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  final FloatArray verts = new FloatArray(300);
+  final FloatArray norms = new FloatArray(300);
+  final FloatArray uvs = new FloatArray(200);
+
+  // Face indices, 3 corners per triangle, each corner is a vertex index optionally followed by a
+  // normal and uv index.
+  final IntArray faces = new IntArray(600);
+  // Positions in faces holding indices relative to the start of this chunk.  These need to be
+  // offset by the number of elements in the preceding chunks.
+  final IntArray relativeVerts = new IntArray(false, 16);
+  final IntArray relativeNorms = new IntArray(false, 16);
+  final IntArray relativeUvs = new IntArray(false, 16);
+  // One entry per triangle, see TRIANGLE_SIZE_MASK.
+  final ByteArray triangles = new ByteArray(200);
+
+  // Group, object and material statements in file order, and the number of triangles parsed
+  // before each one.
+  final Array<String[]> statements = new Array<String[]>();
+  final IntArray statementTriangles = new IntArray();
+
+  private final boolean flipV;
+
+  ObjChunkParser(boolean flipV) {
+    this.flipV = flipV;
+  }
+
+  /** Parses the lines in data between start (inclusive) and end (exclusive). */
+  void parse(byte[] data, int start, int end) {
+    int lineStart = start;
+    for (int i = start; i < end; i++) {
+      if (data[i] == '\n') {
+        parseLine(new String(data, lineStart, i - lineStart, UTF8));
+        lineStart = i + 1;
+      }
+    }
+    if (lineStart < end) {
+      parseLine(new String(data, lineStart, end - lineStart, UTF8));
+    }
+  }
+
+  void parseLine(String line) {
+    String[] tokens = line.split("\\s+");
+    char firstChar;
+
+    if (tokens.length < 1 || tokens[0].length() == 0) {
+      return;
+    } else if ((firstChar = tokens[0].toLowerCase().charAt(0)) == '#') {
+      return;
+    } else if (firstChar == 'v') {
+      if (tokens[0].length() == 1) {
+        verts.add(Float.parseFloat(tokens[1]));
+        verts.add(Float.parseFloat(tokens[2]));
+        verts.add(Float.parseFloat(tokens[3]));
+      } else if (tokens[0].charAt(1) == 'n') {
+        norms.add(Float.parseFloat(tokens[1]));
+        norms.add(Float.parseFloat(tokens[2]));
+        norms.add(Float.parseFloat(tokens[3]));
+      } else if (tokens[0].charAt(1) == 't') {
+        uvs.add(Float.parseFloat(tokens[1]));
+        uvs.add((flipV ? 1 - Float.parseFloat(tokens[2]) : Float.parseFloat(tokens[2])));
+      }
+    } else if (firstChar == 'f') {
+      // Polygons are triangulated as a fan around the first corner.
+      for (int i = 1; i < tokens.length - 2; i--) {
+        int size = faces.size;
+        int layout = addCorner(tokens[1]);
+        addCorner(tokens[++i]);
+        addCorner(tokens[++i]);
+        triangles.add((byte) ((faces.size - size) | layout));
+      }
+    } else if (firstChar == 'o' || firstChar == 'g') {
+      addStatement(tokens);
+    } else if (tokens[0].equals("mtllib") || tokens[0].equals("usemtl")) {
+      addStatement(tokens);
+    }
+  }
+
+  private void addStatement(String[] tokens) {
+    statements.add(tokens);
+    statementTriangles.add(triangles.size);
+  }
+
+  /** Adds the indices of one face corner, returning the TRIANGLE_ flags for it. */
+  private int addCorner(String corner) {
+    String[] parts = corner.split("/");
+    int layout = 0;
+    addIndex(parts[0], verts.size / 3, relativeVerts);
+    if (parts.length > 2) {
+      layout |= TRIANGLE_NORMALS;
+      addIndex(parts[2], norms.size / 3, relativeNorms);
+    }
+    if (parts.length > 1 && parts[1].length() > 0) {
+      layout |= TRIANGLE_UVS;
+      addIndex(parts[1], uvs.size / 2, relativeUvs);
+    }
+    return layout;
+  }
+
+  private void addIndex(String index, int count, IntArray relative) {
+    if (index == null || index.length() == 0) {
+      faces.add(0);
+      return;
+    }
+    final int idx = Integer.parseInt(index);
+    if (idx < 0) {
+      relative.add(faces.size);
+      faces.add(count + idx);
+    } else {
+      faces.add(idx - 1);
+    }
+  }
+}
@@ -36,15 +36,20 @@ https://github.com/libgdx/libgdx/blob/master/gdx/src/com/badlogic/gdx/graphics/g
 package com.github.claywilkinson.arcore.gdx;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.assets.loaders.FileHandleResolver;
 import com.badlogic.gdx.assets.loaders.ModelLoader;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
 import com.badlogic.gdx.graphics.VertexAttributes.Usage;
 import com.badlogic.gdx.graphics.g3d.Material;
 import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
 import com.badlogic.gdx.graphics.g3d.model.data.ModelData;
 import com.badlogic.gdx.graphics.g3d.model.data.ModelMaterial;
 import com.badlogic.gdx.graphics.g3d.model.data.ModelMesh;
@@ -52,14 +57,32 @@ import com.badlogic.gdx.graphics.g3d.model.data.ModelMeshPart;
 import com.badlogic.gdx.graphics.g3d.model.data.ModelNode;
 import com.badlogic.gdx.graphics.g3d.model.data.ModelNodePart;
 import com.badlogic.gdx.graphics.g3d.model.data.ModelTexture;
+import com.badlogic.gdx.graphics.g3d.utils.TextureProvider;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+import com.github.claywilkinson.arcore.gdx.util.DirectBufferPool;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * * * NOTE: This is a modified file from the original ObjLoader. @claywilkinson added a code to
@@ -91,9 +114,59 @@ public class ObjLoaderImproved extends ModelLoader<ObjLoaderImproved.ObjLoaderPa
    */
   public static boolean logWarning = true;
 
+  // Smallest chunk worth handing to another thread when parsing in parallel.
+  private static final int MIN_CHUNK_BYTES = 64 * 1024;
+  private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+  // Shared by all loaders, created the first time a file is parsed in parallel.
+  private static AsyncExecutor parseExecutor;
+
   public static class ObjLoaderParameters extends ModelLoader.ModelParameters {
     public boolean flipV;
 
+    /**
+     * Parse large files in parallel. The file is split at line boundaries into chunks which are
+     * parsed on a pool of threads, one per core. Files smaller than a couple of chunks are still
+     * parsed on the loading thread.
+     */
+    public boolean parallel;
+
+    /**
+     * Write the interleaved vertices and indices straight into pooled direct buffers instead of
+     * float and short arrays. The buffers are copied into the Mesh when the Model is created and
+     * then returned to the pool, which avoids holding extra heap copies of the vertex data while
+     * loading. The {@link ModelData} returned in this mode is only usable by this loader.
+     */
+    public boolean directBuffers;
+
+    /**
+     * Use the compact vertex layout of {@link QuantizedMesh}, which halves the size of the
+     * vertices. The meshes need to be rendered with {@link QuantizedShader}, which {@link
+     * SimpleShaderProvider} does. This implies {@link #directBuffers}.
+     */
+    public boolean quantize;
+
+    /**
+     * Share identical vertices between triangles and reorder the triangles and vertices for the
+     * GPU's vertex cache, see {@link MeshOptimizer}. The ACMR before and after is logged.
+     */
+    public boolean optimize;
+
+    /**
+     * Triangle counts of the simplified levels of detail to generate, as fractions of the full
+     * mesh, for example {0.5f, 0.25f}. The levels are extra mesh parts that share the vertices of
+     * the full mesh, see {@link LodModelInstance}. A level is skipped when the mesh cannot be
+     * simplified any further. This implies {@link #optimize}.
+     */
+    public float[] levelsOfDetail;
+
+    /**
+     * Model data that is already being loaded, for example by {@link AssetPreloader}. When set, the
+     * loader waits for this data instead of parsing the file. The data is only used once, this is
+     * cleared when the loader takes it.
+     */
+    public Future<ModelData> modelData;
+
     public ObjLoaderParameters() {}
 
     public ObjLoaderParameters(boolean flipV) {
@@ -122,95 +195,84 @@ public class ObjLoaderImproved extends ModelLoader<ObjLoaderImproved.ObjLoaderPa
     return loadModel(fileHandle, new ObjLoaderParameters(flipV));
   }
 
+  @Override
+  public Model loadModel(
+      FileHandle fileHandle, TextureProvider textureProvider, ObjLoaderParameters parameters) {
+    ModelData data = loadModelData(fileHandle, parameters);
+    return data == null ? null : createModel(data, textureProvider);
+  }
+
+  @Override
+  public Model loadSync(
+      AssetManager manager, String fileName, FileHandle file, ObjLoaderParameters parameters) {
+    ModelData data = null;
+    synchronized (items) {
+      for (int i = 0; i < items.size; i++) {
+        if (items.get(i).key.equals(fileName)) {
+          data = items.get(i).value;
+          items.removeIndex(i);
+        }
+      }
+    }
+    if (data == null) return null;
+    final Model result = createModel(data, new TextureProvider.AssetTextureProvider(manager));
+    // Remove the textures from the managed disposables, the asset manager reference counts them.
+    Iterator<Disposable> disposables = result.getManagedDisposables().iterator();
+    while (disposables.hasNext()) {
+      if (disposables.next() instanceof Texture) {
+        disposables.remove();
+      }
+    }
+    return result;
+  }
+
+  private Model createModel(ModelData data, TextureProvider textureProvider) {
+    if (data instanceof DirectModelData) {
+      return new DirectModel((DirectModelData) data, textureProvider);
+    }
+    return new Model(data, textureProvider);
+  }
+
   @Override
   public ModelData loadModelData(FileHandle file, ObjLoaderParameters parameters) {
-    return loadModelData(file, parameters == null ? false : parameters.flipV);
+    if (parameters != null && parameters.modelData != null) {
+      Future<ModelData> modelData = parameters.modelData;
+      parameters.modelData = null;
+      try {
+        return modelData.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new GdxRuntimeException("Interrupted waiting for " + file, e);
+      } catch (ExecutionException e) {
+        throw new GdxRuntimeException("Couldn't load " + file, e.getCause());
+      }
+    }
+    return loadObj(file, parameters == null ? new ObjLoaderParameters() : parameters);
   }
 
   protected ModelData loadModelData(FileHandle file, boolean flipV) {
-    if (logWarning)
+    return loadObj(file, new ObjLoaderParameters(flipV));
+  }
+
+  private ModelData loadObj(FileHandle file, ObjLoaderParameters parameters) {
+    final boolean flipV = parameters.flipV;
+    // Gdx.app is not set yet when preloading before the application starts.
+    if (logWarning && Gdx.app != null)
       Gdx.app.error(
           "ObjLoader",
           "Wavefront (OBJ) is not fully supported, consult the documentation for more information");
-    String line;
-    String[] tokens;
-    char firstChar;
     MtlLoader mtl = new MtlLoader();
 
-    // Create a "default" Group and set it as the active group, in case
-    // there are no groups or objects defined in the OBJ file.
-    Group activeGroup = new Group("default");
-    groups.add(activeGroup);
-
-    BufferedReader reader = new BufferedReader(new InputStreamReader(file.read()), 4096);
-    int id = 0;
-    try {
-      while ((line = reader.readLine()) != null) {
-
-        tokens = line.split("\\s+");
-        if (tokens.length < 1) break;
-
-        if (tokens[0].length() == 0) {
-          continue;
-        } else if ((firstChar = tokens[0].toLowerCase().charAt(0)) == '#') {
-          continue;
-        } else if (firstChar == 'v') {
-          if (tokens[0].length() == 1) {
-            verts.add(Float.parseFloat(tokens[1]));
-            verts.add(Float.parseFloat(tokens[2]));
-            verts.add(Float.parseFloat(tokens[3]));
-          } else if (tokens[0].charAt(1) == 'n') {
-            norms.add(Float.parseFloat(tokens[1]));
-            norms.add(Float.parseFloat(tokens[2]));
-            norms.add(Float.parseFloat(tokens[3]));
-          } else if (tokens[0].charAt(1) == 't') {
-            uvs.add(Float.parseFloat(tokens[1]));
-            uvs.add((flipV ? 1 - Float.parseFloat(tokens[2]) : Float.parseFloat(tokens[2])));
-          }
-        } else if (firstChar == 'f') {
-          String[] parts;
-          Array<Integer> faces = activeGroup.faces;
-          for (int i = 1; i < tokens.length - 2; i--) {
-            parts = tokens[1].split("/");
-            faces.add(getIndex(parts[0], verts.size));
-            if (parts.length > 2) {
-              if (i == 1) activeGroup.hasNorms = true;
-              faces.add(getIndex(parts[2], norms.size));
-            }
-            if (parts.length > 1 && parts[1].length() > 0) {
-              if (i == 1) activeGroup.hasUVs = true;
-              faces.add(getIndex(parts[1], uvs.size));
-            }
-            parts = tokens[++i].split("/");
-            faces.add(getIndex(parts[0], verts.size));
-            if (parts.length > 2) faces.add(getIndex(parts[2], norms.size));
-            if (parts.length > 1 && parts[1].length() > 0) faces.add(getIndex(parts[1], uvs.size));
-            parts = tokens[++i].split("/");
-            faces.add(getIndex(parts[0], verts.size));
-            if (parts.length > 2) faces.add(getIndex(parts[2], norms.size));
-            if (parts.length > 1 && parts[1].length() > 0) faces.add(getIndex(parts[1], uvs.size));
-            activeGroup.numFaces++;
-          }
-        } else if (firstChar == 'o' || firstChar == 'g') {
-          if (tokens.length > 1) activeGroup = setActiveGroup(tokens[1]);
-          else activeGroup = setActiveGroup("default");
-        } else if (tokens[0].equals("mtllib")) {
-          mtl.load(file.parent().child(tokens[1]));
-        } else if (tokens[0].equals("usemtl")) {
-          if (tokens.length == 1) activeGroup.materialName = "default";
-          else {
-            if (!activeGroup.materialName.equals("default") || activeGroup.faces.size != 0) {
-              // this is a change of material in the group, so make a sub-group
-              activeGroup = setActiveGroup(activeGroup.name + "_" + activeGroup.faces.size);
-            }
-            activeGroup.materialName = tokens[1].replace('.', '_');
-          }
-        }
-      }
-      reader.close();
-    } catch (IOException e) {
+    Array<ObjChunkParser> chunks;
+    if (parameters.parallel && file.length() >= 2 * MIN_CHUNK_BYTES) {
+      chunks = parseParallel(file, flipV);
+    } else {
+      chunks = parseSerial(file, flipV);
+    }
+    if (chunks == null) {
       return null;
     }
+    merge(chunks, file, mtl);
 
     // If the "default" group or any others were not used, get rid of them
     for (int i = 0; i < groups.size; i++) {
@@ -226,55 +288,72 @@ public class ObjLoaderImproved extends ModelLoader<ObjLoaderImproved.ObjLoaderPa
     // Get number of objects/groups remaining after removing empty ones
     final int numGroups = groups.size;
 
-    final ModelData data = new ModelData();
+    final boolean direct = parameters.directBuffers || parameters.quantize;
+    final ModelData data = direct ? new DirectModelData(numGroups) : new ModelData();
 
+    int id = 0;
     for (int g = 0; g < numGroups; g++) {
       Group group = groups.get(g);
-      Array<Integer> faces = group.faces;
-      final int numElements = faces.size;
       final int numFaces = group.numFaces;
       final boolean hasNorms = group.hasNorms;
       final boolean hasUVs = group.hasUVs;
 
-      final float[] finalVerts =
-          new float[(numFaces * 3) * (3 + (hasNorms ? 3 : 0) + (hasUVs ? 2 : 0))];
-
-      for (int i = 0, vi = 0; i < numElements; ) {
-        int vertIndex = faces.get(i++) * 3;
-        finalVerts[vi++] = verts.get(vertIndex++);
-        finalVerts[vi++] = verts.get(vertIndex++);
-        finalVerts[vi++] = verts.get(vertIndex);
-        if (hasNorms) {
-          int normIndex = faces.get(i++) * 3;
-          finalVerts[vi++] = norms.get(normIndex++);
-          finalVerts[vi++] = norms.get(normIndex++);
-          finalVerts[vi++] = norms.get(normIndex);
-        }
-        if (hasUVs) {
-          int uvIndex = faces.get(i++) * 2;
-          finalVerts[vi++] = uvs.get(uvIndex++);
-          finalVerts[vi++] = uvs.get(uvIndex);
+      // Indices of each level of the optimized mesh, null when each face corner is its own vertex.
+      final int[][] levels =
+          parameters.optimize || parameters.levelsOfDetail != null
+              ? optimize(group, parameters.levelsOfDetail)
+              : null;
+      IntArray faces = group.faces;
+      final int numVertices = levels != null ? faces.size / faceStride(group) : numFaces * 3;
+      final int numFloats = numVertices * (3 + (hasNorms ? 3 : 0) + (hasUVs ? 2 : 0));
+      final int numIndices;
+      if (levels != null) {
+        int total = 0;
+        for (int[] level : levels) {
+          total += level.length;
         }
+        numIndices = total;
+      } else {
+        // if there are too many vertices in a mesh, we can't use indices
+        numIndices = numFaces * 3 >= Short.MAX_VALUE ? 0 : numFaces * 3;
       }
 
-      final int numIndices = numFaces * 3 >= Short.MAX_VALUE ? 0 : numFaces * 3;
-      final short[] finalIndices = new short[numIndices];
-      // if there are too many vertices in a mesh, we can't use indices
-      if (numIndices > 0) {
-        for (int i = 0; i < numIndices; i++) {
-          finalIndices[i] = (short) i;
+      float[] finalVerts = null;
+      short[] finalIndices = null;
+      VertexAttribute[] attributes;
+      if (parameters.quantize) {
+        attributes = QuantizedMesh.createAttributes(hasNorms, hasUVs);
+      } else {
+        attributes = createAttributes(hasNorms, hasUVs);
+      }
+      if (direct) {
+        ByteBuffer vertexData;
+        QuantizedRange range = null;
+        if (parameters.quantize) {
+          range = new QuantizedRange(verts, uvs, faces, hasNorms, hasUVs);
+          int vertexSize = new VertexAttributes(attributes).vertexSize;
+          vertexData = DirectBufferPool.getShared().obtain(numVertices * vertexSize);
+          writeQuantizedVertices(faces, hasNorms, hasUVs, range, vertexData);
+          vertexData.flip();
+        } else {
+          vertexData = DirectBufferPool.getShared().obtain(numFloats * 4);
+          writeVertices(faces, hasNorms, hasUVs, vertexData.asFloatBuffer());
+        }
+        ByteBuffer indexData = null;
+        if (numIndices > 0) {
+          indexData = DirectBufferPool.getShared().obtain(numIndices * 2);
+          writeIndices(levels, numIndices, indexData.asShortBuffer());
         }
+        ((DirectModelData) data).vertexData.add(vertexData);
+        ((DirectModelData) data).indexData.add(indexData);
+        ((DirectModelData) data).ranges.add(range);
+      } else {
+        finalVerts = new float[numFloats];
+        writeVertices(faces, hasNorms, hasUVs, FloatBuffer.wrap(finalVerts));
+        finalIndices = new short[numIndices];
+        writeIndices(levels, numIndices, ShortBuffer.wrap(finalIndices));
       }
 
-      Array<VertexAttribute> attributes = new Array<VertexAttribute>();
-      attributes.add(new VertexAttribute(Usage.Position, 3, ShaderProgram.POSITION_ATTRIBUTE));
-      if (hasNorms)
-        attributes.add(new VertexAttribute(Usage.Normal, 3, ShaderProgram.NORMAL_ATTRIBUTE));
-      if (hasUVs)
-        attributes.add(
-            new VertexAttribute(
-                Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
-
       String stringId = Integer.toString(++id);
       String nodeId = "default".equals(group.name) ? "node" + stringId : group.name;
       String meshId = "default".equals(group.name) ? "mesh" + stringId : group.name;
@@ -289,15 +368,29 @@ public class ObjLoaderImproved extends ModelLoader<ObjLoaderImproved.ObjLoaderPa
       pm.meshPartId = partId;
       pm.materialId = group.materialName;
       node.parts = new ModelNodePart[] {pm};
-      ModelMeshPart part = new ModelMeshPart();
-      part.id = partId;
-      part.indices = finalIndices;
-      part.primitiveType = GL20.GL_TRIANGLES;
       ModelMesh mesh = new ModelMesh();
       mesh.id = meshId;
-      mesh.attributes = attributes.toArray(VertexAttribute.class);
+      mesh.attributes = attributes;
       mesh.vertices = finalVerts;
-      mesh.parts = new ModelMeshPart[] {part};
+      // The simplified levels follow the full mesh in the index buffer.
+      mesh.parts = new ModelMeshPart[levels != null ? levels.length : 1];
+      int offset = 0;
+      for (int level = 0; level < mesh.parts.length; level++) {
+        ModelMeshPart part = new ModelMeshPart();
+        part.id = level == 0 ? partId : LodModelInstance.getLevelId(partId, level);
+        part.primitiveType = GL20.GL_TRIANGLES;
+        int size = levels != null ? levels[level].length : numIndices;
+        if (direct) {
+          // The direct model reads the parts from the index buffer, this only records the size.
+          ((DirectModelData) data).partSizes.add(size);
+        } else if (mesh.parts.length == 1) {
+          part.indices = finalIndices;
+        } else {
+          part.indices = Arrays.copyOfRange(finalIndices, offset, offset + size);
+        }
+        offset += size;
+        mesh.parts[level] = part;
+      }
       data.nodes.add(node);
       data.meshes.add(mesh);
       ModelMaterial mm = mtl.getMaterial(group.materialName);
@@ -319,6 +412,176 @@ public class ObjLoaderImproved extends ModelLoader<ObjLoaderImproved.ObjLoaderPa
     return data;
   }
 
+  private static VertexAttribute[] createAttributes(boolean hasNorms, boolean hasUVs) {
+    Array<VertexAttribute> attributes = new Array<VertexAttribute>();
+    attributes.add(new VertexAttribute(Usage.Position, 3, ShaderProgram.POSITION_ATTRIBUTE));
+    if (hasNorms)
+      attributes.add(new VertexAttribute(Usage.Normal, 3, ShaderProgram.NORMAL_ATTRIBUTE));
+    if (hasUVs)
+      attributes.add(
+          new VertexAttribute(
+              Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+    return attributes.toArray(VertexAttribute.class);
+  }
+
+  /**
+   * Writes the vertices of each face corner in the layout of {@link QuantizedMesh}, mapping the
+   * positions and uvs to the range of the group.
+   */
+  private void writeQuantizedVertices(
+      IntArray faces, boolean hasNorms, boolean hasUVs, QuantizedRange range, ByteBuffer out) {
+    final Vector3 offset = range.positionOffset;
+    final Vector3 scale = range.positionScale;
+    final int numElements = faces.size;
+    for (int i = 0; i < numElements; ) {
+      int vertIndex = faces.get(i++) * 3;
+      out.putShort(QuantizedMesh.quantize(verts.get(vertIndex++), offset.x, scale.x));
+      out.putShort(QuantizedMesh.quantize(verts.get(vertIndex++), offset.y, scale.y));
+      out.putShort(QuantizedMesh.quantize(verts.get(vertIndex), offset.z, scale.z));
+      out.putShort((short) 0);
+      if (hasNorms) {
+        int normIndex = faces.get(i++) * 3;
+        out.put(QuantizedMesh.quantizeNormal(norms.get(normIndex++)));
+        out.put(QuantizedMesh.quantizeNormal(norms.get(normIndex++)));
+        out.put(QuantizedMesh.quantizeNormal(norms.get(normIndex)));
+        out.put((byte) 0);
+      }
+      if (hasUVs) {
+        int uvIndex = faces.get(i++) * 2;
+        final Vector2 uvOffset = range.uvOffset;
+        final Vector2 uvScale = range.uvScale;
+        out.putShort(QuantizedMesh.quantize(uvs.get(uvIndex++), uvOffset.x, uvScale.x));
+        out.putShort(QuantizedMesh.quantize(uvs.get(uvIndex), uvOffset.y, uvScale.y));
+      }
+    }
+  }
+
+  /** Writes the interleaved position, normal and uv for each face corner. */
+  private void writeVertices(IntArray faces, boolean hasNorms, boolean hasUVs, FloatBuffer out) {
+    final int numElements = faces.size;
+    for (int i = 0; i < numElements; ) {
+      int vertIndex = faces.get(i++) * 3;
+      out.put(verts.get(vertIndex++));
+      out.put(verts.get(vertIndex++));
+      out.put(verts.get(vertIndex));
+      if (hasNorms) {
+        int normIndex = faces.get(i++) * 3;
+        out.put(norms.get(normIndex++));
+        out.put(norms.get(normIndex++));
+        out.put(norms.get(normIndex));
+      }
+      if (hasUVs) {
+        int uvIndex = faces.get(i++) * 2;
+        out.put(uvs.get(uvIndex++));
+        out.put(uvs.get(uvIndex));
+      }
+    }
+  }
+
+  private static void writeIndices(int[][] levels, int numIndices, ShortBuffer out) {
+    if (levels == null) {
+      for (int i = 0; i < numIndices; i++) {
+        out.put((short) i);
+      }
+      return;
+    }
+    for (int[] level : levels) {
+      for (int index : level) {
+        out.put((short) index);
+      }
+    }
+  }
+
+  private static int faceStride(Group group) {
+    return 1 + (group.hasNorms ? 1 : 0) + (group.hasUVs ? 1 : 0);
+  }
+
+  /**
+   * Merges the identical face corners of the group, generates the simplified levels of detail and
+   * reorders them for the vertex cache. The faces of the group are replaced by one corner per
+   * vertex, in vertex order.
+   *
+   * @param levelsOfDetail - the triangle counts of the simplified levels, can be null.
+   * @return the indices of the triangles of each level, starting with the full mesh, or null if the
+   *     group has too many vertices for short indices.
+   */
+  private int[][] optimize(Group group, float[] levelsOfDetail) {
+    final int stride = faceStride(group);
+    final int numCorners = group.numFaces * 3;
+    int[] indices = new int[numCorners];
+    int[] firstCorner = new int[numCorners];
+    int numVertices =
+        MeshOptimizer.weld(group.faces.items, numCorners, stride, indices, firstCorner);
+    if (numVertices >= Short.MAX_VALUE) {
+      return null;
+    }
+
+    int[][] levels = new int[1 + (levelsOfDetail != null ? levelsOfDetail.length : 0)][];
+    levels[0] = indices;
+    int numLevels = 1;
+    if (levelsOfDetail != null) {
+      float[] positions = new float[numVertices * 3];
+      for (int v = 0; v < numVertices; v++) {
+        int vertIndex = group.faces.items[firstCorner[v] * stride] * 3;
+        System.arraycopy(verts.items, vertIndex, positions, v * 3, 3);
+      }
+      for (float fraction : levelsOfDetail) {
+        // Each level is simplified from the previous one, which is faster and keeps them similar.
+        int[] previous = levels[numLevels - 1];
+        int target = Math.round(group.numFaces * fraction) * 3;
+        int[] level = MeshSimplifier.simplify(previous, positions, target);
+        if (level.length >= previous.length) {
+          break;
+        }
+        levels[numLevels++] = level;
+      }
+      levels = Arrays.copyOf(levels, numLevels);
+    }
+
+    float before = MeshOptimizer.acmr(indices, numCorners, MeshOptimizer.REPORT_CACHE_SIZE);
+    for (int level = 0; level < numLevels; level++) {
+      levels[level] = MeshOptimizer.optimizeTriangleOrder(levels[level], numVertices);
+    }
+    // The full mesh uses all the vertices, the simplified levels use a subset of them.
+    int[] remap = new int[numVertices];
+    MeshOptimizer.reorderVertices(levels[0], numVertices, remap);
+    for (int level = 1; level < numLevels; level++) {
+      for (int i = 0; i < levels[level].length; i++) {
+        levels[level][i] = remap[levels[level][i]];
+      }
+    }
+    float after = MeshOptimizer.acmr(levels[0], numCorners, MeshOptimizer.REPORT_CACHE_SIZE);
+
+    IntArray faces = new IntArray(numVertices * stride);
+    faces.size = numVertices * stride;
+    for (int v = 0; v < numVertices; v++) {
+      System.arraycopy(
+          group.faces.items, firstCorner[v] * stride, faces.items, remap[v] * stride, stride);
+    }
+    group.faces = faces;
+
+    // Gdx.app is not set yet when preloading before the application starts.
+    if (Gdx.app != null) {
+      Gdx.app.log(
+          "ObjLoader",
+          String.format(
+              Locale.US,
+              "%s: %d corners welded to %d vertices, ACMR %.3f -> %.3f",
+              group.name,
+              numCorners,
+              numVertices,
+              before,
+              after));
+      for (int level = 1; level < numLevels; level++) {
+        Gdx.app.log(
+            "ObjLoader",
+            group.name + ": level of detail " + level + " has " + levels[level].length / 3
+                + " triangles");
+      }
+    }
+    return levels;
+  }
+
   private Group setActiveGroup(String name) {
     // TODO: Check if a HashMap.get calls are faster than iterating
     // through an Array
@@ -330,17 +593,301 @@ public class ObjLoaderImproved extends ModelLoader<ObjLoaderImproved.ObjLoaderPa
     return group;
   }
 
-  private int getIndex(String index, int size) {
-    if (index == null || index.length() == 0) return 0;
-    final int idx = Integer.parseInt(index);
-    if (idx < 0) return size + idx;
-    else return idx - 1;
+  /** Parses the file on the calling thread as a single chunk. */
+  private Array<ObjChunkParser> parseSerial(FileHandle file, boolean flipV) {
+    ObjChunkParser chunk = new ObjChunkParser(flipV);
+    BufferedReader reader = new BufferedReader(new InputStreamReader(file.read()), 4096);
+    String line;
+    try {
+      while ((line = reader.readLine()) != null) {
+        chunk.parseLine(line);
+      }
+      reader.close();
+    } catch (IOException e) {
+      return null;
+    }
+    Array<ObjChunkParser> chunks = new Array<ObjChunkParser>(1);
+    chunks.add(chunk);
+    return chunks;
+  }
+
+  /**
+   * Splits the file at line boundaries into one chunk per core and parses the chunks in parallel.
+   * The first chunk is parsed on the calling thread while the others are parsed by the executor.
+   */
+  private Array<ObjChunkParser> parseParallel(FileHandle file, final boolean flipV) {
+    final byte[] data = file.readBytes();
+    int numChunks = Math.max(1, Math.min(PARALLELISM, data.length / MIN_CHUNK_BYTES));
+
+    Array<ObjChunkParser> chunks = new Array<ObjChunkParser>(numChunks);
+    Array<AsyncResult<Void>> results = new Array<AsyncResult<Void>>(numChunks);
+    int firstEnd = 0;
+    int start = 0;
+    for (int i = 0; i < numChunks && start < data.length; i++) {
+      int end =
+          i == numChunks - 1
+              ? data.length
+              : nextLineStart(data, (int) ((long) data.length * (i + 1) / numChunks));
+      final ObjChunkParser chunk = new ObjChunkParser(flipV);
+      chunks.add(chunk);
+      if (i == 0) {
+        firstEnd = end;
+      } else {
+        final int chunkStart = start;
+        final int chunkEnd = end;
+        results.add(
+            getParseExecutor()
+                .submit(
+                    new AsyncTask<Void>() {
+                      @Override
+                      public Void call() {
+                        chunk.parse(data, chunkStart, chunkEnd);
+                        return null;
+                      }
+                    }));
+      }
+      start = end;
+    }
+
+    chunks.first().parse(data, 0, firstEnd);
+    // Wait for the rest; get() rethrows any parsing error as a GdxRuntimeException.
+    for (AsyncResult<Void> result : results) {
+      result.get();
+    }
+    return chunks;
+  }
+
+  private static int nextLineStart(byte[] data, int position) {
+    while (position < data.length && data[position - 1] != '\n') {
+      position++;
+    }
+    return position;
+  }
+
+  private static synchronized AsyncExecutor getParseExecutor() {
+    if (parseExecutor == null) {
+      parseExecutor = new AsyncExecutor(PARALLELISM);
+    }
+    return parseExecutor;
+  }
+
+  /**
+   * Merges the parsed chunks in file order. Relative indices are offset by the number of elements
+   * in the preceding chunks, and the group and material statements are applied so the faces are
+   * added to the correct groups.
+   */
+  private void merge(Array<ObjChunkParser> chunks, FileHandle file, MtlLoader mtl) {
+    // Create a "default" Group and set it as the active group, in case
+    // there are no groups or objects defined in the OBJ file.
+    Group activeGroup = new Group("default");
+    groups.add(activeGroup);
+
+    int vertBase = 0;
+    int normBase = 0;
+    int uvBase = 0;
+    for (ObjChunkParser chunk : chunks) {
+      offsetIndices(chunk.faces, chunk.relativeVerts, vertBase);
+      offsetIndices(chunk.faces, chunk.relativeNorms, normBase);
+      offsetIndices(chunk.faces, chunk.relativeUvs, uvBase);
+
+      int triangle = 0;
+      int element = 0;
+      for (int i = 0; i < chunk.statements.size; i++) {
+        int end = chunk.statementTriangles.get(i);
+        element = addTriangles(activeGroup, chunk, triangle, end, element);
+        triangle = end;
+        activeGroup = applyStatement(chunk.statements.get(i), activeGroup, file, mtl);
+      }
+      addTriangles(activeGroup, chunk, triangle, chunk.triangles.size, element);
+
+      verts.addAll(chunk.verts);
+      norms.addAll(chunk.norms);
+      uvs.addAll(chunk.uvs);
+      vertBase += chunk.verts.size / 3;
+      normBase += chunk.norms.size / 3;
+      uvBase += chunk.uvs.size / 2;
+    }
+  }
+
+  private static void offsetIndices(IntArray faces, IntArray positions, int base) {
+    for (int i = 0; i < positions.size; i++) {
+      faces.incr(positions.get(i), base);
+    }
+  }
+
+  /**
+   * Adds the triangles [from, to) of the chunk to the group.
+   *
+   * @return the position in the chunk faces after the last triangle added.
+   */
+  private int addTriangles(Group group, ObjChunkParser chunk, int from, int to, int element) {
+    int start = element;
+    for (int i = from; i < to; i++) {
+      int triangle = chunk.triangles.get(i);
+      if ((triangle & ObjChunkParser.TRIANGLE_NORMALS) != 0) group.hasNorms = true;
+      if ((triangle & ObjChunkParser.TRIANGLE_UVS) != 0) group.hasUVs = true;
+      element += triangle & ObjChunkParser.TRIANGLE_SIZE_MASK;
+    }
+    group.faces.addAll(chunk.faces, start, element - start);
+    group.numFaces += to - from;
+    return element;
+  }
+
+  private Group applyStatement(String[] tokens, Group activeGroup, FileHandle file, MtlLoader mtl) {
+    char firstChar = tokens[0].toLowerCase().charAt(0);
+    if (firstChar == 'o' || firstChar == 'g') {
+      if (tokens.length > 1) activeGroup = setActiveGroup(tokens[1]);
+      else activeGroup = setActiveGroup("default");
+    } else if (tokens[0].equals("mtllib")) {
+      mtl.load(file.parent().child(tokens[1]));
+    } else if (tokens[0].equals("usemtl")) {
+      if (tokens.length == 1) activeGroup.materialName = "default";
+      else {
+        if (!activeGroup.materialName.equals("default") || activeGroup.faces.size != 0) {
+          // this is a change of material in the group, so make a sub-group
+          activeGroup = setActiveGroup(activeGroup.name + "_" + activeGroup.faces.size);
+        }
+        activeGroup.materialName = tokens[1].replace('.', '_');
+      }
+    }
+    return activeGroup;
+  }
+
+  /**
+   * ModelData produced when loading into direct buffers. The meshes have no vertices or indices,
+   * instead the data for each mesh is in the buffers at the same position.
+   */
+  static class DirectModelData extends ModelData {
+    final Array<ByteBuffer> vertexData;
+    final Array<ByteBuffer> indexData;
+    // Range of each quantized mesh, null for meshes using floats.
+    final Array<QuantizedRange> ranges;
+    // Number of indices of each mesh part, in the order of the meshes and their parts.
+    final IntArray partSizes;
+
+    DirectModelData(int numMeshes) {
+      vertexData = new Array<ByteBuffer>(numMeshes);
+      indexData = new Array<ByteBuffer>(numMeshes);
+      ranges = new Array<QuantizedRange>(numMeshes);
+      partSizes = new IntArray(numMeshes);
+    }
+  }
+
+  /** Range of the positions and uvs used by a group, for quantizing them. */
+  static class QuantizedRange {
+    final Vector3 positionOffset = new Vector3();
+    final Vector3 positionScale = new Vector3();
+    final Vector2 uvOffset = new Vector2();
+    final Vector2 uvScale = new Vector2(1, 1);
+
+    QuantizedRange(
+        FloatArray verts, FloatArray uvs, IntArray faces, boolean hasNorms, boolean hasUVs) {
+      BoundingBox bounds = new BoundingBox();
+      float minU = Float.MAX_VALUE;
+      float minV = Float.MAX_VALUE;
+      float maxU = -Float.MAX_VALUE;
+      float maxV = -Float.MAX_VALUE;
+      for (int i = 0; i < faces.size; ) {
+        int vertIndex = faces.get(i++) * 3;
+        bounds.ext(verts.get(vertIndex), verts.get(vertIndex + 1), verts.get(vertIndex + 2));
+        if (hasNorms) {
+          i++;
+        }
+        if (hasUVs) {
+          int uvIndex = faces.get(i++) * 2;
+          minU = Math.min(minU, uvs.get(uvIndex));
+          maxU = Math.max(maxU, uvs.get(uvIndex));
+          minV = Math.min(minV, uvs.get(uvIndex + 1));
+          maxV = Math.max(maxV, uvs.get(uvIndex + 1));
+        }
+      }
+      positionOffset.set(bounds.min);
+      positionScale.set(
+          QuantizedMesh.scale(bounds.min.x, bounds.max.x),
+          QuantizedMesh.scale(bounds.min.y, bounds.max.y),
+          QuantizedMesh.scale(bounds.min.z, bounds.max.z));
+      if (hasUVs) {
+        uvOffset.set(minU, minV);
+        uvScale.set(QuantizedMesh.scale(minU, maxU), QuantizedMesh.scale(minV, maxV));
+      }
+    }
+  }
+
+  /**
+   * Model that fills its meshes by copying from the direct buffers of a {@link DirectModelData}.
+   * The buffers are returned to the pool once copied.
+   */
+  static class DirectModel extends Model {
+    private final DirectModelData data;
+    private int nextPart;
+
+    DirectModel(DirectModelData data, TextureProvider textureProvider) {
+      this.data = data;
+      load(data, textureProvider);
+    }
+
+    @Override
+    protected void convertMesh(ModelMesh modelMesh) {
+      int index = data.meshes.indexOf(modelMesh, true);
+      ByteBuffer vertexData = data.vertexData.get(index);
+      ByteBuffer indexData = data.indexData.get(index);
+
+      VertexAttributes attributes = new VertexAttributes(modelMesh.attributes);
+      int numVertices = vertexData.limit() / attributes.vertexSize;
+      int numIndices = indexData == null ? 0 : indexData.limit() / 2;
+
+      QuantizedRange range = data.ranges.get(index);
+      Mesh mesh;
+      if (range != null) {
+        mesh =
+            new QuantizedMesh(
+                true,
+                numVertices,
+                numIndices,
+                attributes,
+                range.positionOffset,
+                range.positionScale,
+                range.uvOffset,
+                range.uvScale);
+      } else {
+        mesh = new Mesh(true, numVertices, numIndices, attributes);
+      }
+      meshes.add(mesh);
+      disposables.add(mesh);
+
+      // Getting the buffers marks them dirty, so they are uploaded when the mesh is first bound.
+      FloatBuffer vertices = mesh.getVerticesBuffer();
+      vertices.clear();
+      vertices.put(vertexData.asFloatBuffer());
+      vertices.flip();
+      DirectBufferPool.getShared().free(vertexData);
+      if (indexData != null) {
+        ShortBuffer indices = mesh.getIndicesBuffer();
+        indices.clear();
+        indices.put(indexData.asShortBuffer());
+        indices.flip();
+        DirectBufferPool.getShared().free(indexData);
+      }
+      data.vertexData.set(index, null);
+      data.indexData.set(index, null);
+
+      int offset = 0;
+      for (ModelMeshPart part : modelMesh.parts) {
+        int size = data.partSizes.get(nextPart++);
+        if (numIndices == 0) {
+          // Without indices the part draws all the vertices.
+          size = numVertices;
+        }
+        meshParts.add(new MeshPart(part.id, mesh, offset, size, part.primitiveType));
+        offset += size;
+      }
+    }
   }
 
   private class Group {
     final String name;
     String materialName;
-    Array<Integer> faces;
+    IntArray faces;
     int numFaces;
     boolean hasNorms;
     boolean hasUVs;
@@ -348,7 +895,7 @@ public class ObjLoaderImproved extends ModelLoader<ObjLoaderImproved.ObjLoaderPa
 
     Group(String name) {
       this.name = name;
-      this.faces = new Array<Integer>(200);
+      this.faces = new IntArray(200);
       this.numFaces = 0;
       this.mat = new Material("");
       this.materialName = "default";
@@ -0,0 +1,267 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.support.annotation.Nullable;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+import com.badlogic.gdx.graphics.g2d.GlyphLayout;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.Disposable;
+import com.google.ar.core.TrackingState;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Overlay showing the performance of the scene on the device: the frame rate and frame time
+ * percentiles with a sparkline of the recent frames, the draw calls, the planes and anchors
+ * tracked, the GPU memory of the cached assets, the tracking state, and the GPU time of each pass
+ * when it is measured. See {@link
+ * ARCoreScene#setPerformanceHudEnabled(boolean)}.
+ *
+ * <p>The values are sampled a few times per second, and the text is only laid out again when one
+ * of them changes, so the overlay adds two draw calls and no allocations to most frames. The
+ * draw calls are counted by a {@link GLProfiler}. It checks for GL errors after every call, so
+ * it is only enabled for the frame after each refresh.
+ */
+public class PerformanceHud implements Disposable {
+  // Frames shown by the sparkline, and used for the percentiles.
+  private static final int SAMPLES = 120;
+  private static final float REFRESH_SECONDS = 0.25f;
+  // The camera runs at 30 frames per second, slower frames are shown in red.
+  private static final float FRAME_BUDGET_SECONDS = 1 / 30f;
+  // Sizes in pixels of the font at scale 1.
+  private static final float MARGIN = 8;
+  private static final float BAR_WIDTH = 1;
+  private static final float SPARKLINE_HEIGHT = 24;
+  private static final Color PANEL_COLOR = new Color(0, 0, 0, 0.5f);
+  private static final Color FAST_COLOR = new Color(0.3f, 0.9f, 0.3f, 1);
+  private static final Color SLOW_COLOR = new Color(1, 0.3f, 0.2f, 1);
+  private static final Color BUDGET_COLOR = new Color(1, 1, 1, 0.5f);
+
+  // Values compared to decide if the text changed.
+  private static final int FPS = 0;
+  private static final int P50 = 1;
+  private static final int P95 = 2;
+  private static final int P99 = 3;
+  private static final int DRAW_CALLS = 4;
+  private static final int PLANES = 5;
+  private static final int ANCHORS = 6;
+  private static final int ASSET_KB = 7;
+  private static final int TRACKING = 8;
+  private static final int GPU = 9;
+  private static final int VALUES = 10;
+
+  private final SpriteBatch batch;
+  private final BitmapFont font;
+  private final BitmapFontCache text;
+  // A white pixel, stretched for the panel and the bars. The pixmap is kept to reload the texture
+  // if the context is lost.
+  private final Pixmap whitePixmap;
+  private final Texture white;
+  private final GLProfiler profiler;
+  private final float scale;
+
+  private final float[] frameTimes = new float[SAMPLES];
+  private final float[] sorted = new float[SAMPLES];
+  private int samples;
+  private int nextSample;
+  private float sinceRefresh = REFRESH_SECONDS;
+  private int drawCalls;
+  private final int[] values = new int[VALUES];
+  private final int[] shownValues = new int[VALUES];
+  private float textWidth;
+  private float textHeight;
+  private int width;
+  private int height;
+  private final StringBuilder gpuText = new StringBuilder();
+
+  /** Creates the overlay, on the GL thread. */
+  public PerformanceHud() {
+    batch = new SpriteBatch(256);
+    // The font of libGDX, loaded from its jar so it is reloaded if the context is lost.
+    font = new BitmapFont();
+    scale = Math.max(1, Math.round(Gdx.graphics.getDensity()));
+    font.getData().setScale(scale);
+    text = font.newFontCache();
+    whitePixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
+    whitePixmap.setColor(Color.WHITE);
+    whitePixmap.fill();
+    white = new Texture(new PixmapTextureData(whitePixmap, null, false, false, true));
+    profiler = new GLProfiler(Gdx.graphics);
+    Arrays.fill(shownValues, -1);
+  }
+
+  /**
+   * Draws the overlay over the frame. This is called at the end of each frame, after the scene is
+   * drawn.
+   *
+   * @param frame - the frame drawn, null if there is none.
+   * @param session - the session, null if there is none.
+   * @param gpuTimer - measures the passes of the frame, null if the GPU is not measured.
+   */
+  public void render(
+      @Nullable ARFrame frame, @Nullable ARSession session, @Nullable GpuTimer gpuTimer) {
+    if (width != Gdx.graphics.getWidth() || height != Gdx.graphics.getHeight()) {
+      width = Gdx.graphics.getWidth();
+      height = Gdx.graphics.getHeight();
+      batch.getProjectionMatrix().setToOrtho2D(0, 0, width, height);
+      // The text is placed from the top of the view.
+      Arrays.fill(shownValues, -1);
+      sinceRefresh = REFRESH_SECONDS;
+    }
+    if (profiler.isEnabled()) {
+      // Counted since the overlay was drawn in the previous frame.
+      drawCalls = profiler.getDrawCalls();
+      profiler.disable();
+    }
+    frameTimes[nextSample] = Gdx.graphics.getDeltaTime();
+    nextSample = (nextSample + 1) % SAMPLES;
+    samples = Math.min(samples + 1, SAMPLES);
+    sinceRefresh += Gdx.graphics.getDeltaTime();
+    if (sinceRefresh >= REFRESH_SECONDS) {
+      sinceRefresh = 0;
+      sample(frame, session, gpuTimer);
+      if (!Arrays.equals(values, shownValues)) {
+        System.arraycopy(values, 0, shownValues, 0, VALUES);
+        layOutText(gpuTimer);
+      }
+    }
+
+    // The scene leaves them enabled, and the quads of the batch face away from the camera.
+    Gdx.gl.glDisable(GL20.GL_DEPTH_TEST);
+    Gdx.gl.glDisable(GL20.GL_CULL_FACE);
+    batch.begin();
+    float margin = MARGIN * scale;
+    float sparklineHeight = SPARKLINE_HEIGHT * scale;
+    float top = height - margin;
+    float panelWidth = Math.max(textWidth, SAMPLES * BAR_WIDTH * scale) + 2 * margin;
+    float panelHeight = textHeight + sparklineHeight + 3 * margin;
+    batch.setColor(PANEL_COLOR);
+    batch.draw(white, margin, top - panelHeight, panelWidth, panelHeight);
+    // The text last, so the quads of the white texture are drawn together.
+    drawSparkline(2 * margin, top - panelHeight + margin, sparklineHeight);
+    text.draw(batch);
+    batch.end();
+    if (sinceRefresh == 0) {
+      // Counts the next frame, for the next refresh.
+      profiler.reset();
+      profiler.enable();
+    }
+  }
+
+  private void drawSparkline(float x, float y, float sparklineHeight) {
+    float barWidth = BAR_WIDTH * scale;
+    // Twice the budget fills the height, the line in the middle is the budget.
+    float secondsToPixels = sparklineHeight / (2 * FRAME_BUDGET_SECONDS);
+    for (int i = 0; i < samples; i++) {
+      float time = frameTimes[(nextSample - samples + i + SAMPLES) % SAMPLES];
+      batch.setColor(time > FRAME_BUDGET_SECONDS ? SLOW_COLOR : FAST_COLOR);
+      batch.draw(white, x + i * barWidth, y, barWidth,
+          Math.min(sparklineHeight, time * secondsToPixels));
+    }
+    batch.setColor(BUDGET_COLOR);
+    batch.draw(white, x, y + sparklineHeight / 2, SAMPLES * barWidth, scale);
+    batch.setColor(Color.WHITE);
+  }
+
+  private void sample(
+      @Nullable ARFrame frame, @Nullable ARSession session, @Nullable GpuTimer gpuTimer) {
+    System.arraycopy(frameTimes, 0, sorted, 0, samples);
+    Arrays.sort(sorted, 0, samples);
+    values[FPS] = Gdx.graphics.getFramesPerSecond();
+    values[P50] = percentileTenthsOfMillis(50);
+    values[P95] = percentileTenthsOfMillis(95);
+    values[P99] = percentileTenthsOfMillis(99);
+    values[DRAW_CALLS] = drawCalls;
+    int planes = 0;
+    int anchors = 0;
+    if (session != null) {
+      for (ARPlane plane : session.getAllPlanes()) {
+        if (plane.getTrackingState() == TrackingState.TRACKING && plane.getSubsumedBy() == null) {
+          planes++;
+        }
+      }
+      anchors = session.getAllAnchors().size();
+    }
+    values[PLANES] = planes;
+    values[ANCHORS] = anchors;
+    values[ASSET_KB] = (int) (AssetCache.get().getUsedBytes() / 1024);
+    values[TRACKING] = frame != null ? frame.getTrackingState().ordinal() : -1;
+    long gpuNanos = -1;
+    if (gpuTimer != null && gpuTimer.getPassCount() > 0) {
+      gpuNanos = 0;
+      for (int i = 0; i < gpuTimer.getPassCount(); i++) {
+        gpuNanos += gpuTimer.getPassNanos(i);
+      }
+    }
+    values[GPU] = gpuNanos >= 0 ? (int) (gpuNanos / 100_000) : -1;
+  }
+
+  private int percentileTenthsOfMillis(int percentile) {
+    if (samples == 0) {
+      return 0;
+    }
+    int index = Math.max(0, (int) Math.ceil(percentile / 100f * samples) - 1);
+    return Math.round(sorted[index] * 10000);
+  }
+
+  private void layOutText(@Nullable GpuTimer gpuTimer) {
+    String tracking = values[TRACKING] >= 0
+        ? TrackingState.values()[values[TRACKING]].name() : "no frame";
+    gpuText.setLength(0);
+    if (values[GPU] < 0) {
+      gpuText.append(gpuTimer != null && !gpuTimer.isSupported() ? "not measurable" : "-");
+    } else {
+      gpuText.append(String.format(Locale.US, "%.1f ms", values[GPU] / 10f));
+      for (int i = 0; i < gpuTimer.getPassCount(); i++) {
+        gpuText.append(String.format(Locale.US, "   %s %.1f",
+            gpuTimer.getPassName(i), gpuTimer.getPassNanos(i) / 1e6f));
+      }
+    }
+    String lines = String.format(Locale.US,
+        "%d fps   %.1f / %.1f / %.1f ms (p50/p95/p99)\n"
+            + "%d draw calls\n"
+            + "%d planes   %d anchors\n"
+            + "assets %.1f / %.1f MB\n"
+            + "tracking %s\n"
+            + "gpu %s",
+        values[FPS], values[P50] / 10f, values[P95] / 10f, values[P99] / 10f,
+        values[DRAW_CALLS], values[PLANES], values[ANCHORS],
+        values[ASSET_KB] / 1024f, AssetCache.get().getBudget() / (1024f * 1024f),
+        tracking, gpuText);
+    float margin = MARGIN * scale;
+    GlyphLayout layout = text.setText(lines, 2 * margin, height - 2 * margin);
+    textWidth = layout.width;
+    textHeight = layout.height;
+  }
+
+  @Override
+  public void dispose() {
+    profiler.disable();
+    batch.dispose();
+    font.dispose();
+    white.dispose();
+    whitePixmap.dispose();
+  }
+}
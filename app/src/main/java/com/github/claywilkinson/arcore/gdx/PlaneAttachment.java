@@ -15,8 +15,6 @@ limitations under the License.
  */
 package com.github.claywilkinson.arcore.gdx;
 
-import com.google.ar.core.Anchor;
-import com.google.ar.core.Plane;
 import com.google.ar.core.Pose;
 import com.google.ar.core.TrackingState;
 
@@ -26,15 +24,15 @@ import com.google.ar.core.TrackingState;
  * the anchor and the plane.
  */
 public class PlaneAttachment<T> {
-  private final Plane plane;
-  private final Anchor anchor;
+  private final ARPlane plane;
+  private final ARAnchor anchor;
   private final T data;
 
   // Allocate temporary storage to avoid multiple allocations per frame.
   private final float[] mPoseTranslation = new float[3];
   private final float[] mPoseRotation = new float[4];
 
-  public PlaneAttachment(Plane plane, Anchor anchor, T data) {
+  public PlaneAttachment(ARPlane plane, ARAnchor anchor, T data) {
     this.plane = plane;
     this.anchor = anchor;
     this.data = data;
@@ -53,7 +51,7 @@ public class PlaneAttachment<T> {
     return new Pose(mPoseTranslation, mPoseRotation);
   }
 
-  public Anchor getAnchor() {
+  public ARAnchor getAnchor() {
     return anchor;
   }
 
@@ -0,0 +1,270 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.Ray;
+import com.google.ar.core.TrackingState;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Intersects rays with the detected planes on the CPU, for things that follow the screen center or
+ * a finger every frame, such as a placement reticle. This is much cheaper than calling {@link
+ * ARFrame#hitTest(float, float)} every frame, which should only be used to create the anchor once
+ * the placement is confirmed.
+ *
+ * <p>The planes are cached, call {@link #update(Collection)} with the planes updated by each frame.
+ */
+public class PlaneRaycaster {
+  // Rays closer to parallel to a plane than this are ignored.
+  private static final float MIN_COSINE = 1e-4f;
+
+  /** The closest intersection of a ray with a plane. */
+  public static class Hit {
+    public ARPlane plane;
+    /** Position of the hit in world space. */
+    public final Vector3 position = new Vector3();
+    /** Distance from the ray origin, in meters. */
+    public float distance;
+  }
+
+  private final HashMap<ARPlane, CachedPlane> planes = new HashMap<>();
+  private final Ray ray = new Ray();
+  private final Matrix4 invViewProjection = new Matrix4();
+
+  /**
+   * Updates the cached planes, removing the ones that stopped tracking or were merged into another
+   * plane.
+   *
+   * @param updatedPlanes - the planes that changed, usually {@link ARFrame#getUpdatedPlanes()}.
+   */
+  public void update(Collection<ARPlane> updatedPlanes) {
+    for (ARPlane plane : updatedPlanes) {
+      if (plane.getSubsumedBy() != null || plane.getTrackingState() == TrackingState.STOPPED) {
+        planes.remove(plane);
+        continue;
+      }
+      CachedPlane cached = planes.get(plane);
+      if (cached == null) {
+        cached = new CachedPlane(plane);
+        planes.put(plane, cached);
+      }
+      cached.update();
+    }
+  }
+
+  /** Removes all the cached planes. */
+  public void clear() {
+    planes.clear();
+  }
+
+  /**
+   * Intersects the ray through a point on the screen with the planes.
+   *
+   * @param camera - the camera controlled by ARCore, its combined matrix is used.
+   * @param screenX - position on the screen in pixels, as used by {@link
+   *     ARFrame#hitTest(float, float)}.
+   * @param screenY - position on the screen in pixels.
+   * @param hit - receives the closest hit.
+   * @return true if a plane was hit.
+   */
+  public boolean raycast(Camera camera, float screenX, float screenY, Hit hit) {
+    float ndcX = 2 * screenX / Gdx.graphics.getWidth() - 1;
+    float ndcY = 1 - 2 * screenY / Gdx.graphics.getHeight();
+    invViewProjection.set(camera.combined).inv();
+    ray.origin.set(ndcX, ndcY, -1).prj(invViewProjection);
+    ray.direction.set(ndcX, ndcY, 1).prj(invViewProjection).sub(ray.origin).nor();
+    return raycast(ray, hit);
+  }
+
+  /**
+   * Intersects a ray in world space with the planes.
+   *
+   * @param hit - receives the closest hit.
+   * @return true if a plane was hit.
+   */
+  public boolean raycast(Ray ray, Hit hit) {
+    hit.plane = null;
+    hit.distance = Float.POSITIVE_INFINITY;
+    for (CachedPlane cached : planes.values()) {
+      if (cached.plane.getTrackingState() != TrackingState.TRACKING) {
+        continue;
+      }
+      float distance = cached.intersect(ray);
+      if (distance < hit.distance) {
+        hit.distance = distance;
+        hit.plane = cached.plane;
+      }
+    }
+    if (hit.plane == null) {
+      return false;
+    }
+    ray.getEndPoint(hit.position, hit.distance);
+    return true;
+  }
+
+  /** The pose and polygon of a plane, with the polygon edges sorted into bands along z. */
+  private static class CachedPlane {
+    final ARPlane plane;
+    // Pose of the plane, column major. The columns are the x axis, the normal, the z axis and the
+    // center.
+    final float[] pose = new float[16];
+    // The polygon, as x and z in the plane's space.
+    float[] polygon = new float[0];
+    int numVertices;
+    float minX;
+    float maxX;
+    float minZ;
+    float maxZ;
+    // The edges crossing each band are bandEdges[bandOffsets[b] .. bandOffsets[b + 1]).
+    int numBands;
+    float bandScale;
+    int[] bandOffsets = new int[0];
+    int[] bandEdges = new int[0];
+    // The number of edges sorted into each band so far, while building them.
+    int[] bandFill = new int[0];
+
+    CachedPlane(ARPlane plane) {
+      this.plane = plane;
+    }
+
+    void update() {
+      plane.getCenterPose().toMatrix(pose, 0);
+      FloatBuffer buffer = plane.getPolygon();
+      buffer.rewind();
+      numVertices = buffer.remaining() / 2;
+      if (polygon.length < numVertices * 2) {
+        polygon = new float[numVertices * 2];
+      }
+      buffer.get(polygon, 0, numVertices * 2);
+      buffer.rewind();
+
+      minX = minZ = Float.POSITIVE_INFINITY;
+      maxX = maxZ = Float.NEGATIVE_INFINITY;
+      for (int i = 0; i < numVertices; i++) {
+        minX = Math.min(minX, polygon[i * 2]);
+        maxX = Math.max(maxX, polygon[i * 2]);
+        minZ = Math.min(minZ, polygon[i * 2 + 1]);
+        maxZ = Math.max(maxZ, polygon[i * 2 + 1]);
+      }
+      buildBands();
+    }
+
+    /** Sorts the edges into bands, so the point test only checks the edges near the point. */
+    private void buildBands() {
+      // About 4 edges per band, which is the best trade off for the few dozen edges of a plane.
+      numBands = Math.max(1, numVertices / 4);
+      float height = maxZ - minZ;
+      bandScale = height > 0 ? numBands / height : 0;
+      if (bandOffsets.length < numBands + 1) {
+        bandOffsets = new int[numBands + 1];
+      }
+      Arrays.fill(bandOffsets, 0, numBands + 1, 0);
+      int total = 0;
+      for (int i = 0; i < numVertices; i++) {
+        int first = firstBand(i);
+        int last = lastBand(i);
+        for (int b = first; b <= last; b++) {
+          bandOffsets[b + 1]++;
+        }
+        total += last - first + 1;
+      }
+      for (int b = 0; b < numBands; b++) {
+        bandOffsets[b + 1] += bandOffsets[b];
+      }
+      if (bandEdges.length < total) {
+        bandEdges = new int[total];
+      }
+      if (bandFill.length < numBands) {
+        bandFill = new int[numBands];
+      }
+      Arrays.fill(bandFill, 0, numBands, 0);
+      for (int i = 0; i < numVertices; i++) {
+        int last = lastBand(i);
+        for (int b = firstBand(i); b <= last; b++) {
+          bandEdges[bandOffsets[b] + bandFill[b]++] = i;
+        }
+      }
+    }
+
+    private int firstBand(int edge) {
+      int j = (edge + 1) % numVertices;
+      return band(Math.min(polygon[edge * 2 + 1], polygon[j * 2 + 1]));
+    }
+
+    private int lastBand(int edge) {
+      int j = (edge + 1) % numVertices;
+      return band(Math.max(polygon[edge * 2 + 1], polygon[j * 2 + 1]));
+    }
+
+    private int band(float z) {
+      return Math.max(0, Math.min(numBands - 1, (int) ((z - minZ) * bandScale)));
+    }
+
+    /** Returns the distance along the ray to the plane, or infinity if it misses the polygon. */
+    float intersect(Ray ray) {
+      if (numVertices < 3) {
+        return Float.POSITIVE_INFINITY;
+      }
+      float cosine =
+          ray.direction.x * pose[4] + ray.direction.y * pose[5] + ray.direction.z * pose[6];
+      if (Math.abs(cosine) < MIN_COSINE) {
+        return Float.POSITIVE_INFINITY;
+      }
+      float toCenterX = pose[12] - ray.origin.x;
+      float toCenterY = pose[13] - ray.origin.y;
+      float toCenterZ = pose[14] - ray.origin.z;
+      float distance = (toCenterX * pose[4] + toCenterY * pose[5] + toCenterZ * pose[6]) / cosine;
+      if (distance < 0) {
+        return Float.POSITIVE_INFINITY;
+      }
+      // The hit relative to the center, projected on the x and z axes of the plane.
+      float dx = ray.direction.x * distance - toCenterX;
+      float dy = ray.direction.y * distance - toCenterY;
+      float dz = ray.direction.z * distance - toCenterZ;
+      float x = dx * pose[0] + dy * pose[1] + dz * pose[2];
+      float z = dx * pose[8] + dy * pose[9] + dz * pose[10];
+      return contains(x, z) ? distance : Float.POSITIVE_INFINITY;
+    }
+
+    /** Returns true if the point is in the polygon, counting the edges crossed to its left. */
+    boolean contains(float x, float z) {
+      if (x < minX || x > maxX || z < minZ || z > maxZ) {
+        return false;
+      }
+      int b = band(z);
+      boolean inside = false;
+      for (int k = bandOffsets[b]; k < bandOffsets[b + 1]; k++) {
+        int i = bandEdges[k];
+        int j = (i + 1) % numVertices;
+        float xi = polygon[i * 2];
+        float zi = polygon[i * 2 + 1];
+        float xj = polygon[j * 2];
+        float zj = polygon[j * 2 + 1];
+        if ((zi > z) != (zj > z) && x < xi + (z - zi) * (xj - xi) / (zj - zi)) {
+          inside = !inside;
+        }
+      }
+      return inside;
+    }
+  }
+}
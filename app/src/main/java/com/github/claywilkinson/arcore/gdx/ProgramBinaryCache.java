@@ -0,0 +1,295 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.opengl.GLES30;
+import android.support.annotation.Nullable;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.glutils.GLVersion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.graphics.profiling.GL20Interceptor;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps the binaries of the linked shader programs on disk, so the next launches load them instead
+ * of compiling the shaders again, which takes a noticeable time on older drivers. This needs
+ * OpenGL ES 3, on other devices and until {@link #setDirectory(File)} is called the programs are
+ * compiled from source.
+ *
+ * <p>The binaries are stored by the hash of the sources, in a directory for the GL vendor,
+ * renderer and version, so a driver update starts an empty cache. A binary the driver rejects is
+ * deleted and the program is compiled from source. Programs recreated by libGDX after the GL
+ * context is lost are compiled from source.
+ */
+public class ProgramBinaryCache {
+  private static final String TAG = "ProgramBinaryCache";
+
+  @Nullable private static File directory;
+  // The directory of the current driver, created on the GL thread on first use.
+  @Nullable private static File driverDirectory;
+  private static boolean checked;
+
+  private ProgramBinaryCache() {}
+
+  /**
+   * Sets the directory the binaries are kept in, usually in the cache directory of the app. Null
+   * stops using the cache.
+   */
+  public static synchronized void setDirectory(@Nullable File directory) {
+    ProgramBinaryCache.directory = directory;
+    driverDirectory = null;
+    checked = false;
+  }
+
+  /**
+   * Creates a shader program, from its cached binary if there is one, otherwise from source, and
+   * then caches its binary. This is called on the GL thread instead of the {@link ShaderProgram}
+   * constructor.
+   */
+  public static ShaderProgram createProgram(String vertexShader, String fragmentShader) {
+    File file = getFile(vertexShader, fragmentShader);
+    if (file == null) {
+      return new ShaderProgram(vertexShader, fragmentShader);
+    }
+    if (file.exists()) {
+      ShaderProgram program = loadProgram(file, vertexShader, fragmentShader);
+      if (program != null) {
+        return program;
+      }
+    }
+    ProgramInterceptor linker = new ProgramInterceptor(Gdx.gl20, null, 0);
+    ShaderProgram program = create(linker, vertexShader, fragmentShader);
+    if (program.isCompiled()) {
+      saveBinary(linker.program, file);
+    }
+    return program;
+  }
+
+  /**
+   * Creates the program with the GL calls going through the interceptor. The program constructor
+   * compiles and links the shaders through Gdx.gl20.
+   */
+  private static ShaderProgram create(
+      ProgramInterceptor interceptor, String vertexShader, String fragmentShader) {
+    GL20 gl = Gdx.gl;
+    GL20 gl20 = Gdx.gl20;
+    Gdx.gl = interceptor;
+    Gdx.gl20 = interceptor;
+    try {
+      return new ShaderProgram(vertexShader, fragmentShader);
+    } finally {
+      Gdx.gl = gl;
+      Gdx.gl20 = gl20;
+    }
+  }
+
+  @Nullable
+  private static synchronized File getFile(String vertexShader, String fragmentShader) {
+    if (!checked) {
+      checked = true;
+      driverDirectory = createDriverDirectory();
+    }
+    if (driverDirectory == null) {
+      return null;
+    }
+    String vertexPrefix = ShaderProgram.prependVertexCode != null
+        ? ShaderProgram.prependVertexCode : "";
+    String fragmentPrefix = ShaderProgram.prependFragmentCode != null
+        ? ShaderProgram.prependFragmentCode : "";
+    return new File(driverDirectory,
+        hash(vertexPrefix + vertexShader + "\0" + fragmentPrefix + fragmentShader) + ".bin");
+  }
+
+  @Nullable
+  private static File createDriverDirectory() {
+    if (directory == null) {
+      return null;
+    }
+    GLVersion version = Gdx.graphics.getGLVersion();
+    if (version == null || !version.isVersionEqualToOrHigher(3, 0)) {
+      return null;
+    }
+    int[] formats = new int[1];
+    GLES30.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+    if (formats[0] == 0) {
+      return null;
+    }
+    String driver = Gdx.gl.glGetString(GL20.GL_VENDOR) + "\0"
+        + Gdx.gl.glGetString(GL20.GL_RENDERER) + "\0" + Gdx.gl.glGetString(GL20.GL_VERSION);
+    File driverDirectory = new File(directory, hash(driver));
+    // The binaries of other drivers are never loaded again.
+    File[] others = directory.listFiles();
+    if (others != null) {
+      for (File other : others) {
+        if (!other.equals(driverDirectory)) {
+          delete(other);
+        }
+      }
+    }
+    if (!driverDirectory.isDirectory() && !driverDirectory.mkdirs()) {
+      Gdx.app.error(TAG, "Couldn't create " + driverDirectory);
+      return null;
+    }
+    return driverDirectory;
+  }
+
+  /** Loads the program from its binary, returns null if the binary cannot be used. */
+  @Nullable
+  private static ShaderProgram loadProgram(File file, String vertexShader, String fragmentShader) {
+    int format;
+    ByteBuffer binary;
+    try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+      format = input.readInt();
+      byte[] bytes = new byte[input.readInt()];
+      input.readFully(bytes);
+      binary = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+      binary.put(bytes).flip();
+    } catch (IOException e) {
+      Gdx.app.error(TAG, "Couldn't read " + file, e);
+      delete(file);
+      return null;
+    }
+
+    ProgramInterceptor loader = new ProgramInterceptor(Gdx.gl20, binary, format);
+    ShaderProgram program = create(loader, vertexShader, fragmentShader);
+    if (!program.isCompiled()) {
+      // Rejected by the driver, the binary is replaced once the program is compiled.
+      Gdx.app.log(TAG, "Couldn't load " + file + ": " + program.getLog());
+      program.dispose();
+      delete(file);
+      return null;
+    }
+    return program;
+  }
+
+  private static void saveBinary(int program, File file) {
+    int[] values = new int[2];
+    GLES30.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, values, 0);
+    if (values[0] <= 0) {
+      return;
+    }
+    ByteBuffer binary = ByteBuffer.allocateDirect(values[0]).order(ByteOrder.nativeOrder());
+    GLES30.glGetProgramBinary(program, values[0], values, 0, values, 1, binary);
+    int length = values[0];
+    int format = values[1];
+    byte[] bytes = new byte[length];
+    binary.get(bytes);
+
+    // Written next to the file and renamed, so a partly written binary is never loaded.
+    File temporary = new File(file.getPath() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(new FileOutputStream(temporary))) {
+      output.writeInt(format);
+      output.writeInt(length);
+      output.write(bytes);
+    } catch (IOException e) {
+      Gdx.app.error(TAG, "Couldn't write " + temporary, e);
+      delete(temporary);
+      return;
+    }
+    if (!temporary.renameTo(file)) {
+      Gdx.app.error(TAG, "Couldn't rename " + temporary);
+      delete(temporary);
+    }
+  }
+
+  private static String hash(String text) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8"));
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+      // Both are required on every platform.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    if (!file.delete() && file.exists()) {
+      Gdx.app.error(TAG, "Couldn't delete " + file);
+    }
+  }
+
+  /**
+   * Passes the calls of the program constructor to the GL. With a binary, the shaders are not
+   * compiled and the program is loaded from the binary rather than linked. Without one, the
+   * program is linked so its binary can be read.
+   */
+  private static class ProgramInterceptor extends GL20Interceptor {
+    @Nullable private final ByteBuffer binary;
+    private final int format;
+    // The program linked or loaded.
+    int program;
+
+    ProgramInterceptor(GL20 gl20, @Nullable ByteBuffer binary, int format) {
+      // The profiler only logs the GL errors, it is not enabled.
+      super(new GLProfiler(Gdx.graphics), gl20);
+      this.binary = binary;
+      this.format = format;
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+      // With a binary, the shaders are only attached to the program, the binary replaces them.
+      if (binary == null) {
+        super.glCompileShader(shader);
+      }
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, IntBuffer params) {
+      if (binary != null && pname == GL20.GL_COMPILE_STATUS) {
+        params.put(0, GL20.GL_TRUE);
+      } else {
+        super.glGetShaderiv(shader, pname, params);
+      }
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+      this.program = program;
+      if (binary != null) {
+        // Sets the link status of the program, which the constructor checks.
+        GLES30.glProgramBinary(program, format, binary, binary.remaining());
+      } else {
+        GLES30.glProgramParameteri(
+            program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES30.GL_TRUE);
+        super.glLinkProgram(program);
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+
+/**
+ * Mesh with a compact vertex layout, 16 bytes per vertex instead of 32:
+ *
+ * <ul>
+ *   <li>position - 4 unsigned normalized shorts, the 4th is padding.
+ *   <li>normal - 4 signed normalized bytes, the 4th is padding.
+ *   <li>texture coordinates - 2 unsigned normalized shorts.
+ * </ul>
+ *
+ * The position and texture coordinates are mapped to the range of the mesh, the scale and offset
+ * to restore them are kept with the mesh. {@link QuantizedShader} renders these meshes.
+ *
+ * <p>The vertices are not floats, so the bounds are computed from the quantization range rather
+ * than the vertices.
+ */
+public class QuantizedMesh extends Mesh {
+  private static final int SHORT_RANGE = 0xffff;
+  private static final int BYTE_RANGE = 127;
+
+  // Range of the values, value = offset + quantized * scale, with quantized in [0, 1].
+  public final Vector3 positionOffset = new Vector3();
+  public final Vector3 positionScale = new Vector3();
+  public final Vector2 uvOffset = new Vector2();
+  public final Vector2 uvScale = new Vector2();
+
+  private final Vector3 tmp = new Vector3();
+
+  public QuantizedMesh(
+      boolean isStatic,
+      int maxVertices,
+      int maxIndices,
+      VertexAttributes attributes,
+      Vector3 positionOffset,
+      Vector3 positionScale,
+      Vector2 uvOffset,
+      Vector2 uvScale) {
+    super(isStatic, maxVertices, maxIndices, attributes);
+    this.positionOffset.set(positionOffset);
+    this.positionScale.set(positionScale);
+    this.uvOffset.set(uvOffset);
+    this.uvScale.set(uvScale);
+  }
+
+  /** Creates the vertex attributes of the compact layout. */
+  public static VertexAttribute[] createAttributes(boolean hasNormals, boolean hasUVs) {
+    VertexAttribute[] attributes = new VertexAttribute[1 + (hasNormals ? 1 : 0) + (hasUVs ? 1 : 0)];
+    int i = 0;
+    attributes[i++] =
+        new VertexAttribute(
+            VertexAttributes.Usage.Position,
+            4,
+            GL20.GL_UNSIGNED_SHORT,
+            true,
+            QuantizedShader.POSITION_ATTRIBUTE);
+    if (hasNormals) {
+      attributes[i++] =
+          new VertexAttribute(
+              VertexAttributes.Usage.Normal,
+              4,
+              GL20.GL_BYTE,
+              true,
+              QuantizedShader.NORMAL_ATTRIBUTE);
+    }
+    if (hasUVs) {
+      attributes[i] =
+          new VertexAttribute(
+              VertexAttributes.Usage.TextureCoordinates,
+              2,
+              GL20.GL_UNSIGNED_SHORT,
+              true,
+              QuantizedShader.TEXCOORD_ATTRIBUTE);
+    }
+    return attributes;
+  }
+
+  /** Quantizes a value to an unsigned short, given the offset and scale of the range. */
+  public static short quantize(float value, float offset, float scale) {
+    if (scale == 0) {
+      // All the values are the offset.
+      return 0;
+    }
+    return (short) Math.round((value - offset) / scale * SHORT_RANGE);
+  }
+
+  /** Quantizes a normal component to a signed byte. */
+  public static byte quantizeNormal(float value) {
+    return (byte) Math.round(Math.max(-1f, Math.min(1f, value)) * BYTE_RANGE);
+  }
+
+  /** Returns the scale for the range of values between min and max. */
+  public static float scale(float min, float max) {
+    return max > min ? max - min : 0f;
+  }
+
+  @Override
+  public void calculateBoundingBox(BoundingBox bbox) {
+    bbox.set(positionOffset, tmp.set(positionOffset).add(positionScale));
+  }
+
+  @Override
+  public BoundingBox extendBoundingBox(
+      BoundingBox out, int offset, int count, Matrix4 transform) {
+    // Parts are bounded by the whole mesh.
+    for (int corner = 0; corner < 8; corner++) {
+      tmp.set(
+          positionOffset.x + ((corner & 1) == 0 ? 0 : positionScale.x),
+          positionOffset.y + ((corner & 2) == 0 ? 0 : positionScale.y),
+          positionOffset.z + ((corner & 4) == 0 ? 0 : positionScale.z));
+      if (transform != null) {
+        tmp.mul(transform);
+      }
+      out.ext(tmp);
+    }
+    return out;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.graphics.g3d.Attributes;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.shaders.BaseShader;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+
+/**
+ * Default shader for rendering {@link QuantizedMesh} objects. This is the libGDX default shader
+ * with the position and texture coordinate attributes replaced by their quantized versions, which
+ * are restored using the range of the mesh at the start of the vertex shader. Normals are already
+ * in the right range, they only need to be normalized, which the default shader does.
+ */
+public class QuantizedShader extends DefaultShader {
+  public static final String POSITION_ATTRIBUTE = "a_quantizedPosition";
+  public static final String NORMAL_ATTRIBUTE = "a_normal";
+  public static final String TEXCOORD_ATTRIBUTE = "a_quantizedTexCoord0";
+
+  private static final String POSITION_DECLARATION = "attribute vec3 a_position;";
+  private static final String TEXCOORD_DECLARATION = "attribute vec2 a_texCoord0;";
+
+  private static String vertexShader;
+
+  public QuantizedShader(Renderable renderable) {
+    this(renderable, new Config());
+  }
+
+  public QuantizedShader(Renderable renderable, Config config) {
+    super(
+        renderable,
+        config,
+        createProgram(
+            createPrefix(renderable, config),
+            getQuantizedVertexShader(config),
+            config.fragmentShader != null ? config.fragmentShader : getDefaultFragmentShader()));
+    register("u_positionOffset", new RangeSetter(RangeSetter.POSITION_OFFSET));
+    register("u_positionScale", new RangeSetter(RangeSetter.POSITION_SCALE));
+    register("u_uvOffset", new RangeSetter(RangeSetter.UV_OFFSET));
+    register("u_uvScale", new RangeSetter(RangeSetter.UV_SCALE));
+  }
+
+  private static ShaderProgram createProgram(
+      String prefix, String vertexShader, String fragmentShader) {
+    return ProgramBinaryCache.createProgram(prefix + vertexShader, prefix + fragmentShader);
+  }
+
+  @Override
+  public boolean canRender(Renderable renderable) {
+    return renderable.meshPart.mesh instanceof QuantizedMesh && super.canRender(renderable);
+  }
+
+  /**
+   * Returns the vertex shader with the quantized attributes. The default attributes are replaced
+   * by macros that restore them, so the rest of the shader is unchanged.
+   */
+  private static synchronized String getQuantizedVertexShader(Config config) {
+    if (config.vertexShader != null) {
+      return quantize(config.vertexShader);
+    }
+    if (vertexShader == null) {
+      vertexShader = quantize(getDefaultVertexShader());
+    }
+    return vertexShader;
+  }
+
+  private static String quantize(String source) {
+    return source
+        .replace(
+            POSITION_DECLARATION,
+            "attribute vec3 " + POSITION_ATTRIBUTE + ";\n"
+                + "uniform vec3 u_positionOffset;\n"
+                + "uniform vec3 u_positionScale;\n"
+                + "#define a_position (u_positionOffset + "
+                + POSITION_ATTRIBUTE
+                + " * u_positionScale)")
+        .replace(
+            TEXCOORD_DECLARATION,
+            "attribute vec2 " + TEXCOORD_ATTRIBUTE + ";\n"
+                + "uniform vec2 u_uvOffset;\n"
+                + "uniform vec2 u_uvScale;\n"
+                + "#define a_texCoord0 (u_uvOffset + "
+                + TEXCOORD_ATTRIBUTE
+                + " * u_uvScale)");
+  }
+
+  /** Sets the quantization range of the mesh being rendered. */
+  private static class RangeSetter implements BaseShader.Setter {
+    static final int POSITION_OFFSET = 0;
+    static final int POSITION_SCALE = 1;
+    static final int UV_OFFSET = 2;
+    static final int UV_SCALE = 3;
+
+    private final int value;
+
+    RangeSetter(int value) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean isGlobal(BaseShader shader, int inputID) {
+      return false;
+    }
+
+    @Override
+    public void set(
+        BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+      QuantizedMesh mesh = (QuantizedMesh) renderable.meshPart.mesh;
+      switch (value) {
+        case POSITION_OFFSET:
+          shader.set(inputID, mesh.positionOffset);
+          break;
+        case POSITION_SCALE:
+          shader.set(inputID, mesh.positionScale);
+          break;
+        case UV_OFFSET:
+          shader.set(inputID, mesh.uvOffset);
+          break;
+        default:
+          shader.set(inputID, mesh.uvScale);
+          break;
+      }
+    }
+  }
+}
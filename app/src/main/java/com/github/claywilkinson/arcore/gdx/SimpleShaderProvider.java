@@ -16,9 +16,13 @@ limitations under the License.
 package com.github.claywilkinson.arcore.gdx;
 
 import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
 import com.badlogic.gdx.graphics.g3d.Shader;
 import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
 import com.badlogic.gdx.graphics.g3d.utils.BaseShaderProvider;
+import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
 
 /**
  * Simple shader provider that gives an extension point to register new shaders. TODO: THere must be
@@ -30,8 +34,75 @@ public class SimpleShaderProvider extends BaseShaderProvider {
     this.shaders.add(shader);
   }
 
+  /**
+   * Creates the shaders needed to render the renderables of the provider. Shaders are otherwise
+   * compiled the first time something using them is drawn, which stalls that frame. Calling this
+   * once the models are loaded moves the compile to the loading frames instead.
+   */
+  public static void prepareShaders(
+      ShaderProvider shaderProvider, RenderableProvider renderableProvider) {
+    Pool<Renderable> pool =
+        new Pool<Renderable>() {
+          @Override
+          protected Renderable newObject() {
+            return new Renderable();
+          }
+        };
+    Array<Renderable> renderables = new Array<>();
+    renderableProvider.getRenderables(renderables, pool);
+    for (Renderable renderable : renderables) {
+      shaderProvider.getShader(renderable);
+    }
+  }
+
+  /**
+   * Gets the shader for the renderable. Meshes with the compact layout of {@link QuantizedMesh}
+   * are rendered with a {@link QuantizedShader}, other meshes never are. The libGDX shaders only
+   * compare the usage of the vertex attributes, which is the same for both layouts, so this is
+   * checked here.
+   */
+  @Override
+  public Shader getShader(Renderable renderable) {
+    boolean quantized = renderable.meshPart.mesh instanceof QuantizedMesh;
+    Shader suggestedShader = renderable.shader;
+    if (suggestedShader != null
+        && (suggestedShader instanceof QuantizedShader) == quantized
+        && suggestedShader.canRender(renderable)) {
+      return suggestedShader;
+    }
+    for (Shader shader : shaders) {
+      if ((shader instanceof QuantizedShader) == quantized && shader.canRender(renderable)) {
+        return shader;
+      }
+    }
+    Shader shader = quantized ? createQuantizedShader(renderable) : createShader(renderable);
+    shader.init();
+    shaders.add(shader);
+    return shader;
+  }
+
   @Override
   protected Shader createShader(Renderable renderable) {
-    return new DefaultShader(renderable);
+    return createDefaultShader(renderable, new DefaultShader.Config());
+  }
+
+  /**
+   * Creates a {@link DefaultShader}, with its program from the {@link ProgramBinaryCache} rather
+   * than compiled by the shader.
+   */
+  public static DefaultShader createDefaultShader(
+      Renderable renderable, DefaultShader.Config config) {
+    String prefix = DefaultShader.createPrefix(renderable, config);
+    String vertexShader = config.vertexShader != null
+        ? config.vertexShader : DefaultShader.getDefaultVertexShader();
+    String fragmentShader = config.fragmentShader != null
+        ? config.fragmentShader : DefaultShader.getDefaultFragmentShader();
+    return new DefaultShader(renderable, config,
+        ProgramBinaryCache.createProgram(prefix + vertexShader, prefix + fragmentShader));
+  }
+
+  /** Creates the shader for a renderable using a {@link QuantizedMesh}. */
+  protected Shader createQuantizedShader(Renderable renderable) {
+    return new QuantizedShader(renderable);
   }
 }
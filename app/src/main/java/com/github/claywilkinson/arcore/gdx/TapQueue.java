@@ -0,0 +1,116 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of the taps on the screen, from the UI thread which receives the touch events to the GL
+ * thread which hit tests them against the ARCore frame. Taps that land between two frames are
+ * kept, unlike polling {@link com.badlogic.gdx.Input#justTouched()} once per frame.
+ *
+ * <p>This is a lock-free ring buffer for a single producer thread and a single consumer thread.
+ * The taps are stored in primitive arrays, so nothing is allocated per tap.
+ */
+public class TapQueue {
+  /** A tap read from the queue, see {@link #poll(Tap)}. */
+  public static class Tap {
+    /** Position of the tap in the view, in pixels. */
+    public float x;
+    public float y;
+    /**
+     * Time of the tap in nanoseconds, in the time base of {@link
+     * android.os.SystemClock#uptimeMillis()}.
+     */
+    public long timeNanos;
+  }
+
+  private final int mask;
+  private final float[] xs;
+  private final float[] ys;
+  private final long[] times;
+  // Next tap to read, only written by the consumer.
+  private final AtomicLong head = new AtomicLong();
+  // Next tap to write, only written by the producer.
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicInteger dropped = new AtomicInteger();
+
+  /**
+   * @param capacity - the number of taps the queue holds, rounded up to a power of two.
+   */
+  public TapQueue(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+    mask = size - 1;
+    xs = new float[size];
+    ys = new float[size];
+    times = new long[size];
+  }
+
+  /**
+   * Adds a tap, from the producer thread.
+   *
+   * @return false if the queue is full and the tap was dropped.
+   */
+  public boolean offer(float x, float y, long timeNanos) {
+    long t = tail.get();
+    if (t - head.get() > mask) {
+      dropped.incrementAndGet();
+      return false;
+    }
+    int i = (int) t & mask;
+    xs[i] = x;
+    ys[i] = y;
+    times[i] = timeNanos;
+    // Publishes the tap to the consumer after it is written.
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  /**
+   * Removes the oldest tap, from the consumer thread.
+   *
+   * @param out - receives the tap.
+   * @return false if the queue is empty.
+   */
+  public boolean poll(Tap out) {
+    long h = head.get();
+    if (h == tail.get()) {
+      return false;
+    }
+    int i = (int) h & mask;
+    out.x = xs[i];
+    out.y = ys[i];
+    out.timeNanos = times[i];
+    // Gives the slot back to the producer after it is read.
+    head.lazySet(h + 1);
+    return true;
+  }
+
+  /** Removes all the taps, from the consumer thread. */
+  public void clear() {
+    head.lazySet(tail.get());
+  }
+
+  public boolean isEmpty() {
+    return head.get() == tail.get();
+  }
+
+  /** Returns the number of taps dropped because the queue was full. */
+  public int getDroppedCount() {
+    return dropped.get();
+  }
+}
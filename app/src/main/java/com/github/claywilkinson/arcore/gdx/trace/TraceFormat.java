@@ -0,0 +1,70 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx.trace;
+
+import com.google.ar.core.Pose;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the trace files written by {@link TraceRecorder} and read by {@link TracePlayer}. The
+ * values are little endian, the order of the devices and development machines, so the polygons
+ * can be read in place. A trace is a header followed by the frames:
+ *
+ * <pre>
+ *   header:       int MAGIC, int VERSION
+ *   frame:        int length of the rest of the frame, in bytes
+ *                 long timestamp, byte tracking state, byte flags
+ *                 float[16] projection for NEAR and FAR, float[16] view
+ *                 if FLAG_DISPLAY_GEOMETRY: float[6] (0, 0), (1, 0) and (0, 1) transformed
+ *                 short planes updated,  per plane: int id, byte type, byte tracking state,
+ *                     int id of the plane it was merged into or NO_ID, pose, float extent x,
+ *                     float extent z, int polygon floats, float[] polygon
+ *                 short anchors updated, per anchor: int id, byte tracking state, pose
+ *                 short hit tests,       per hit test: float x, float y, short hits,
+ *                     per hit: int plane id or NO_ID, pose, float distance
+ *                 short anchors created, per anchor: int id
+ *   pose:         float tx, ty, tz, qx, qy, qz, qw
+ * </pre>
+ *
+ * The ids are given in the order the trackables are first seen. The hit tests and the anchors
+ * created are the ones of the scene while the frame was rendered, they are replayed in order.
+ */
+final class TraceFormat {
+  static final int MAGIC = 0x52545241; // "ARTR" read as little endian.
+  static final int VERSION = 1;
+  static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  static final int FLAG_DISPLAY_GEOMETRY = 1;
+  static final int NO_ID = -1;
+
+  // Clip planes of the recorded projection, the player adjusts it to the ones asked for.
+  static final float NEAR = 0.1f;
+  static final float FAR = 100f;
+
+  private TraceFormat() {}
+
+  static void putPose(ByteBuffer buffer, Pose pose) {
+    buffer.putFloat(pose.tx()).putFloat(pose.ty()).putFloat(pose.tz());
+    buffer.putFloat(pose.qx()).putFloat(pose.qy()).putFloat(pose.qz()).putFloat(pose.qw());
+  }
+
+  static Pose getPose(ByteBuffer buffer) {
+    float[] translation = {buffer.getFloat(), buffer.getFloat(), buffer.getFloat()};
+    float[] rotation = {buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat()};
+    return new Pose(translation, rotation);
+  }
+}
@@ -0,0 +1,435 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx.trace;
+
+import android.support.annotation.Nullable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.github.claywilkinson.arcore.gdx.ARAnchor;
+import com.github.claywilkinson.arcore.gdx.ARFrame;
+import com.github.claywilkinson.arcore.gdx.ARHitResult;
+import com.github.claywilkinson.arcore.gdx.ARPlane;
+import com.github.claywilkinson.arcore.gdx.ARSession;
+import com.github.claywilkinson.arcore.gdx.TapQueue;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays a trace written by {@link TraceRecorder}, as fast as the frames are asked for. The file
+ * is memory mapped, and the polygons of the planes are read in place, so a long trace is neither
+ * loaded up front nor copied.
+ *
+ * <p>The hit tests of the recorded scene are replayed as taps, see {@link #pollTap(TapQueue.Tap)}:
+ * the host queues them before rendering the frame, and {@link ARFrame#hitTest(float, float)}
+ * returns the recorded hits of each one in order. The anchors created by the scene take the ids of
+ * the recorded ones, so their later updates are replayed. Scenes which do the same as the recorded
+ * one see the same session.
+ */
+public class TracePlayer implements ARSession {
+  private static final TrackingState[] TRACKING_STATES = TrackingState.values();
+  private static final Plane.Type[] PLANE_TYPES = Plane.Type.values();
+
+  private final MappedByteBuffer trace;
+  private final PlaybackFrame frame = new PlaybackFrame();
+  private final IntMap<PlaybackPlane> planes = new IntMap<>();
+  private final List<ARPlane> allPlanes = new ArrayList<>();
+  private final IntMap<PlaybackAnchor> anchors = new IntMap<>();
+  private final List<ARAnchor> allAnchors = new ArrayList<>();
+  private final Collection<ARPlane> allPlanesView = Collections.unmodifiableList(allPlanes);
+  private final Collection<ARAnchor> allAnchorsView = Collections.unmodifiableList(allAnchors);
+  private int frames;
+  // Ids of the anchors created by the scene which were not recorded, counting down.
+  private int nextUnrecordedId = -2;
+
+  /**
+   * @param file - the trace file.
+   * @throws IOException if the file cannot be read or is not a trace.
+   */
+  public TracePlayer(File file) throws IOException {
+    try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+      FileChannel channel = input.getChannel();
+      // The mapping stays valid once the file is closed.
+      trace = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    trace.order(TraceFormat.ORDER);
+    if (trace.remaining() < 8 || trace.getInt() != TraceFormat.MAGIC) {
+      throw new IOException(file + " is not a trace");
+    }
+    int version = trace.getInt();
+    if (version != TraceFormat.VERSION) {
+      throw new IOException(file + " has version " + version + ", expected "
+          + TraceFormat.VERSION);
+    }
+  }
+
+  /** Returns the number of frames returned by {@link #update()}. */
+  public int getFrameCount() {
+    return frames;
+  }
+
+  /**
+   * Returns true once all the frames were returned. A frame cut short, when the recording did not
+   * close the file, is ignored.
+   */
+  public boolean isFinished() {
+    return trace.remaining() < 4 || trace.getInt(trace.position()) > trace.remaining() - 4;
+  }
+
+  /** Returns the next frame, null at the end of the trace. */
+  @Nullable
+  @Override
+  public ARFrame update() {
+    if (isFinished()) {
+      return null;
+    }
+    int length = trace.getInt();
+    int end = trace.position() + length;
+    frame.read(trace);
+    trace.position(end);
+    frames++;
+    return frame;
+  }
+
+  /**
+   * Returns the next tap of the current frame, which is a hit test made by the recorded scene.
+   *
+   * @param tap - receives the position of the tap, and the timestamp of the frame.
+   * @return false if there are no more taps in the frame.
+   */
+  public boolean pollTap(TapQueue.Tap tap) {
+    if (frame.nextTap >= frame.hitTests.size()) {
+      return false;
+    }
+    HitTest hitTest = frame.hitTests.get(frame.nextTap++);
+    tap.x = hitTest.x;
+    tap.y = hitTest.y;
+    tap.timeNanos = frame.timestamp;
+    return true;
+  }
+
+  @Override
+  public Collection<ARPlane> getAllPlanes() {
+    return allPlanesView;
+  }
+
+  @Override
+  public Collection<ARAnchor> getAllAnchors() {
+    return allAnchorsView;
+  }
+
+  @Override
+  public ARAnchor createAnchor(Pose pose) {
+    int id = frame.nextCreated < frame.createdIds.size
+        ? frame.createdIds.get(frame.nextCreated++) : nextUnrecordedId--;
+    PlaybackAnchor anchor = getAnchor(id);
+    anchor.state = TrackingState.TRACKING;
+    anchor.pose = pose;
+    return anchor;
+  }
+
+  private PlaybackPlane getPlane(int id) {
+    PlaybackPlane plane = planes.get(id);
+    if (plane == null) {
+      plane = new PlaybackPlane();
+      planes.put(id, plane);
+      allPlanes.add(plane);
+    }
+    return plane;
+  }
+
+  private PlaybackAnchor getAnchor(int id) {
+    PlaybackAnchor anchor = anchors.get(id);
+    if (anchor == null) {
+      anchor = new PlaybackAnchor();
+      anchors.put(id, anchor);
+      allAnchors.add(anchor);
+    }
+    return anchor;
+  }
+
+  /** A recorded hit test, and its hits. */
+  private static class HitTest {
+    float x;
+    float y;
+    final List<ARHitResult> hits = new ArrayList<>();
+  }
+
+  /** The current frame, the same object is reused by every update. */
+  private class PlaybackFrame implements ARFrame {
+    long timestamp;
+    TrackingState state;
+    boolean geometryChanged;
+    final float[] projection = new float[16];
+    final float[] view = new float[16];
+    // The texture coordinates (0, 0), (1, 0) and (0, 1) transformed.
+    final float[] uvTransform = {0, 0, 1, 0, 0, 1};
+    final List<ARPlane> updatedPlanes = new ArrayList<>();
+    final List<ARAnchor> updatedAnchors = new ArrayList<>();
+    final List<HitTest> hitTests = new ArrayList<>();
+    final IntArray createdIds = new IntArray();
+    int nextTap;
+    int nextHitTest;
+    int nextCreated;
+    private final Collection<ARPlane> updatedPlanesView =
+        Collections.unmodifiableList(updatedPlanes);
+    private final Collection<ARAnchor> updatedAnchorsView =
+        Collections.unmodifiableList(updatedAnchors);
+
+    void read(ByteBuffer buffer) {
+      timestamp = buffer.getLong();
+      state = TRACKING_STATES[buffer.get()];
+      geometryChanged = (buffer.get() & TraceFormat.FLAG_DISPLAY_GEOMETRY) != 0;
+      getFloats(buffer, projection, 16);
+      getFloats(buffer, view, 16);
+      if (geometryChanged) {
+        getFloats(buffer, uvTransform, 6);
+      }
+
+      updatedPlanes.clear();
+      for (int i = buffer.getShort(); i > 0; i--) {
+        PlaybackPlane plane = getPlane(buffer.getInt());
+        plane.read(buffer);
+        updatedPlanes.add(plane);
+      }
+
+      updatedAnchors.clear();
+      for (int i = buffer.getShort(); i > 0; i--) {
+        PlaybackAnchor anchor = getAnchor(buffer.getInt());
+        anchor.state = TRACKING_STATES[buffer.get()];
+        anchor.pose = TraceFormat.getPose(buffer);
+        if (!anchor.detached) {
+          updatedAnchors.add(anchor);
+        }
+      }
+
+      int count = buffer.getShort();
+      // The hit tests are rare, so their objects are not reused.
+      hitTests.clear();
+      for (int i = 0; i < count; i++) {
+        HitTest hitTest = new HitTest();
+        hitTest.x = buffer.getFloat();
+        hitTest.y = buffer.getFloat();
+        for (int j = buffer.getShort(); j > 0; j--) {
+          int planeId = buffer.getInt();
+          Pose pose = TraceFormat.getPose(buffer);
+          ARPlane plane = planeId != TraceFormat.NO_ID ? getPlane(planeId) : null;
+          hitTest.hits.add(new ARHitResult(plane, pose, buffer.getFloat()));
+        }
+        hitTests.add(hitTest);
+      }
+
+      createdIds.clear();
+      for (int i = buffer.getShort(); i > 0; i--) {
+        createdIds.add(buffer.getInt());
+      }
+      nextTap = 0;
+      nextHitTest = 0;
+      nextCreated = 0;
+    }
+
+    @Override
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return state;
+    }
+
+    @Override
+    public void getProjectionMatrix(float[] dest, int offset, float near, float far) {
+      System.arraycopy(projection, 0, dest, offset, 16);
+      // Only the depth terms depend on the clip planes.
+      dest[offset + 10] = (far + near) / (near - far);
+      dest[offset + 14] = 2 * far * near / (near - far);
+    }
+
+    @Override
+    public void getViewMatrix(float[] dest, int offset) {
+      System.arraycopy(view, 0, dest, offset, 16);
+    }
+
+    @Override
+    public boolean hasDisplayGeometryChanged() {
+      return geometryChanged;
+    }
+
+    @Override
+    public void transformDisplayUvCoords(FloatBuffer uvCoords, FloatBuffer outUvCoords) {
+      // The transform is a rotation, flip and crop, so it is given by three points.
+      float[] t = uvTransform;
+      for (int i = 0; i + 1 < uvCoords.limit(); i += 2) {
+        float u = uvCoords.get(i);
+        float v = uvCoords.get(i + 1);
+        outUvCoords.put(i, t[0] + u * (t[2] - t[0]) + v * (t[4] - t[0]));
+        outUvCoords.put(i + 1, t[1] + u * (t[3] - t[1]) + v * (t[5] - t[1]));
+      }
+    }
+
+    @Override
+    public List<ARHitResult> hitTest(float x, float y) {
+      if (nextHitTest >= hitTests.size()) {
+        return new ArrayList<>();
+      }
+      return hitTests.get(nextHitTest++).hits;
+    }
+
+    @Override
+    public Collection<ARPlane> getUpdatedPlanes() {
+      return updatedPlanesView;
+    }
+
+    @Override
+    public Collection<ARAnchor> getUpdatedAnchors() {
+      return updatedAnchorsView;
+    }
+  }
+
+  private class PlaybackPlane implements ARPlane {
+    TrackingState state = TrackingState.PAUSED;
+    Plane.Type type = Plane.Type.HORIZONTAL_UPWARD_FACING;
+    ARPlane subsumedBy;
+    Pose centerPose = Pose.IDENTITY;
+    float extentX;
+    float extentZ;
+    FloatBuffer polygon = FloatBuffer.allocate(0);
+
+    void read(ByteBuffer buffer) {
+      type = PLANE_TYPES[buffer.get()];
+      state = TRACKING_STATES[buffer.get()];
+      int subsumedById = buffer.getInt();
+      subsumedBy = subsumedById != TraceFormat.NO_ID ? getPlane(subsumedById) : null;
+      centerPose = TraceFormat.getPose(buffer);
+      extentX = buffer.getFloat();
+      extentZ = buffer.getFloat();
+      int floats = buffer.getInt();
+      // A view of the polygon in the mapped file, like ARCore gives a new buffer when it changes.
+      ByteBuffer bytes = buffer.slice().order(TraceFormat.ORDER);
+      bytes.limit(floats * 4);
+      polygon = bytes.asFloatBuffer();
+      buffer.position(buffer.position() + floats * 4);
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return state;
+    }
+
+    @Override
+    public Plane.Type getType() {
+      return type;
+    }
+
+    @Override
+    public Pose getCenterPose() {
+      return centerPose;
+    }
+
+    @Override
+    public float getExtentX() {
+      return extentX;
+    }
+
+    @Override
+    public float getExtentZ() {
+      return extentZ;
+    }
+
+    @Override
+    public FloatBuffer getPolygon() {
+      return polygon;
+    }
+
+    @Nullable
+    @Override
+    public ARPlane getSubsumedBy() {
+      return subsumedBy;
+    }
+
+    @Override
+    public boolean isPoseInPolygon(Pose pose) {
+      // Rotates the offset from the center by the inverse of the center rotation, v + 2 r x (r x v
+      // + w v) with r the negated vector part of the quaternion.
+      float vx = pose.tx() - centerPose.tx();
+      float vy = pose.ty() - centerPose.ty();
+      float vz = pose.tz() - centerPose.tz();
+      float rx = -centerPose.qx();
+      float ry = -centerPose.qy();
+      float rz = -centerPose.qz();
+      float w = centerPose.qw();
+      float cx = ry * vz - rz * vy + w * vx;
+      float cy = rz * vx - rx * vz + w * vy;
+      float cz = rx * vy - ry * vx + w * vz;
+      float x = vx + 2 * (ry * cz - rz * cy);
+      float z = vz + 2 * (rx * cy - ry * cx);
+      boolean inside = false;
+      int n = polygon.limit() / 2;
+      for (int i = 0, j = n - 1; i < n; j = i++) {
+        float xi = polygon.get(i * 2);
+        float zi = polygon.get(i * 2 + 1);
+        float xj = polygon.get(j * 2);
+        float zj = polygon.get(j * 2 + 1);
+        if ((zi > z) != (zj > z) && x < xi + (z - zi) * (xj - xi) / (zj - zi)) {
+          inside = !inside;
+        }
+      }
+      return inside;
+    }
+  }
+
+  private class PlaybackAnchor implements ARAnchor {
+    TrackingState state = TrackingState.TRACKING;
+    Pose pose = Pose.IDENTITY;
+    boolean detached;
+
+    @Override
+    public TrackingState getTrackingState() {
+      return detached ? TrackingState.STOPPED : state;
+    }
+
+    @Override
+    public Pose getPose() {
+      return pose;
+    }
+
+    @Override
+    public void detach() {
+      if (!detached) {
+        detached = true;
+        allAnchors.remove(this);
+      }
+    }
+  }
+
+  private static void getFloats(ByteBuffer buffer, float[] values, int count) {
+    for (int i = 0; i < count; i++) {
+      values[i] = buffer.getFloat();
+    }
+  }
+}
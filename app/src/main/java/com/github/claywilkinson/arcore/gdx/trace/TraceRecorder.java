@@ -0,0 +1,327 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx.trace;
+
+import android.support.annotation.Nullable;
+import com.badlogic.gdx.Gdx;
+import com.github.claywilkinson.arcore.gdx.ARAnchor;
+import com.github.claywilkinson.arcore.gdx.ARFrame;
+import com.github.claywilkinson.arcore.gdx.ARHitResult;
+import com.github.claywilkinson.arcore.gdx.ARPlane;
+import com.github.claywilkinson.arcore.gdx.ARSession;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Records an {@link ARSession} to a trace file, which {@link TracePlayer} replays. The recorder is
+ * the session given to the scene: it forwards to the recorded session, and writes the camera, the
+ * updated trackables, and the hit tests and anchors of the scene in each frame. See {@link
+ * TraceFormat} for the layout.
+ *
+ * <p>A frame is written once the next one starts, or the recorder is closed. This is only used
+ * from the GL thread.
+ */
+public class TraceRecorder implements ARSession, Closeable {
+  private static final String TAG = "TraceRecorder";
+
+  private final ARSession session;
+  private final FileChannel channel;
+  private final RecordingFrame frame = new RecordingFrame();
+  // The frame being recorded, and its hit tests and anchors created, written once it ends.
+  private ByteBuffer frameBuffer = allocate(16 * 1024);
+  private ByteBuffer hitTestBuffer = allocate(1024);
+  private ByteBuffer createdBuffer = allocate(256);
+  private short hitTests;
+  private short anchorsCreated;
+  private boolean recording;
+  // Set when a write failed, the session is still forwarded but no longer recorded.
+  private boolean failed;
+  private int frames;
+
+  private final HashMap<ARPlane, Integer> planeIds = new HashMap<>();
+  private final HashMap<ARAnchor, Integer> anchorIds = new HashMap<>();
+  private final float[] matrix = new float[16];
+  // The corners transformed to find the transform of the texture coordinates.
+  private final FloatBuffer uvCorners = ByteBuffer.allocateDirect(6 * 4)
+      .order(ByteOrder.nativeOrder()).asFloatBuffer().put(new float[] {0, 0, 1, 0, 0, 1});
+  private final FloatBuffer uvTransformed = ByteBuffer.allocateDirect(6 * 4)
+      .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+  /**
+   * @param session - the session to record.
+   * @param file - the trace file, it is replaced.
+   * @throws IOException if the file cannot be written.
+   */
+  public TraceRecorder(ARSession session, File file) throws IOException {
+    this.session = session;
+    channel = new FileOutputStream(file).getChannel();
+    ByteBuffer header = allocate(8).putInt(TraceFormat.MAGIC).putInt(TraceFormat.VERSION);
+    header.flip();
+    channel.write(header);
+  }
+
+  /** Returns the session being recorded. */
+  public ARSession getSession() {
+    return session;
+  }
+
+  /** Returns the number of frames written. */
+  public int getFrameCount() {
+    return frames;
+  }
+
+  @Nullable
+  @Override
+  public ARFrame update() {
+    endFrame();
+    ARFrame next = session.update();
+    if (next == null || failed) {
+      return next;
+    }
+    beginFrame(next);
+    frame.frame = next;
+    return frame;
+  }
+
+  @Override
+  public Collection<ARPlane> getAllPlanes() {
+    return session.getAllPlanes();
+  }
+
+  @Override
+  public Collection<ARAnchor> getAllAnchors() {
+    return session.getAllAnchors();
+  }
+
+  @Override
+  public ARAnchor createAnchor(Pose pose) {
+    ARAnchor anchor = session.createAnchor(pose);
+    if (recording) {
+      createdBuffer = ensure(createdBuffer, 4);
+      createdBuffer.putInt(anchorId(anchor));
+      anchorsCreated++;
+    }
+    return anchor;
+  }
+
+  /** Returns true if a write failed, which stops the recording. */
+  public boolean hasFailed() {
+    return failed;
+  }
+
+  /** Writes the last frame and closes the file. */
+  @Override
+  public void close() throws IOException {
+    endFrame();
+    channel.close();
+  }
+
+  private void beginFrame(ARFrame next) {
+    ByteBuffer buffer = frameBuffer;
+    buffer.clear();
+    buffer.putInt(0); // The length, set once the frame ends.
+    buffer.putLong(next.getTimestamp());
+    buffer.put((byte) next.getTrackingState().ordinal());
+    boolean geometryChanged = next.hasDisplayGeometryChanged();
+    buffer.put((byte) (geometryChanged ? TraceFormat.FLAG_DISPLAY_GEOMETRY : 0));
+    next.getProjectionMatrix(matrix, 0, TraceFormat.NEAR, TraceFormat.FAR);
+    putFloats(buffer, matrix, 16);
+    next.getViewMatrix(matrix, 0);
+    putFloats(buffer, matrix, 16);
+    if (geometryChanged) {
+      uvCorners.rewind();
+      uvTransformed.clear();
+      next.transformDisplayUvCoords(uvCorners, uvTransformed);
+      for (int i = 0; i < 6; i++) {
+        buffer.putFloat(uvTransformed.get(i));
+      }
+    }
+
+    Collection<ARPlane> planes = next.getUpdatedPlanes();
+    buffer.putShort((short) planes.size());
+    for (ARPlane plane : planes) {
+      FloatBuffer polygon = plane.getPolygon();
+      buffer = frameBuffer = ensure(buffer, 50 + polygon.limit() * 4);
+      buffer.putInt(planeId(plane));
+      buffer.put((byte) plane.getType().ordinal());
+      buffer.put((byte) plane.getTrackingState().ordinal());
+      ARPlane subsumedBy = plane.getSubsumedBy();
+      buffer.putInt(subsumedBy != null ? planeId(subsumedBy) : TraceFormat.NO_ID);
+      TraceFormat.putPose(buffer, plane.getCenterPose());
+      buffer.putFloat(plane.getExtentX());
+      buffer.putFloat(plane.getExtentZ());
+      buffer.putInt(polygon.limit());
+      for (int i = 0; i < polygon.limit(); i++) {
+        buffer.putFloat(polygon.get(i));
+      }
+    }
+
+    Collection<ARAnchor> anchors = next.getUpdatedAnchors();
+    buffer = frameBuffer = ensure(buffer, 2 + anchors.size() * 33);
+    buffer.putShort((short) anchors.size());
+    for (ARAnchor anchor : anchors) {
+      buffer.putInt(anchorId(anchor));
+      buffer.put((byte) anchor.getTrackingState().ordinal());
+      TraceFormat.putPose(buffer, anchor.getPose());
+    }
+    hitTestBuffer.clear();
+    createdBuffer.clear();
+    hitTests = 0;
+    anchorsCreated = 0;
+    recording = true;
+  }
+
+  private void endFrame() {
+    if (!recording) {
+      return;
+    }
+    recording = false;
+    ByteBuffer buffer = frameBuffer =
+        ensure(frameBuffer, 4 + hitTestBuffer.position() + createdBuffer.position());
+    buffer.putShort(hitTests);
+    hitTestBuffer.flip();
+    buffer.put(hitTestBuffer);
+    buffer.putShort(anchorsCreated);
+    createdBuffer.flip();
+    buffer.put(createdBuffer);
+    buffer.putInt(0, buffer.position() - 4);
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      frames++;
+    } catch (IOException e) {
+      failed = true;
+      Gdx.app.error(TAG, "Cannot write the trace, recording stopped", e);
+    }
+  }
+
+  private void recordHitTest(float x, float y, List<ARHitResult> hits) {
+    ByteBuffer buffer = hitTestBuffer = ensure(hitTestBuffer, 10 + hits.size() * 36);
+    buffer.putFloat(x).putFloat(y);
+    buffer.putShort((short) hits.size());
+    for (ARHitResult hit : hits) {
+      buffer.putInt(hit.getPlane() != null ? planeId(hit.getPlane()) : TraceFormat.NO_ID);
+      TraceFormat.putPose(buffer, hit.getHitPose());
+      buffer.putFloat(hit.getDistance());
+    }
+    hitTests++;
+  }
+
+  private int planeId(ARPlane plane) {
+    Integer id = planeIds.get(plane);
+    if (id == null) {
+      id = planeIds.size();
+      planeIds.put(plane, id);
+    }
+    return id;
+  }
+
+  private int anchorId(ARAnchor anchor) {
+    Integer id = anchorIds.get(anchor);
+    if (id == null) {
+      id = anchorIds.size();
+      anchorIds.put(anchor, id);
+    }
+    return id;
+  }
+
+  private static void putFloats(ByteBuffer buffer, float[] values, int count) {
+    for (int i = 0; i < count; i++) {
+      buffer.putFloat(values[i]);
+    }
+  }
+
+  private static ByteBuffer allocate(int capacity) {
+    return ByteBuffer.allocate(capacity).order(TraceFormat.ORDER);
+  }
+
+  /** Returns the buffer, or a copy twice as large if it cannot fit the bytes. */
+  private static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return buffer;
+    }
+    ByteBuffer larger = allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+    buffer.flip();
+    return larger.put(buffer);
+  }
+
+  /** The frame given to the scene, which records its hit tests. */
+  private class RecordingFrame implements ARFrame {
+    ARFrame frame;
+
+    @Override
+    public long getTimestamp() {
+      return frame.getTimestamp();
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return frame.getTrackingState();
+    }
+
+    @Override
+    public void getProjectionMatrix(float[] dest, int offset, float near, float far) {
+      frame.getProjectionMatrix(dest, offset, near, far);
+    }
+
+    @Override
+    public void getViewMatrix(float[] dest, int offset) {
+      frame.getViewMatrix(dest, offset);
+    }
+
+    @Override
+    public boolean hasDisplayGeometryChanged() {
+      return frame.hasDisplayGeometryChanged();
+    }
+
+    @Override
+    public void transformDisplayUvCoords(FloatBuffer uvCoords, FloatBuffer outUvCoords) {
+      frame.transformDisplayUvCoords(uvCoords, outUvCoords);
+    }
+
+    @Override
+    public List<ARHitResult> hitTest(float x, float y) {
+      List<ARHitResult> hits = frame.hitTest(x, y);
+      if (recording) {
+        recordHitTest(x, y, hits);
+      }
+      return hits;
+    }
+
+    @Override
+    public Collection<ARPlane> getUpdatedPlanes() {
+      return frame.getUpdatedPlanes();
+    }
+
+    @Override
+    public Collection<ARAnchor> getUpdatedAnchors() {
+      return frame.getUpdatedAnchors();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.support.annotation.Nullable;
+
+import com.google.ar.core.ArCoreApk;
+
+/**
+ * Remembers the last definitive result of {@link ArCoreApk#checkAvailability(Context)}, so later
+ * launches can use it without waiting for ARCore to query its servers.  The result is kept for
+ * the installed versions of the ARCore APK and of the app, installing or updating either of them
+ * invalidates it, since a newer app may need a newer ARCore.
+ */
+public class ARAvailabilityCache {
+  private static final String PREFERENCES = "arcore_availability";
+  private static final String KEY_VERSION = "version";
+  private static final String KEY_APP_VERSION = "app_version";
+  private static final String KEY_AVAILABILITY = "availability";
+  private static final String ARCORE_PACKAGE = "com.google.ar.core";
+  // Version used when ARCore is not installed.
+  private static final int NOT_INSTALLED = -1;
+
+  private final Context context;
+  private final SharedPreferences preferences;
+
+  public ARAvailabilityCache(Context context) {
+    this.context = context.getApplicationContext();
+    preferences = this.context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+  }
+
+  /**
+   * Returns the cached availability for the installed versions of ARCore and the app, or null if
+   * there is none.
+   */
+  @Nullable
+  public ArCoreApk.Availability get() {
+    if (preferences.getInt(KEY_VERSION, NOT_INSTALLED - 1) != getArCoreVersion()
+            || preferences.getInt(KEY_APP_VERSION, NOT_INSTALLED) != getAppVersion()) {
+      return null;
+    }
+    String name = preferences.getString(KEY_AVAILABILITY, null);
+    if (name == null) {
+      return null;
+    }
+    try {
+      return ArCoreApk.Availability.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      // Written by a version of ARCore with other values.
+      return null;
+    }
+  }
+
+  /**
+   * Stores the availability for the installed versions of ARCore and the app.  Unknown results, such as
+   * errors or timeouts, are not stored.
+   */
+  public void put(ArCoreApk.Availability availability) {
+    if (availability.isUnknown()) {
+      return;
+    }
+    preferences.edit()
+            .putInt(KEY_VERSION, getArCoreVersion())
+            .putInt(KEY_APP_VERSION, getAppVersion())
+            .putString(KEY_AVAILABILITY, availability.name())
+            .apply();
+  }
+
+  private int getArCoreVersion() {
+    return getVersion(ARCORE_PACKAGE);
+  }
+
+  private int getAppVersion() {
+    return getVersion(context.getPackageName());
+  }
+
+  @SuppressWarnings("deprecation")
+  private int getVersion(String packageName) {
+    try {
+      return context.getPackageManager().getPackageInfo(packageName, 0).versionCode;
+    } catch (PackageManager.NameNotFoundException e) {
+      return NOT_INSTALLED;
+    }
+  }
+}
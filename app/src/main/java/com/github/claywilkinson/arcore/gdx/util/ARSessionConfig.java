@@ -0,0 +1,149 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx.util;
+
+import android.os.Build;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.util.Size;
+
+import com.google.ar.core.CameraConfig;
+import com.google.ar.core.Config;
+import com.google.ar.core.Session;
+
+import java.util.List;
+
+/**
+ * Configuration of the ARCore session, see {@link ARSessionSupport#setConfig(ARSessionConfig)}.
+ * The defaults are the ARCore defaults. Turning off the features that are not used, such as light
+ * estimation, or plane finding once the objects are placed, saves CPU time and battery.
+ * <p>
+ * The setters return this config so they can be chained.
+ */
+public class ARSessionConfig {
+  private Config.UpdateMode updateMode = Config.UpdateMode.BLOCKING;
+  private Config.LightEstimationMode lightEstimationMode =
+          Config.LightEstimationMode.AMBIENT_INTENSITY;
+  private Config.PlaneFindingMode planeFindingMode = Config.PlaneFindingMode.HORIZONTAL;
+  private CameraConfigChooser cameraConfigChooser;
+
+  /**
+   * Chooses the camera configuration of the session from the ones the device supports.
+   */
+  public interface CameraConfigChooser {
+    /**
+     * @param supported - the configurations supported by the device, the first one is the
+     *                  default.
+     * @return the configuration to use.
+     */
+    CameraConfig choose(List<CameraConfig> supported);
+  }
+
+  /**
+   * Chooses the camera configuration with the smallest CPU image, which is the cheapest for
+   * ARCore to track.
+   */
+  public static final CameraConfigChooser LOWEST_IMAGE_RESOLUTION = supported -> {
+    CameraConfig best = supported.get(0);
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+      // The image sizes need API 21, ARCore itself needs API 24 so this is not expected.
+      return best;
+    }
+    for (CameraConfig config : supported) {
+      if (area(config.getImageSize()) < area(best.getImageSize())) {
+        best = config;
+      }
+    }
+    return best;
+  };
+
+  public ARSessionConfig() {
+  }
+
+  public ARSessionConfig(ARSessionConfig other) {
+    updateMode = other.updateMode;
+    lightEstimationMode = other.lightEstimationMode;
+    planeFindingMode = other.planeFindingMode;
+    cameraConfigChooser = other.cameraConfigChooser;
+  }
+
+  public Config.UpdateMode getUpdateMode() {
+    return updateMode;
+  }
+
+  /**
+   * Sets whether getting the frame waits for the next camera image. BLOCKING limits the frame
+   * rate to the camera frame rate, LATEST_CAMERA_IMAGE renders at the display rate and reuses the
+   * camera image.
+   */
+  public ARSessionConfig setUpdateMode(Config.UpdateMode updateMode) {
+    this.updateMode = updateMode;
+    return this;
+  }
+
+  public Config.LightEstimationMode getLightEstimationMode() {
+    return lightEstimationMode;
+  }
+
+  public ARSessionConfig setLightEstimationMode(Config.LightEstimationMode lightEstimationMode) {
+    this.lightEstimationMode = lightEstimationMode;
+    return this;
+  }
+
+  public Config.PlaneFindingMode getPlaneFindingMode() {
+    return planeFindingMode;
+  }
+
+  /**
+   * Sets which planes are detected. Planes that are already detected keep being tracked when
+   * this is disabled.
+   */
+  public ARSessionConfig setPlaneFindingMode(Config.PlaneFindingMode planeFindingMode) {
+    this.planeFindingMode = planeFindingMode;
+    return this;
+  }
+
+  @Nullable
+  public CameraConfigChooser getCameraConfigChooser() {
+    return cameraConfigChooser;
+  }
+
+  /**
+   * Sets the chooser of the camera configuration, null for the ARCore default. The camera
+   * configuration can only be changed while the session is paused, so it is only used when the
+   * session is created.
+   */
+  public ARSessionConfig setCameraConfigChooser(@Nullable CameraConfigChooser chooser) {
+    this.cameraConfigChooser = chooser;
+    return this;
+  }
+
+  /**
+   * Creates the ARCore config for the session.
+   */
+  Config createConfig(Session session) {
+    Config config = new Config(session);
+    config.setUpdateMode(updateMode);
+    config.setLightEstimationMode(lightEstimationMode);
+    config.setPlaneFindingMode(planeFindingMode);
+    return config;
+  }
+
+  @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+  private static long area(Size size) {
+    return (long) size.getWidth() * size.getHeight();
+  }
+}
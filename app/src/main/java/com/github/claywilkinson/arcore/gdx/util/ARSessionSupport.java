@@ -20,6 +20,8 @@ import android.arch.lifecycle.Lifecycle;
 import android.arch.lifecycle.LifecycleObserver;
 import android.arch.lifecycle.OnLifecycleEvent;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
@@ -29,32 +31,76 @@ import android.support.v4.app.FragmentTransaction;
 import android.util.Log;
 
 import com.github.claywilkinson.arcore.gdx.CameraPermissionHelper;
+import com.github.claywilkinson.arcore.gdx.FrameTracer;
 import com.google.ar.core.ArCoreApk;
+import com.google.ar.core.CameraConfig;
+import com.google.ar.core.Config;
 import com.google.ar.core.Frame;
 import com.google.ar.core.Session;
 import com.google.ar.core.exceptions.CameraNotAvailableException;
+import com.google.ar.core.exceptions.SessionPausedException;
 import com.google.ar.core.exceptions.UnavailableApkTooOldException;
 import com.google.ar.core.exceptions.UnavailableArcoreNotInstalledException;
 import com.google.ar.core.exceptions.UnavailableDeviceNotCompatibleException;
 import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
 
 /**
  * ARCore session creation is a complex flow of exception handling, permission requesting, and
  * possible downloading of the ARCore services APK.  This class encapsulates all this.
  * <p>
  * To use this class create an instance in onCreate().
+ * <p>
+ * Creating and resuming the session takes hundreds of milliseconds, so it is done on a background
+ * thread, see {@link #getSessionFuture()}. Until the session is running {@link #update()} returns
+ * null. The graphics state set on the GL thread is kept and given to the session on the GL thread
+ * once it is running.
  */
 public class ARSessionSupport implements LifecycleObserver {
   private static final String TAG = "ARSessionSupport";
   private final FragmentActivity activity;
-  private Session session;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  // Creates, resumes and pauses the session in order, off the UI thread.
+  private final ExecutorService sessionExecutor =
+          Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ARSession");
+            thread.setDaemon(true);
+            return thread;
+          });
+  // Replaced when the creation is tried again after a failure.
+  private volatile AcceptableFuture<Session> sessionFuture =
+          new AcceptableFuture<>(AcceptableFuture.postTo(mainHandler));
+  // Set once the session is created.
+  private volatile Session session;
+  // True while the session is resumed and frames can be read on the GL thread.
+  private volatile boolean running;
+  // True between the ON_RESUME and ON_PAUSE events.
+  private volatile boolean resumeRequested;
+  // Guards setting running against resumeRequested changing, between the threads.
+  private final Object runningLock = new Object();
+  // Whether the session was resumed, only used on the session thread.
+  private boolean sessionResumed;
+  // True while the session is being created or once it is, only used on the UI thread.
+  private boolean creating;
+  // The configuration, and the one to give to the session on the next update when it changes.
+  private volatile ARSessionConfig config = new ARSessionConfig();
+  private final AtomicReference<ARSessionConfig> pendingConfig = new AtomicReference<>();
   private ARStatus status;
   private StatusChangeListener statusListener;
+
+  // Graphics state to give to the session, only used on the GL thread.
   private int textureId;
   private int rotation;
   private int width;
   private int height;
+  private Session configuredSession;
+  private boolean geometryChanged;
+
   private boolean mUserRequestedInstall;
 
   public ARSessionSupport(FragmentActivity activity, Lifecycle lifecycle, StatusChangeListener listener) {
@@ -85,20 +131,50 @@ public class ARSessionSupport implements LifecycleObserver {
     }
   }
 
+  /**
+   * Gets the session, this is null until it is created.
+   */
   @Nullable
   public Session getSession() {
     return session;
   }
 
-  private void initializeARCore() {
-    Exception exception = null;
-    String message = null;
+  /**
+   * Gets the future of the session.  It completes on the main thread once the session is created
+   * and first resumed, or with the exception that prevented creating it.  The creation is tried
+   * again on the next resume after a failure, with a new future, so get the future again then.
+   */
+  public AcceptableFuture<Session> getSessionFuture() {
+    return sessionFuture;
+  }
 
+  /**
+   * Gets a copy of the session configuration.
+   */
+  public ARSessionConfig getConfig() {
+    return new ARSessionConfig(config);
+  }
+
+  /**
+   * Sets the session configuration.  This can be called at any time from any thread: before the
+   * session is created it is used to create it, afterwards it is given to the session on the next
+   * {@link #update()}.  The config is copied, later changes to it need another call.
+   */
+  public void setConfig(ARSessionConfig config) {
+    ARSessionConfig copy = new ARSessionConfig(config);
+    this.config = copy;
+    pendingConfig.set(copy);
+  }
+
+  /**
+   * Checks ARCore is installed, on the UI thread since it may start the installation, and then
+   * creates the session in the background.
+   */
+  private void initializeARCore() {
     ArCoreApk.Availability availability = ArCoreApk.getInstance().checkAvailability(activity);
     Log.d(TAG, "Availability is " + availability);
 
     try {
-
       if (ArCoreApk.getInstance().requestInstall(activity, mUserRequestedInstall) ==
               ArCoreApk.InstallStatus.INSTALL_REQUESTED) {
         // Ensures next invocation of requestInstall() will either return
@@ -106,51 +182,126 @@ public class ARSessionSupport implements LifecycleObserver {
         mUserRequestedInstall = false;
         return;
       }
+    } catch (Exception e) {
+      handleCreateException(e);
+      return;
+    }
 
+    if (sessionFuture.isDone()) {
+      // The previous attempt failed.
+      sessionFuture = new AcceptableFuture<>(AcceptableFuture.postTo(mainHandler));
+    }
+    creating = true;
+    sessionExecutor.execute(this::createSession);
+  }
 
-      session = new Session(activity);
-    } catch (UnavailableArcoreNotInstalledException e) {
+  /**
+   * Creates the session on the session thread and resumes it if the activity is resumed.
+   */
+  private void createSession() {
+    Session newSession = null;
+    try {
+      newSession = new Session(activity);
+      ARSessionConfig initialConfig = pendingConfig.getAndSet(null);
+      configure(newSession, initialConfig != null ? initialConfig : config, true);
+    } catch (Exception e) {
+      if (newSession != null) {
+        newSession.close();
+      }
+      // Lets the next resume try again, for example after ARCore is installed.
+      mainHandler.post(() -> {
+        creating = false;
+        handleCreateException(e);
+      });
+      return;
+    }
+    session = newSession;
+    resumeSession();
+  }
+
+  /**
+   * Gives the configuration to the session.  The camera config can only be set before the
+   * session is resumed, so it is only chosen when the session is created.
+   */
+  private static void configure(Session session, ARSessionConfig sessionConfig,
+                                boolean chooseCamera) {
+    ARSessionConfig.CameraConfigChooser chooser = sessionConfig.getCameraConfigChooser();
+    if (chooseCamera && chooser != null) {
+      List<CameraConfig> supported = session.getSupportedCameraConfigs();
+      if (supported != null && !supported.isEmpty()) {
+        session.setCameraConfig(chooser.choose(supported));
+      }
+    }
+    Config arConfig = sessionConfig.createConfig(session);
+    if (!session.isSupported(arConfig)) {
+      Log.w(TAG, "Session config is not supported, keeping the current config");
+      return;
+    }
+    session.configure(arConfig);
+  }
+
+  private void handleCreateException(Exception exception) {
+    String message;
+    if (exception instanceof UnavailableArcoreNotInstalledException) {
       setStatus(ARStatus.ARCoreNotInstalled);
       message = "Please install ARCore";
-      exception = e;
-    } catch (UnavailableApkTooOldException e) {
+    } else if (exception instanceof UnavailableApkTooOldException) {
       setStatus(ARStatus.ARCoreTooOld);
       message = "Please update ARCore";
-      exception = e;
-    } catch (UnavailableSdkTooOldException e) {
+    } else if (exception instanceof UnavailableSdkTooOldException) {
       message = "Please update this app";
       setStatus(ARStatus.SDKTooOld);
-      exception = e;
-    } catch (UnavailableDeviceNotCompatibleException e) {
+    } else if (exception instanceof UnavailableDeviceNotCompatibleException) {
       setStatus(ARStatus.DeviceNotSupported);
       message = "This device does not support AR";
-      exception = e;
-    } catch (Exception e) {
+    } else {
       setStatus(ARStatus.UnknownException);
       message = "This device does not support AR";
-      exception = e;
     }
+    Log.e(TAG, "Exception creating session: " + message, exception);
+    sessionFuture.completeExceptionally(exception);
+  }
 
-    if (message != null) {
-      Log.e(TAG, "Exception creating session", exception);
+  /**
+   * Resumes the session on the session thread, unless the activity was paused in the meantime.
+   */
+  private void resumeSession() {
+    if (session == null || !resumeRequested) {
       return;
     }
-
-    // Set the graphics information if it was already passed in.
-    if (textureId >= 0) {
-      setCameraTextureName(textureId);
+    if (!sessionResumed) {
+      try {
+        session.resume();
+      } catch (CameraNotAvailableException e) {
+        Log.e(TAG, "Exception resuming session", e);
+        return;
+      }
+      sessionResumed = true;
     }
-    if (width > 0) {
-      setDisplayGeometry(rotation, width, height);
+    boolean resumed;
+    synchronized (runningLock) {
+      // The activity may have been paused while the session was resuming.
+      resumed = resumeRequested;
+      running = resumed;
     }
-
-    try {
-      session.resume();
-    } catch (CameraNotAvailableException e) {
-      Log.e(TAG, "Exception resuming session", e);
+    if (!resumed) {
+      // A resume since then queues another resumeSession.
+      pauseSession();
       return;
     }
-    setStatus(ARStatus.Ready);
+    if (sessionFuture.complete(session)) {
+      mainHandler.post(() -> setStatus(ARStatus.Ready));
+    }
+  }
+
+  /**
+   * Pauses the session on the session thread, unless the activity was resumed in the meantime.
+   */
+  private void pauseSession() {
+    if (session != null && sessionResumed && !resumeRequested) {
+      session.pause();
+      sessionResumed = false;
+    }
   }
 
   /**
@@ -159,15 +310,12 @@ public class ARSessionSupport implements LifecycleObserver {
    */
   @OnLifecycleEvent(Lifecycle.Event.ON_RESUME)
   protected void onResume() {
+    resumeRequested = true;
     if (CameraPermissionHelper.hasCameraPermission(activity)) {
-      if (session == null) {
+      if (!creating) {
         initializeARCore();
       } else {
-        try {
-          session.resume();
-        } catch (CameraNotAvailableException e) {
-          Log.e(TAG, "Exception resuming session", e);
-        }
+        sessionExecutor.execute(this::resumeSession);
       }
     } else {
       requestCameraPermission();
@@ -176,9 +324,12 @@ public class ARSessionSupport implements LifecycleObserver {
 
   @OnLifecycleEvent(Lifecycle.Event.ON_PAUSE)
   protected void onPause() {
-    if (session != null) {
-      session.pause();
+    // The GL thread is already paused, so no frames are being read from the session.
+    synchronized (runningLock) {
+      resumeRequested = false;
+      running = false;
     }
+    sessionExecutor.execute(this::pauseSession);
   }
 
   @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
@@ -186,6 +337,12 @@ public class ARSessionSupport implements LifecycleObserver {
     statusListener = null;
   }
 
+  @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+  protected void onDestroy() {
+    // Queued work still runs, such as pausing the session.
+    sessionExecutor.shutdown();
+  }
+
   /**
    * Start a fragment to handle the permissions.  This is done in a fragment to
    * avoid entangling it with the base Activity.
@@ -200,40 +357,61 @@ public class ARSessionSupport implements LifecycleObserver {
   }
 
   /**
-   * Handle setting the display geometry.  The values are cached
-   * if they are set before the session is available.
+   * Handle setting the display geometry.  The values are cached and given to the
+   * session on the next {@link #update()}.  This is called on the GL thread.
    */
   public void setDisplayGeometry(int rotation, int width, int height) {
-    if (session != null) {
-      session.setDisplayGeometry(rotation, width, height);
-    } else {
-      this.rotation = rotation;
-      this.width = width;
-      this.height = height;
-    }
+    this.rotation = rotation;
+    this.width = width;
+    this.height = height;
+    geometryChanged = true;
   }
 
   /**
-   * Handle setting the texture ID for the background image.  The value is cached
-   * if it is called before the session is available.
+   * Handle setting the texture ID for the background image.  The value is cached and
+   * given to the session on the next {@link #update()}.  This is called on the GL thread.
    */
   public void setCameraTextureName(int textureId) {
-    if (session != null) {
-      session.setCameraTextureName(textureId);
-      this.textureId = -1;
-    } else {
-      this.textureId = textureId;
-    }
+    this.textureId = textureId;
+    configuredSession = null;
   }
 
+  /**
+   * Gets the next frame from the session.  This is called on the GL thread, it returns
+   * null until the session is running.
+   */
   @Nullable
   public Frame update() {
-    if (session != null) {
-      try {
-        return session.update();
-      } catch (CameraNotAvailableException e) {
-        Log.e(TAG, "Exception resuming session", e);
+    Session current = session;
+    if (current == null || !running) {
+      return null;
+    }
+    if (configuredSession != current) {
+      // First frame from this session, or the GL context was recreated.
+      if (textureId >= 0) {
+        current.setCameraTextureName(textureId);
       }
+      configuredSession = current;
+      geometryChanged = width > 0;
+    }
+    if (geometryChanged) {
+      current.setDisplayGeometry(rotation, width, height);
+      geometryChanged = false;
+    }
+    ARSessionConfig changedConfig = pendingConfig.getAndSet(null);
+    if (changedConfig != null) {
+      configure(current, changedConfig, false);
+    }
+    long start = FrameTracer.begin("Session.update");
+    try {
+      return current.update();
+    } catch (CameraNotAvailableException e) {
+      Log.e(TAG, "Exception updating the frame", e);
+    } catch (SessionPausedException e) {
+      // Paused by the lifecycle between the running check and the update.
+      Log.w(TAG, "Session paused during update");
+    } finally {
+      FrameTracer.end("Session.update", start);
     }
     return null;
   }
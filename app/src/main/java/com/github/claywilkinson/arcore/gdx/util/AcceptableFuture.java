@@ -17,6 +17,7 @@ package com.github.claywilkinson.arcore.gdx.util;
 
 import android.arch.core.util.Function;
 import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.v4.util.Consumer;
 import android.util.Log;
@@ -27,40 +28,72 @@ import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A class modeled after the 1.8 CompletableFuture class, but works in pre-API 24 for Android.
  * <p>
- * The callbacks are invoked on the supplied handlerReference, which typically is the main thread.
+ * The future can be completed and observed from any thread. It completes exactly once, the first
+ * call to {@link #complete}, {@link #completeExceptionally} or {@link #cancel} wins. Callbacks
+ * added after completion still run.
+ * <p>
+ * The callbacks are run by an executor, by default the one the future was created with. Use
+ * {@link #postTo(Handler)} to always post them to a handler, which typically is the main thread,
+ * or {@link #runOn(Handler)} to skip the post when the future completes on that thread.
+ * <p>
+ * Like CompletableFuture, the futures returned by {@link #thenApply}, {@link #thenAccept} and
+ * {@link #thenCompose} complete with the same exception when this future fails, without calling
+ * their function. The exception is passed on as is, it is not wrapped.
  *
  * @param <T> The result type.
  */
 public class AcceptableFuture<T> implements Future<T> {
   private static final String TAG = "AcceptableFuture";
 
-  // Hold a weak reference to avoid memory leaks.
-  private final WeakReference<Handler> handlerReference;
-
-  // The result if it is an exception
-  private Throwable throwableResult;
+  /**
+   * Runs the callbacks on the thread that completes the future, or on the thread adding them if
+   * the future is already complete.
+   */
+  public static final Executor DIRECT = Runnable::run;
 
-  // The result.
-  private T result;
+  // Runs the callbacks added without an executor.
+  private final Executor executor;
 
-  // Flag for cancelled.
-  private boolean cancelled;
+  // The callbacks while the future is pending, then the completion. This is the only mutable
+  // state, it changes from the callbacks to the completion once.
+  private final AtomicReference<Object> state = new AtomicReference<>(Callback.NONE);
 
   // Sync object for waiting until the future is complete.
-  private CountDownLatch latch = new CountDownLatch(1);
+  private final CountDownLatch latch = new CountDownLatch(1);
 
-  // List of actions to call when complete.
-  private List<Consumer<T>> actions;
+  // The result, or the exception if it failed.
+  private static class Completion {
+    final Object value;
+    final Throwable throwable;
 
-  // List of exception handlers to call if there is an exception result.
-  private List<Function<Throwable, T>> exceptionHandlers;
+    Completion(Object value, Throwable throwable) {
+      this.value = value;
+      this.throwable = throwable;
+    }
+  }
+
+  // Stack of callbacks to run on completion, the last added first.
+  private static class Callback {
+    static final Callback NONE = new Callback(null, null);
+
+    final Runnable runnable;
+    final Callback next;
+
+    Callback(Runnable runnable, Callback next) {
+      this.runnable = runnable;
+      this.next = next;
+    }
+  }
 
   /**
    * Creates an AcceptableFuture.  The handler is used to post the callbacks of the actions
@@ -69,40 +102,98 @@ public class AcceptableFuture<T> implements Future<T> {
    * @param handler - the handler for the callbacks.  Usually the UI handler for the UI thread.
    */
   public AcceptableFuture(Handler handler) {
-    this.handlerReference = new WeakReference<>(handler);
-    this.actions = new ArrayList<>();
-    this.exceptionHandlers = new ArrayList<>();
+    this(postTo(handler));
+  }
+
+  /**
+   * Creates an AcceptableFuture with the executor to run the callbacks.
+   *
+   * @param executor - the executor for the callbacks, for example {@link #runOn(Handler)}.
+   */
+  public AcceptableFuture(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Returns an executor that posts to the handler. The handler is weakly referenced to avoid
+   * leaking it, once it is collected the callbacks are dropped.
+   */
+  public static Executor postTo(Handler handler) {
+    WeakReference<Handler> handlerReference = new WeakReference<>(handler);
+    return runnable -> {
+      Handler current = handlerReference.get();
+      if (current != null) {
+        current.post(runnable);
+      }
+    };
+  }
+
+  /**
+   * Returns an executor that runs on the handler's thread. When called on that thread, the
+   * callback runs right away instead of waiting for the handler, otherwise it is posted like
+   * {@link #postTo(Handler)}.
+   */
+  public static Executor runOn(Handler handler) {
+    WeakReference<Handler> handlerReference = new WeakReference<>(handler);
+    return runnable -> {
+      Handler current = handlerReference.get();
+      if (current == null) {
+        return;
+      }
+      if (current.getLooper() == Looper.myLooper()) {
+        runnable.run();
+      } else {
+        current.post(runnable);
+      }
+    };
+  }
+
+  /**
+   * Returns a future that completes when all the futures complete, or with the first exception.
+   *
+   * @param executor - the executor for the callbacks of the returned future.
+   */
+  public static AcceptableFuture<Void> allOf(Executor executor, AcceptableFuture<?>... futures) {
+    AcceptableFuture<Void> all = new AcceptableFuture<>(executor);
+    if (futures.length == 0) {
+      all.complete(null);
+      return all;
+    }
+    AtomicInteger remaining = new AtomicInteger(futures.length);
+    for (AcceptableFuture<?> future : futures) {
+      future.addCallback(() -> {
+        Completion completion = future.getCompletion();
+        if (completion.throwable != null) {
+          all.finish(null, completion.throwable);
+        } else if (remaining.decrementAndGet() == 0) {
+          all.finish(null, null);
+        }
+      });
+    }
+    return all;
   }
 
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
-    cancelled = true;
-    boolean retval = throwableResult == null && result == null;
-    throwableResult = new CancellationException();
-    finsh();
-    return retval;
+    return finish(null, new CancellationException()) || isCancelled();
   }
 
   @Override
   public boolean isCancelled() {
-    return cancelled;
+    Object current = state.get();
+    return current instanceof Completion
+        && ((Completion) current).throwable instanceof CancellationException;
   }
 
   @Override
   public boolean isDone() {
-    return throwableResult != null || result != null;
+    return state.get() instanceof Completion;
   }
 
   @Override
   public T get() throws ExecutionException, InterruptedException {
     latch.await();
-    if (throwableResult instanceof CancellationException) {
-      throw (CancellationException) throwableResult;
-    }
-    if (throwableResult != null) {
-      throw new ExecutionException(throwableResult);
-    }
-    return result;
+    return report(getCompletion());
   }
 
   @Override
@@ -120,79 +211,214 @@ public class AcceptableFuture<T> implements Future<T> {
    * @param throwable - the throwable to use when calling the exception handlers or to throw
    *                  when calling #get().
    *                  <p>Based on CompleteableFuture.</p>
+   * @return true if this completed the future, false if it was already complete.
    */
-  public void completeExceptionally(Throwable throwable) {
+  public boolean completeExceptionally(Throwable throwable) {
     Log.w(TAG, "ARSupport Future completed exceptionally", throwable);
-    this.throwableResult = throwable;
-    finsh();
+    return finish(null, throwable);
   }
 
   /**
    * Completes the future with the value.
    *
    * @param value - the value of the operation.
+   * @return true if this completed the future, false if it was already complete.
    */
-  public void complete(T value) {
-    this.result = value;
-    finsh();
+  public boolean complete(T value) {
+    return finish(value, null);
   }
 
   /**
-   * Performs the finishing of the future.
+   * Adds an action to be called when the future completes without exception.
    * <p>
-   * This decrements the latch unblocking all calls to #get(). If there is a valid handler, the
-   * actions or exception handlers are posted on the handler.
+   * This action is invoked by the executor of this future.  Typically this posts to the UI
+   * thread's handler.
+   *
+   * @param action - the Consumer to call.
+   * @return a future completed after the action.
    */
-  private void finsh() {
-    latch.countDown();
-    Handler handler = handlerReference.get();
-    if (result != null && handler != null) {
-      for (Consumer<T> action : actions) {
-        try {
-          handler.post(() -> action.accept(result));
-        } catch (Throwable e) {
-          Log.e(TAG, "Caught unhandled exception!", e);
-        }
-      }
-    } else if (throwableResult != null && handler != null) {
-      try {
-        for (Function<Throwable, T> fn : exceptionHandlers) {
-          handler.post(() -> fn.apply(throwableResult));
-        }
-      } catch (Throwable e) {
-        Log.e(TAG, "Caught unhandled exception!", e);
+  public AcceptableFuture<Void> thenAccept(Consumer<? super T> action) {
+    return thenAccept(action, executor);
+  }
 
+  public AcceptableFuture<Void> thenAccept(Consumer<? super T> action, Executor executor) {
+    return thenApply(value -> {
+      action.accept(value);
+      return null;
+    }, executor);
+  }
+
+  /**
+   * Adds a function to be called with the result when the future completes without exception.
+   *
+   * @param fn - the function to call.
+   * @return a future completed with the result of the function.
+   */
+  public <U> AcceptableFuture<U> thenApply(Function<? super T, ? extends U> fn) {
+    return thenApply(fn, executor);
+  }
+
+  public <U> AcceptableFuture<U> thenApply(
+      Function<? super T, ? extends U> fn, Executor executor) {
+    AcceptableFuture<U> next = new AcceptableFuture<>(executor);
+    addCallback(() -> {
+      Completion completion = getCompletion();
+      if (completion.throwable != null) {
+        next.finish(null, completion.throwable);
+        return;
       }
-    }
-    actions.clear();
-    exceptionHandlers.clear();
+      next.execute(executor, () -> next.finish(fn.apply(getValue(completion)), null));
+    });
+    return next;
   }
 
   /**
-   * Adds an action to be called when the future completes without exception.
-   * <p>
-   * This action is invoked by posting to the handler.  Typically this is the UI thread's
-   * handler.
+   * Adds a function that starts the next asynchronous step when the future completes without
+   * exception.
    *
-   * @param action - the Consumer to call.
-   * @return this future.
+   * @param fn - the function returning the future of the next step.
+   * @return a future completed with the result of the next step.
    */
-  public AcceptableFuture<Void> thenAccept(Consumer<T> action) {
-    actions.add(action);
-    return (AcceptableFuture<Void>) this;
+  public <U> AcceptableFuture<U> thenCompose(Function<? super T, AcceptableFuture<U>> fn) {
+    return thenCompose(fn, executor);
+  }
+
+  public <U> AcceptableFuture<U> thenCompose(
+      Function<? super T, AcceptableFuture<U>> fn, Executor executor) {
+    AcceptableFuture<U> next = new AcceptableFuture<>(executor);
+    addCallback(() -> {
+      Completion completion = getCompletion();
+      if (completion.throwable != null) {
+        next.finish(null, completion.throwable);
+        return;
+      }
+      next.execute(executor, () -> {
+        AcceptableFuture<U> step = fn.apply(getValue(completion));
+        step.addCallback(() -> {
+          Completion result = step.getCompletion();
+          next.finish(result.value, result.throwable);
+        });
+      });
+    });
+    return next;
   }
 
   /**
    * Adds an exception handling function to be invoked when the future completes with exception.
    * <p>
-   * This function is invoked by posting to the handler.  Typically this is the UI thread's
-   * handler .
+   * This function is invoked by the executor of this future.  Typically this posts to the UI
+   * thread's handler.
    *
    * @param fn - the function to call when an exception is encountered.
-   * @return this future.
+   * @return a future completed with the result of this future, or of the function if this future
+   *     failed.
    */
-  public AcceptableFuture<T> exceptionally(Function<Throwable, T> fn) {
-    exceptionHandlers.add(fn);
-    return this;
+  public AcceptableFuture<T> exceptionally(Function<Throwable, ? extends T> fn) {
+    return exceptionally(fn, executor);
+  }
+
+  public AcceptableFuture<T> exceptionally(
+      Function<Throwable, ? extends T> fn, Executor executor) {
+    AcceptableFuture<T> next = new AcceptableFuture<>(executor);
+    addCallback(() -> {
+      Completion completion = getCompletion();
+      if (completion.throwable == null) {
+        next.finish(completion.value, null);
+        return;
+      }
+      next.execute(executor, () -> next.finish(fn.apply(completion.throwable), null));
+    });
+    return next;
+  }
+
+  /**
+   * Runs the step of this future on the executor. This future fails if the step or the executor
+   * throws.
+   */
+  private void execute(Executor executor, Runnable step) {
+    Runnable guarded = () -> {
+      try {
+        step.run();
+      } catch (Throwable e) {
+        // Also logged, since the returned future is often ignored.
+        Log.w(TAG, "Caught unhandled exception!", e);
+        finish(null, e);
+      }
+    };
+    try {
+      executor.execute(guarded);
+    } catch (Throwable e) {
+      finish(null, e);
+    }
+  }
+
+  /**
+   * Moves the future to the completed state, if it is not already there. This releases the
+   * calls to #get() and then runs the callbacks, in the order they were added.
+   */
+  private boolean finish(Object value, Throwable throwable) {
+    Completion completion = new Completion(value, throwable);
+    while (true) {
+      Object current = state.get();
+      if (current instanceof Completion) {
+        return false;
+      }
+      if (state.compareAndSet(current, completion)) {
+        latch.countDown();
+        runCallbacks((Callback) current);
+        return true;
+      }
+    }
+  }
+
+  /** Adds a callback that runs on completion, right away if the future is already complete. */
+  private void addCallback(Runnable runnable) {
+    while (true) {
+      Object current = state.get();
+      if (current instanceof Completion) {
+        runCallback(runnable);
+        return;
+      }
+      if (state.compareAndSet(current, new Callback(runnable, (Callback) current))) {
+        return;
+      }
+    }
+  }
+
+  private static void runCallbacks(Callback callbacks) {
+    List<Runnable> ordered = new ArrayList<>();
+    for (Callback callback = callbacks; callback != Callback.NONE; callback = callback.next) {
+      ordered.add(callback.runnable);
+    }
+    for (int i = ordered.size() - 1; i >= 0; i--) {
+      runCallback(ordered.get(i));
+    }
+  }
+
+  private static void runCallback(Runnable runnable) {
+    try {
+      runnable.run();
+    } catch (Throwable e) {
+      Log.e(TAG, "Caught unhandled exception!", e);
+    }
+  }
+
+  private Completion getCompletion() {
+    return (Completion) state.get();
+  }
+
+  @SuppressWarnings("unchecked")
+  private T getValue(Completion completion) {
+    return (T) completion.value;
+  }
+
+  private T report(Completion completion) throws ExecutionException {
+    if (completion.throwable instanceof CancellationException) {
+      throw (CancellationException) completion.throwable;
+    }
+    if (completion.throwable != null) {
+      throw new ExecutionException(completion.throwable);
+    }
+    return getValue(completion);
   }
 }
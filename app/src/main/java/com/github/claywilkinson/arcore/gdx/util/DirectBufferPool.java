@@ -0,0 +1,93 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx.util;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pool of native order direct ByteBuffers used for staging data, such as vertices on their way to a
+ * Mesh. Direct buffers are expensive to allocate and are only released by the garbage collector,
+ * so they are recycled instead. Buffers are bucketed by power of two capacity.
+ *
+ * <p>The pool is thread safe since buffers are typically filled on a loading thread and released
+ * on the GL thread.
+ */
+public class DirectBufferPool {
+  private static final int DEFAULT_MAX_POOLED_BYTES = 8 * 1024 * 1024;
+  private static final DirectBufferPool shared = new DirectBufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+  // Free buffers keyed by capacity.
+  private final IntMap<Array<ByteBuffer>> free = new IntMap<>();
+  private final int maxPooledBytes;
+  private int pooledBytes;
+
+  /**
+   * @param maxPooledBytes - the most memory held by free buffers. Buffers released beyond this are
+   *     left for the garbage collector.
+   */
+  public DirectBufferPool(int maxPooledBytes) {
+    this.maxPooledBytes = maxPooledBytes;
+  }
+
+  /** The pool shared by the loaders. */
+  public static DirectBufferPool getShared() {
+    return shared;
+  }
+
+  /**
+   * Gets a buffer with at least the given number of bytes. The buffer's position is 0 and its limit
+   * is the requested size.
+   */
+  public synchronized ByteBuffer obtain(int bytes) {
+    int capacity = MathUtils.nextPowerOfTwo(Math.max(bytes, 16));
+    ByteBuffer buffer;
+    Array<ByteBuffer> buffers = free.get(capacity);
+    if (buffers != null && buffers.size > 0) {
+      buffer = buffers.pop();
+      pooledBytes -= capacity;
+    } else {
+      buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+    buffer.clear();
+    buffer.limit(bytes);
+    return buffer;
+  }
+
+  /** Returns a buffer obtained from this pool. The buffer must not be used afterwards. */
+  public synchronized void free(ByteBuffer buffer) {
+    int capacity = buffer.capacity();
+    if (pooledBytes + capacity > maxPooledBytes) {
+      return;
+    }
+    Array<ByteBuffer> buffers = free.get(capacity);
+    if (buffers == null) {
+      buffers = new Array<>(false, 4);
+      free.put(capacity, buffers);
+    }
+    buffers.add(buffer);
+    pooledBytes += capacity;
+  }
+
+  /** Releases all the free buffers. */
+  public synchronized void clear() {
+    free.clear();
+    pooledBytes = 0;
+  }
+}
@@ -16,7 +16,7 @@ limitations under the License.
 package com.github.claywilkinson.helloargdx;
 
 import android.opengl.GLES20;
-import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
 import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g3d.Material;
@@ -26,6 +26,10 @@ import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
 import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
 import com.badlogic.gdx.graphics.g3d.model.MeshPart;
 import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
+import com.github.claywilkinson.arcore.gdx.AssetCache;
+import com.github.claywilkinson.arcore.gdx.AssetPreloader;
+import com.github.claywilkinson.arcore.gdx.CompressedTextures;
+import com.github.claywilkinson.arcore.gdx.LodModelInstance;
 import com.github.claywilkinson.arcore.gdx.ObjLoaderImproved;
 
 /**
@@ -40,19 +44,74 @@ public class AndyModel {
   private static final String ANDY_TEXTURE = "models/andy.png";
   private static final String ANDY_SHADOW_MODEL = "models/andy_shadow.obj";
   private static final String ANDY_SHADOW_TEXTURE = "models/andy_shadow.png";
+  // Triangle counts of the simplified levels of Andy, as fractions of the full model.
+  private static final float[] LEVELS_OF_DETAIL = {0.5f, 0.2f};
+
+  // The texture files picked for this device, these are compressed when possible.
+  private final String bodyTexture;
+  private final String shadowTexture;
+  // The ETC1 shadow texture has no alpha channel, the alpha is stored in the color instead.
+  private final boolean shadowAlphaInColor;
 
   /**
-   * Create a new model. The asset manager is used to begin the asynchronous loading of the model
-   * assets. To make sure the assets are loaded, the caller needs to add assetManager.update() to
-   * the render() method.
+   * Create a new model. The asset cache is used to begin the asynchronous loading of the model
+   * assets, including the textures, which are decoded on the asset manager's loading thread. To
+   * make sure the assets are loaded, the caller needs to add assetCache.update() to the render()
+   * method. The GPU compressed versions of the textures are used if the device supports them. The
+   * assets are shared with other users of the cache, call {@link #dispose(AssetCache)} when
+   * done.
+   *
+   * @param preloader - preloader that was given to {@link #preload(AssetPreloader)}, the assets it
+   *     has already loaded are used instead of loading them again. This can be null.
    */
-  public AndyModel(AssetManager assetManager) {
-    assetManager.setLoader(
+  public AndyModel(AssetCache assetCache, AssetPreloader preloader) {
+    assetCache.getAssetManager().setLoader(
         Model.class, ".obj", new ObjLoaderImproved(new InternalFileHandleResolver()));
+    assetCache.load(ANDY_MODEL, Model.class, createLoaderParameters(preloader, ANDY_MODEL));
+    assetCache.load(
+        ANDY_SHADOW_MODEL, Model.class, createLoaderParameters(preloader, ANDY_SHADOW_MODEL));
+
+    bodyTexture = CompressedTextures.select(ANDY_TEXTURE);
+    shadowTexture = CompressedTextures.select(ANDY_SHADOW_TEXTURE);
+    shadowAlphaInColor =
+        CompressedTextures.getFormat(ANDY_SHADOW_TEXTURE) == CompressedTextures.Format.ETC1;
+    assetCache.load(bodyTexture, Texture.class, createTextureParameters(preloader, bodyTexture));
+    assetCache.load(
+        shadowTexture, Texture.class, createTextureParameters(preloader, shadowTexture));
+  }
+
+  /**
+   * Starts loading the model assets in the background, before the application is running. Only
+   * the GPU uploads are then left for when the model is created.
+   */
+  public static void preload(AssetPreloader preloader) {
+    preloader.preloadModel(ANDY_MODEL, createLoaderParameters(null, ANDY_MODEL));
+    preloader.preloadModel(ANDY_SHADOW_MODEL, createLoaderParameters(null, ANDY_SHADOW_MODEL));
+    preloader.preloadTexture(ANDY_TEXTURE);
+    preloader.preloadTexture(ANDY_SHADOW_TEXTURE);
+  }
+
+  private static ObjLoaderImproved.ObjLoaderParameters createLoaderParameters(
+      AssetPreloader preloader, String path) {
     ObjLoaderImproved.ObjLoaderParameters objLoaderParameters = new ObjLoaderImproved.ObjLoaderParameters();
     objLoaderParameters.flipV = true;
-    assetManager.load(ANDY_MODEL, Model.class, objLoaderParameters);
-    assetManager.load(ANDY_SHADOW_MODEL, Model.class, objLoaderParameters);
+    objLoaderParameters.directBuffers = true;
+    objLoaderParameters.quantize = true;
+    objLoaderParameters.optimize = true;
+    objLoaderParameters.levelsOfDetail = LEVELS_OF_DETAIL;
+    if (preloader != null) {
+      objLoaderParameters.modelData = preloader.takeModelData(path);
+    }
+    return objLoaderParameters;
+  }
+
+  private static TextureLoader.TextureParameter createTextureParameters(
+      AssetPreloader preloader, String path) {
+    TextureLoader.TextureParameter parameters = CompressedTextures.getParameters(path);
+    if (preloader != null) {
+      parameters.textureData = preloader.takeTextureData(path);
+    }
+    return parameters;
   }
 
   /**
@@ -61,39 +120,68 @@ public class AndyModel {
    *
    * @return true when the model is initialized and ready to use.
    */
-  public boolean initialize(AssetManager assetManager) {
-    if (assetManager.isLoaded(ANDY_MODEL,Model.class) &&
-            assetManager.isLoaded(ANDY_SHADOW_MODEL, Model.class)) {
-      Model body = assetManager.get(ANDY_MODEL, Model.class);
-      Model shadow = assetManager.get(ANDY_SHADOW_MODEL, Model.class);
+  public boolean initialize(AssetCache assetCache) {
+    if (assetCache.isLoaded(ANDY_MODEL,Model.class) &&
+            assetCache.isLoaded(ANDY_SHADOW_MODEL, Model.class) &&
+            assetCache.isLoaded(bodyTexture, Texture.class) &&
+            assetCache.isLoaded(shadowTexture, Texture.class)) {
+      Model body = assetCache.get(ANDY_MODEL, Model.class);
+      Model shadow = assetCache.get(ANDY_SHADOW_MODEL, Model.class);
       if (body != null && shadow != null) {
 
         Material bodyMaterial =
-                new Material(TextureAttribute.createDiffuse(new Texture(ANDY_TEXTURE)));
+                new Material(TextureAttribute.createDiffuse(
+                        assetCache.get(bodyTexture, Texture.class)));
         Material shadowMaterial =
-                new Material(TextureAttribute.createDiffuse(new Texture(ANDY_SHADOW_TEXTURE)));
+                new Material(TextureAttribute.createDiffuse(
+                        assetCache.get(shadowTexture, Texture.class)));
+        // The shadow only darkens what is behind it, so storing the alpha in the color and
+        // blending with the color gives the same result.
         shadowMaterial.set(
-                new BlendingAttribute(true, GLES20.GL_ZERO, GLES20.GL_ONE_MINUS_SRC_ALPHA, 1f));
+                new BlendingAttribute(true, GLES20.GL_ZERO,
+                        shadowAlphaInColor ? GLES20.GL_ONE_MINUS_SRC_COLOR
+                                : GLES20.GL_ONE_MINUS_SRC_ALPHA, 1f));
 
         ModelBuilder builder = new ModelBuilder();
         builder.begin();
+        // The simplified levels are not drawn directly, they are kept with the model for the
+        // instances to switch to.
         for (MeshPart part : body.meshParts) {
-          builder.part(part, bodyMaterial);
+          if (!LodModelInstance.isLevel(part)) {
+            builder.part(part, bodyMaterial);
+          }
         }
         for (MeshPart part : shadow.meshParts) {
-          builder.part(part, shadowMaterial);
+          if (!LodModelInstance.isLevel(part)) {
+            builder.part(part, shadowMaterial);
+          }
         }
         model = builder.end();
+        LodModelInstance.copyLevels(body, model);
+        LodModelInstance.copyLevels(shadow, model);
       }
     }
     return isInitialized();
   }
 
+  /**
+   * Creates an instance that switches to simpler levels of detail when it is far away, null until
+   * the model is initialized.
+   */
   public ModelInstance createInstance() {
-    return new ModelInstance(model);
+    return model != null ? new LodModelInstance(model) : null;
   }
 
   public boolean isInitialized() {
     return model != null;
   }
+
+  /** Releases the model assets. The model cannot be used afterwards. */
+  public void dispose(AssetCache assetCache) {
+    model = null;
+    assetCache.release(ANDY_MODEL);
+    assetCache.release(ANDY_SHADOW_MODEL);
+    assetCache.release(bodyTexture);
+    assetCache.release(shadowTexture);
+  }
 }
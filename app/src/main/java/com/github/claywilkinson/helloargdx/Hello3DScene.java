@@ -17,23 +17,36 @@ package com.github.claywilkinson.helloargdx;
 
 import com.badlogic.gdx.ApplicationListener;
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.math.Vector3;
+import com.github.claywilkinson.arcore.gdx.AssetCache;
+import com.github.claywilkinson.arcore.gdx.AssetPreloader;
+import com.github.claywilkinson.arcore.gdx.SimpleShaderProvider;
 
 /**
  * Hello 3D  scene is a simple scene to show in non-AR mode.
  */
 public class Hello3DScene implements ApplicationListener {
+  // Time per frame given to the asset manager to finish loading assets on the GL thread.
+  private static final int ASSET_UPDATE_BUDGET_MS = 4;
+
   private PerspectiveCamera camera;
   private ModelBatch modelBatch;
-  private AssetManager assetManager = new AssetManager();
+  private AssetCache assetCache;
   private AndyModel andyModel;
+  private final AssetPreloader preloader;
   private ModelInstance item;
 
+  /**
+   * @param preloader - holds the assets loaded before the scene was started, this can be null.
+   */
+  public Hello3DScene(AssetPreloader preloader) {
+    this.preloader = preloader;
+  }
+
   @Override
   public void create() {
     camera = new PerspectiveCamera(67, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
@@ -43,10 +56,12 @@ public class Hello3DScene implements ApplicationListener {
     camera.far = 30f;
     camera.update();
 
-    modelBatch = new ModelBatch();
+    // The shader provider knows how to render the quantized meshes.
+    modelBatch = new ModelBatch(new SimpleShaderProvider());
 
     // Start loading the andy model.
-    andyModel = new AndyModel(assetManager);
+    assetCache = AssetCache.get();
+    andyModel = new AndyModel(assetCache, preloader);
 
     Gdx.gl.glClearColor(.25f, .25f, .25f, 1f);
   }
@@ -69,10 +84,12 @@ public class Hello3DScene implements ApplicationListener {
     camera.update();
     modelBatch.begin(camera);
 
-    // Let the asset manager work asynchronously.
-    assetManager.update();
-    if (!andyModel.isInitialized()) {
-      andyModel.initialize(assetManager);
+    // Let the asset manager work asynchronously, spending at most the budget on this frame.
+    assetCache.update(ASSET_UPDATE_BUDGET_MS);
+    if (!andyModel.isInitialized() && andyModel.initialize(assetCache)) {
+      // Compile the shaders now rather than when Andy is first drawn.
+      SimpleShaderProvider.prepareShaders(
+          modelBatch.getShaderProvider(), andyModel.createInstance());
     }
 
     if (item != null) {
@@ -93,7 +110,8 @@ public class Hello3DScene implements ApplicationListener {
 
   @Override
   public void dispose() {
-
+    // The cache keeps the assets for other scenes until it needs the room.
+    andyModel.dispose(assetCache);
   }
 
   private void handleInput() {
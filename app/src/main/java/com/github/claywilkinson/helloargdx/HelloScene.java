@@ -18,27 +18,40 @@ package com.github.claywilkinson.helloargdx;
 import android.support.design.widget.Snackbar;
 import android.util.Log;
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.Material;
 import com.badlogic.gdx.graphics.g3d.Model;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
-import com.badlogic.gdx.graphics.g3d.Renderable;
-import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
 import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
 import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
-import com.google.ar.core.Anchor;
-import com.google.ar.core.Frame;
-import com.google.ar.core.HitResult;
 import com.google.ar.core.Plane;
 import com.google.ar.core.Pose;
 import com.google.ar.core.TrackingState;
 import com.google.ar.core.exceptions.NotTrackingException;
+import com.github.claywilkinson.arcore.gdx.ARAnchor;
 import com.github.claywilkinson.arcore.gdx.ARCoreScene;
+import com.github.claywilkinson.arcore.gdx.ARFrame;
+import com.github.claywilkinson.arcore.gdx.ARHitResult;
+import com.github.claywilkinson.arcore.gdx.ARPlane;
+import com.github.claywilkinson.arcore.gdx.AssetCache;
+import com.github.claywilkinson.arcore.gdx.AssetPreloader;
+import com.github.claywilkinson.arcore.gdx.FrameTracer;
 import com.github.claywilkinson.arcore.gdx.PlaneAttachment;
-import com.github.claywilkinson.arcore.gdx.SimpleShaderProvider;
+import com.github.claywilkinson.arcore.gdx.PlaneRaycaster;
+import com.github.claywilkinson.arcore.gdx.TapQueue;
+import java.nio.FloatBuffer;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 /**
  * Hello scene to introduce ARCore. This scene has 3 major components: 1. Makes Android UI calls
@@ -48,36 +61,74 @@ import java.util.HashMap;
  * use.
  */
 public class HelloScene extends ARCoreScene {
+  // Time per frame given to the asset manager to finish loading assets on the GL thread.
+  private static final int ASSET_UPDATE_BUDGET_MS = 4;
 
   // Snackbar for showing an initial message to the user.  Once a plane is detected, the snackbar
   // is dismissed.
   private Snackbar mLoadingMessageSnackbar = null;
-  private AssetManager assetManager = new AssetManager();
+  private AssetCache assetCache;
   private AndyModel andyModel;
+  private final AssetPreloader preloader;
 
-  // Keep the objects in the scene mapped by the anchor id.
-  private HashMap<Anchor, PlaneAttachment<ModelInstance>> instances = new HashMap<>();
+  // Keep the objects in the scene mapped by the anchor id, in the order they were placed so the
+  // oldest is removed first.
+  private LinkedHashMap<ARAnchor, PlaneAttachment<ModelInstance>> instances =
+      new LinkedHashMap<>();
+  // The models of the detected planes, rebuilt only when their polygon changes.
+  private final HashMap<ARPlane, PlaneRenderable> planeRenderables = new HashMap<>();
+  private final Array<ModelInstance> planeInstances = new Array<>();
+  private Texture planeGridTexture;
+  private int nextPlaneIndex;
+  // Reticle showing where a tap in the center of the screen places an Andy. It follows the screen
+  // center every frame, so it uses the CPU raycaster instead of the ARCore hit test.
+  private final PlaneRaycaster planeRaycaster = new PlaneRaycaster();
+  private final PlaneRaycaster.Hit reticleHit = new PlaneRaycaster.Hit();
+  private Model reticleModel;
+  private ModelInstance reticle;
+
+  /**
+   * @param preloader - holds the assets loaded before the scene was started, this can be null.
+   */
+  public HelloScene(AssetPreloader preloader) {
+    this.preloader = preloader;
+  }
 
   @Override
   public void create() {
     super.create();
     // Start loading the andy model.
-    andyModel = new AndyModel(assetManager);
+    assetCache = AssetCache.get();
+    andyModel = new AndyModel(assetCache, preloader);
+    planeGridTexture = PlaneMaterial.loadGridTexture();
+    reticleModel = new ModelBuilder().createCylinder(0.1f, 0.002f, 0.1f, 24,
+        new Material(ColorAttribute.createDiffuse(Color.WHITE), new BlendingAttribute(0.6f)),
+        VertexAttributes.Usage.Position | VertexAttributes.Usage.Normal);
+    reticle = new ModelInstance(reticleModel);
+  }
+
+  @Override
+  public void dispose() {
+    // The cache keeps the assets for other scenes until it needs the room.
+    andyModel.dispose(assetCache);
+    for (PlaneRenderable planeRenderable : planeRenderables.values()) {
+      planeRenderable.dispose();
+    }
+    planeRenderables.clear();
+    planeGridTexture.dispose();
+    reticleModel.dispose();
+    // The session can outlive the scene, so stop tracking the anchors.
+    for (ARAnchor anchor : instances.keySet()) {
+      anchor.detach();
+    }
+    instances.clear();
+    super.dispose();
   }
 
   /** Create a new shader provider that is aware of the Plane material custom shader. */
   @Override
   protected ShaderProvider createShaderProvider() {
-    return new SimpleShaderProvider() {
-      @Override
-      protected Shader createShader(Renderable renderable) {
-        if (renderable.material.id.startsWith(PlaneMaterial.MATERIAL_ID_PREFIX)) {
-          return PlaneMaterial.getShader(renderable);
-        } else {
-          return super.createShader(renderable);
-        }
-      }
-    };
+    return new PlaneShaderProvider();
   }
 
   /**
@@ -88,15 +139,19 @@ public class HelloScene extends ARCoreScene {
    * <p>It also is where application specific objects are created and ultimately rendered.
    */
   @Override
-  protected void render(Frame frame, ModelBatch modelBatch) {
-    // Let the asset manager work asynchronously.
-    assetManager.update();
-    if (!andyModel.isInitialized()) {
-      andyModel.initialize(assetManager);
+  protected void render(ARFrame frame, ModelBatch modelBatch) {
+    // Let the asset manager work asynchronously, spending at most the budget on this frame.
+    assetCache.update(ASSET_UPDATE_BUDGET_MS);
+    if (!andyModel.isInitialized() && andyModel.initialize(assetCache)) {
+      // Compile the shaders now rather than when the first Andy is placed.
+      prepareShaders(andyModel.createInstance());
     }
 
+    planeRaycaster.update(frame.getUpdatedPlanes());
+
     // If we're still loading/detecting planes, just return.
     if (!handleLoadingMessage(frame)) {
+      discardTaps();
       return;
     }
 
@@ -104,9 +159,9 @@ public class HelloScene extends ARCoreScene {
     drawPlanes(modelBatch);
 
     // Handle taps to create androids.
-    handleInput(frame);
+    processTaps(frame);
 
-    for(Anchor anchor : frame.getUpdatedAnchors()) {
+    for(ARAnchor anchor : frame.getUpdatedAnchors()) {
       PlaneAttachment<ModelInstance> item = instances.get(anchor);
       if (item != null) {
         ModelInstance m = item.getData();
@@ -122,68 +177,73 @@ public class HelloScene extends ARCoreScene {
     for (PlaneAttachment<ModelInstance> p : instances.values()) {
       models.add(p.getData());
     }
+    // Far away Andys are drawn with fewer triangles.
+    updateLevelsOfDetail(models);
+    if (planeRaycaster.raycast(getCamera(), Gdx.graphics.getWidth() / 2f,
+        Gdx.graphics.getHeight() / 2f, reticleHit)) {
+      reticle.transform.setToTranslation(reticleHit.position);
+      models.add(reticle);
+    }
     modelBatch.render(models);
   }
 
   /**
-   * Handles the touch input. This gets the screen X,Y position of the touch and then performs a
-   * Hittest vs. the planes detected. If the hit is within a plane, an instance of the Andy model is
-   * created.
+   * Handles the touch input. This is called with the Hittest of a tap vs. the planes detected. If
+   * the hit is within a plane, an instance of the Andy model is created.
    */
-  private void handleInput(Frame frame) {
-    if (Gdx.input.justTouched()) {
-
-      int x = Gdx.input.getX();
-      int y = Gdx.input.getY();
-
-        for (HitResult hit : frame.hitTest(x, y)) {
-          // Check if any plane was hit, and if it was hit inside the plane polygon.
-          if (hit.getTrackable() instanceof Plane  &&
-                  ((Plane) hit.getTrackable()).isPoseInPolygon(hit.getHitPose())) {
-            // Cap the number of objects created. This avoids overloading both the
-            // rendering system and ARCore.
-            if (instances.size() >= 16) {
-              Anchor key = instances.keySet().iterator().next();
-              instances.remove(key);
-              key.detach();
-            }
-            // Adding an Anchor tells ARCore that it should track this position in
-            // space. This anchor will be used in PlaneAttachment to place the 3d model
-            // in the correct position relative both to the world and to the plane.
-            try {
-              ModelInstance item = andyModel.createInstance();
-              if (item != null) {
-                PlaneAttachment<ModelInstance> planeAttachment =
-                    new PlaneAttachment<>(
-                            (Plane)hit.getTrackable(),
-                        getSession().createAnchor(hit.getHitPose()),
-                        item);
-
-                instances.put(planeAttachment.getAnchor(), planeAttachment);
-
-                Pose p = planeAttachment.getPose();
-                // position and rotate
-                Quaternion dir = new Quaternion(p.qx(), p.qy(), p.qz(), p.qw());
-                Vector3 pos = new Vector3(p.tx(),p.ty(),p.tz());
-                item.transform.translate(pos);
-                item.transform.set(dir);
-              }
-            } catch (NotTrackingException e) {
-              Log.w("HelloScene", "not tracking: " + e);
-            }
-
-            // Hits are sorted by depth. Consider only closest hit on a plane.
-            break;
+  @Override
+  protected void onTap(ARFrame frame, TapQueue.Tap tap, List<ARHitResult> hits) {
+    for (ARHitResult hit : hits) {
+      // Check if any plane was hit, and if it was hit inside the plane polygon.
+      if (hit.getPlane() != null && hit.getPlane().isPoseInPolygon(hit.getHitPose())) {
+        // Cap the number of objects created. This avoids overloading both the
+        // rendering system and ARCore.
+        if (instances.size() >= 16) {
+          ARAnchor key = instances.keySet().iterator().next();
+          instances.remove(key);
+          key.detach();
+        }
+        // Adding an Anchor tells ARCore that it should track this position in
+        // space. This anchor will be used in PlaneAttachment to place the 3d model
+        // in the correct position relative both to the world and to the plane.
+        try {
+          ModelInstance item = andyModel.createInstance();
+          if (item != null) {
+            PlaneAttachment<ModelInstance> planeAttachment =
+                new PlaneAttachment<>(
+                    hit.getPlane(),
+                    getSession().createAnchor(hit.getHitPose()),
+                    item);
+
+            instances.put(planeAttachment.getAnchor(), planeAttachment);
+
+            Pose p = planeAttachment.getPose();
+            // position and rotate
+            Quaternion dir = new Quaternion(p.qx(), p.qy(), p.qz(), p.qw());
+            Vector3 pos = new Vector3(p.tx(),p.ty(),p.tz());
+            item.transform.translate(pos);
+            item.transform.set(dir);
           }
+        } catch (NotTrackingException e) {
+          Log.w("HelloScene", "not tracking: " + e);
         }
+
+        // Hits are sorted by depth. Consider only closest hit on a plane.
+        break;
+      }
     }
   }
 
-  /** Draws the planes detected. */
+  /**
+   * Draws the planes detected. The model of each plane is kept until its polygon changes, and
+   * disposed once the plane is no longer valid.
+   */
   private void drawPlanes(ModelBatch modelBatch) {
-    Array<ModelInstance> planeInstances = new Array<>();
-    int index = 0;
-    for (Plane plane : getSession().getAllTrackables(Plane.class)) {
+    for (PlaneRenderable planeRenderable : planeRenderables.values()) {
+      planeRenderable.valid = false;
+    }
+    planeInstances.clear();
+    for (ARPlane plane : getSession().getAllPlanes()) {
 
       // check for planes that are no longer valid
       if (plane.getSubsumedBy() != null
@@ -191,34 +251,96 @@ public class HelloScene extends ARCoreScene {
           || plane.getPolygon().capacity() == 0) {
         continue;
       }
-      // New plane
-      Model planeModel = PlaneModel.createPlane(plane, index++);
-      if (planeModel == null) {
+      PlaneRenderable planeRenderable = planeRenderables.get(plane);
+      if (planeRenderable == null) {
+        // New plane, it keeps its index, and so its colors, while it is tracked.
+        planeRenderable = new PlaneRenderable(nextPlaneIndex++);
+        planeRenderables.put(plane, planeRenderable);
+      }
+      FloatBuffer polygon = plane.getPolygon();
+      if (!planeRenderable.hasPolygon(polygon)) {
+        planeRenderable.update(plane, polygon, planeGridTexture);
+      }
+      if (planeRenderable.instance == null) {
         continue;
       }
-      ModelInstance instance = new ModelInstance(planeModel);
-      instance.transform.setToTranslation(
+      planeRenderable.valid = true;
+      planeRenderable.instance.transform.setToTranslation(
           plane.getCenterPose().tx(), plane.getCenterPose().ty(), plane.getCenterPose().tz());
-      planeInstances.add(instance);
+      planeInstances.add(planeRenderable.instance);
+    }
+    for (Iterator<PlaneRenderable> it = planeRenderables.values().iterator(); it.hasNext(); ) {
+      PlaneRenderable planeRenderable = it.next();
+      if (!planeRenderable.valid) {
+        planeRenderable.dispose();
+        it.remove();
+      }
     }
     modelBatch.render(planeInstances);
   }
 
+  /** The model of a detected plane, and the polygon it was built from. */
+  private static class PlaneRenderable {
+    final int index;
+    Model model;
+    ModelInstance instance;
+    float[] polygon = new float[0];
+    boolean valid;
+
+    PlaneRenderable(int index) {
+      this.index = index;
+    }
+
+    boolean hasPolygon(FloatBuffer other) {
+      if (other.limit() != polygon.length) {
+        return false;
+      }
+      for (int i = 0; i < polygon.length; i++) {
+        if (other.get(i) != polygon[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void update(ARPlane plane, FloatBuffer newPolygon, Texture gridTexture) {
+      long start = FrameTracer.begin("PlaneRenderable.update");
+      try {
+        dispose();
+        polygon = new float[newPolygon.limit()];
+        newPolygon.get(polygon, 0, polygon.length);
+        newPolygon.rewind();
+        model = PlaneModel.createPlane(plane, index, gridTexture);
+        instance = model != null ? new ModelInstance(model) : null;
+      } finally {
+        FrameTracer.end("PlaneRenderable.update", start);
+      }
+    }
+
+    void dispose() {
+      if (model != null) {
+        model.dispose();
+        model = null;
+        instance = null;
+      }
+    }
+  }
+
   /**
    * Handles showing the loading message, then hiding it once a plane is detected.
    *
    * @param frame - the ARCore frame.
    * @return true once a plane is loaded.
    */
-  private boolean handleLoadingMessage(Frame frame) {
+  private boolean handleLoadingMessage(ARFrame frame) {
     // If not tracking, don't draw 3d objects.
-    if (frame.getCamera().getTrackingState() != TrackingState.TRACKING) {
+    if (frame.getTrackingState() != TrackingState.TRACKING) {
       showLoadingMessage();
       return false;
     }
     // Check if we detected at least one plane. If so, hide the loading message.
     if (mLoadingMessageSnackbar != null) {
-      for (Plane plane : getSession().getAllTrackables(Plane.class)) {
+      for (ARPlane plane : getSession().getAllPlanes()) {
         if (plane.getType() == Plane.Type.HORIZONTAL_UPWARD_FACING
             && plane.getTrackingState() == TrackingState.TRACKING) {
           hideLoadingMessage();
@@ -230,7 +352,8 @@ public class HelloScene extends ARCoreScene {
 
   /** Show the loading snackbar. */
   private void showLoadingMessage() {
-    if (mLoadingMessageSnackbar != null) {
+    // There is no view when the scene is not rendered on a device, such as when profiling it.
+    if (mLoadingMessageSnackbar != null || getView() == null) {
       return;
     }
     Gdx.app.postRunnable(
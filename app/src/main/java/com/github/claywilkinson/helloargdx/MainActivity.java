@@ -22,8 +22,16 @@ import android.support.v7.app.AlertDialog;
 import android.util.Log;
 
 import com.badlogic.gdx.backends.android.AndroidFragmentApplication;
+import com.github.claywilkinson.arcore.gdx.ARCoreScene;
 import com.github.claywilkinson.arcore.gdx.ARSupportFragment;
+import com.github.claywilkinson.arcore.gdx.AssetPreloader;
 import com.github.claywilkinson.arcore.gdx.ARFragmentApplication;
+import com.github.claywilkinson.arcore.gdx.FrameTracer;
+import com.github.claywilkinson.arcore.gdx.util.ARSessionConfig;
+import com.google.ar.core.Config;
+
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Main activity that extends the FragmentActivity and implements AndroidFragmentApplication
@@ -32,10 +40,29 @@ import com.github.claywilkinson.arcore.gdx.ARFragmentApplication;
  */
 public class MainActivity extends FragmentActivity implements AndroidFragmentApplication.Callbacks {
   private static final String TAG = "HelloGDX sample";
+  // Shows the performance overlay, for example on a customer's device with
+  //   adb shell am start -n com.github.claywilkinson.helloargdx/.MainActivity \
+  //       --ez performance_hud true
+  private static final String EXTRA_PERFORMANCE_HUD = "performance_hud";
+  // Writes the spans of the last frames when the app is paused, to pull with
+  //   adb pull /sdcard/Android/data/com.github.claywilkinson.helloargdx/files/frames.json
+  // and open in Perfetto or chrome://tracing.  The extra is given like the one above.
+  private static final String EXTRA_FRAME_TRACE = "frame_trace";
+  private static final String FRAME_TRACE_FILE = "frames.json";
+  // Runs the stress test instead of the sample, and writes its report to stress.csv next to the
+  // frame trace.
+  private static final String EXTRA_STRESS_TEST = "stress_test";
+  private static final String STRESS_TEST_FILE = "stress.csv";
+
+  // Loads the models while checking for AR support, so they are ready when the scene starts.
+  private AssetPreloader preloader;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
+    preloader = new AssetPreloader(this);
+    AndyModel.preload(preloader);
+
     // Loads the fragment.  There is no layout for this fragment, so it is simply added.
     ARSupportFragment supportFragment = new ARSupportFragment();
 
@@ -72,13 +99,28 @@ public class MainActivity extends FragmentActivity implements AndroidFragmentApp
     // Done with the AR support fragment, so remove it.
     removeSupportFragment();
 
+    boolean stressTest = getIntent().getBooleanExtra(EXTRA_STRESS_TEST, false);
+    boolean frameTrace = getIntent().getBooleanExtra(EXTRA_FRAME_TRACE, false);
+    FrameTracer.setEnabled(frameTrace);
+    File dir = getExternalFilesDir(null);
+    File report = dir != null ? new File(dir, STRESS_TEST_FILE) : null;
     Fragment fragment;
     if (useAr) {
       fragment = new ARFragmentApplication();
-      ((ARFragmentApplication)fragment).setScene(new HelloScene());
+      ARCoreScene scene =
+          stressTest ? new StressScene(preloader, report) : new HelloScene(preloader);
+      boolean performanceHud = getIntent().getBooleanExtra(EXTRA_PERFORMANCE_HUD, false);
+      scene.setPerformanceHudEnabled(performanceHud);
+      // The GPU times are shown by the overlay, and written with the frame trace.
+      scene.setGpuTimingEnabled(performanceHud || frameTrace);
+      ((ARFragmentApplication)fragment).setScene(scene);
+      // The scene does not use the light estimate, so don't compute it.
+      ((ARFragmentApplication) fragment).setSessionConfig(new ARSessionConfig()
+              .setLightEstimationMode(Config.LightEstimationMode.DISABLED));
     } else {
       fragment = new NonARFragmentApplication();
-      ((NonARFragmentApplication) fragment).setScene(new Hello3DScene());
+      ((NonARFragmentApplication) fragment).setScene(
+          stressTest ? new Stress3DScene(preloader, report) : new Hello3DScene(preloader));
     }
      // Finally place it in the layout.
     getSupportFragmentManager().beginTransaction()
@@ -93,6 +135,30 @@ public class MainActivity extends FragmentActivity implements AndroidFragmentApp
     }
   }
 
+  @Override
+  protected void onPause() {
+    super.onPause();
+    File dir = getExternalFilesDir(null);
+    if (!getIntent().getBooleanExtra(EXTRA_FRAME_TRACE, false) || dir == null) {
+      return;
+    }
+    File file = new File(dir, FRAME_TRACE_FILE);
+    new Thread(() -> {
+      try {
+        FrameTracer.write(file);
+        Log.i(TAG, "Wrote the frame trace to " + file);
+      } catch (IOException e) {
+        Log.e(TAG, "Couldn't write the frame trace", e);
+      }
+    }, "FrameTracer").start();
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    preloader.dispose();
+  }
+
   @Override
   public void exit() {
     Log.d(TAG,"Exiting, thanks for visiting!");
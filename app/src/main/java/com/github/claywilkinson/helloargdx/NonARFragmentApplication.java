@@ -9,6 +9,9 @@ import android.view.ViewGroup;
 
 import com.badlogic.gdx.ApplicationListener;
 import com.badlogic.gdx.backends.android.AndroidFragmentApplication;
+import com.github.claywilkinson.arcore.gdx.ProgramBinaryCache;
+
+import java.io.File;
 
 public class NonARFragmentApplication  extends AndroidFragmentApplication {
 
@@ -18,6 +21,13 @@ public class NonARFragmentApplication  extends AndroidFragmentApplication {
     this.scene = scene;
   }
 
+  @Override
+  public void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    // The shaders compiled by the previous launches are loaded rather than compiled again.
+    ProgramBinaryCache.setDirectory(new File(requireContext().getCacheDir(), "programs"));
+  }
+
   @Nullable
   @Override
   public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -30,6 +30,8 @@ import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
 import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
 import com.badlogic.gdx.graphics.g3d.shaders.BaseShader;
 import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.github.claywilkinson.arcore.gdx.CompressedTextures;
+import com.github.claywilkinson.arcore.gdx.SimpleShaderProvider;
 
 /**
  * Material for rendering the detected planes. This is an example of a material using a custom
@@ -95,13 +97,17 @@ public class PlaneMaterial extends Material {
     Color.PURPLE
   };
 
-  private static Texture gridTexture;
+  /**
+   * Loads the grid texture used by the materials.  It is owned by the caller, which disposes it
+   * when the planes are no longer drawn.
+   */
+  public static Texture loadGridTexture() {
+    Texture gridTexture = CompressedTextures.load("textures/trigrid.png");
+    gridTexture.setWrap(Texture.TextureWrap.Repeat, Texture.TextureWrap.Repeat);
+    return gridTexture;
+  }
 
-  public PlaneMaterial(int index) {
-    if (gridTexture == null) {
-      gridTexture = new Texture("textures/trigrid.png");
-      gridTexture.setWrap(Texture.TextureWrap.Repeat, Texture.TextureWrap.Repeat);
-    }
+  public PlaneMaterial(int index, Texture gridTexture) {
     set(TextureAttribute.createDiffuse(gridTexture));
     id = MATERIAL_ID_PREFIX + index;
     set(new BlendingAttribute(true, GL20.GL_DST_COLOR, GL20.GL_ONE_MINUS_SRC_ALPHA, 1f));
@@ -122,7 +128,7 @@ public class PlaneMaterial extends Material {
     DefaultShader.Config config = new DefaultShader.Config(VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE);
 
     // Register the custom uniform attributes.  These are set up by the renderer at the right time.
-    planeShader = new DefaultShader(renderable, config);
+    planeShader = SimpleShaderProvider.createDefaultShader(renderable, config);
     planeShader.register(
         PlaneShaderAttributes.DotColorAlias, PlaneShaderAttributes.DotUniformSetter);
     planeShader.register(
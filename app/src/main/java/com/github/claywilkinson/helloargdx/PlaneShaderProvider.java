@@ -0,0 +1,32 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.helloargdx;
+
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.github.claywilkinson.arcore.gdx.SimpleShaderProvider;
+
+/** Shader provider of the sample scenes, which knows the custom shader of {@link PlaneMaterial}. */
+class PlaneShaderProvider extends SimpleShaderProvider {
+  @Override
+  protected Shader createShader(Renderable renderable) {
+    if (renderable.material.id.startsWith(PlaneMaterial.MATERIAL_ID_PREFIX)) {
+      return PlaneMaterial.getShader(renderable);
+    } else {
+      return super.createShader(renderable);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.helloargdx;
+
+import android.support.annotation.Nullable;
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.github.claywilkinson.arcore.gdx.AssetCache;
+import com.github.claywilkinson.arcore.gdx.AssetPreloader;
+import com.github.claywilkinson.arcore.gdx.LodModelInstance;
+import java.io.File;
+
+/**
+ * Stress test of the rendering without AR, the counterpart of {@link StressScene} for devices
+ * without ARCore, and to compare with the cost of ARCore on devices with it.
+ */
+public class Stress3DScene implements ApplicationListener {
+  // Time per frame given to the asset manager to finish loading assets on the GL thread.
+  private static final int ASSET_UPDATE_BUDGET_MS = 4;
+
+  private final AssetPreloader preloader;
+  @Nullable private final File report;
+  private PerspectiveCamera camera;
+  private ModelBatch modelBatch;
+  private AssetCache assetCache;
+  private StressTest stressTest;
+
+  /**
+   * @param preloader - holds the assets loaded before the scene was started, this can be null.
+   * @param report - the file the CSV report is written to, null to only log it.
+   */
+  public Stress3DScene(AssetPreloader preloader, @Nullable File report) {
+    this.preloader = preloader;
+    this.report = report;
+  }
+
+  @Override
+  public void create() {
+    camera = new PerspectiveCamera(67, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+    camera.position.set(0, 1.6f, 0f);
+    // Looks down at the content on the floor in front.
+    camera.lookAt(0, 0, -3f);
+    camera.near = .01f;
+    camera.far = 30f;
+    camera.update();
+
+    modelBatch = new ModelBatch(new PlaneShaderProvider());
+    assetCache = AssetCache.get();
+    stressTest = new StressTest("3d", assetCache, preloader, 0, report);
+
+    Gdx.gl.glClearColor(.25f, .25f, .25f, 1f);
+  }
+
+  @Override
+  public void resize(int width, int height) {
+
+  }
+
+  @Override
+  public void render() {
+    Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_DEPTH_BUFFER_BIT);
+    Gdx.gl.glDepthMask(true);
+    Gdx.gl.glEnable(GL20.GL_DEPTH_TEST);
+    Gdx.gl.glEnable(GL20.GL_CULL_FACE);
+
+    // Let the asset manager work asynchronously, spending at most the budget on this frame.
+    assetCache.update(ASSET_UPDATE_BUDGET_MS);
+    stressTest.update(Gdx.graphics.getDeltaTime());
+    // The same levels of detail as StressScene, so the reports measure the same work.
+    LodModelInstance.updateLevels(stressTest.getInstances(), camera);
+
+    modelBatch.begin(camera);
+    stressTest.render(modelBatch);
+    modelBatch.end();
+  }
+
+  @Override
+  public void pause() {
+
+  }
+
+  @Override
+  public void resume() {
+
+  }
+
+  @Override
+  public void dispose() {
+    stressTest.dispose();
+    modelBatch.dispose();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.helloargdx;
+
+import android.support.annotation.Nullable;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
+import com.github.claywilkinson.arcore.gdx.ARCoreScene;
+import com.github.claywilkinson.arcore.gdx.ARFrame;
+import com.github.claywilkinson.arcore.gdx.AssetCache;
+import com.github.claywilkinson.arcore.gdx.AssetPreloader;
+import java.io.File;
+
+/**
+ * Stress test of the AR rendering, drawing more and more Andys and planes over the camera image
+ * to find where the frame rate drops on the device, see {@link StressTest}. The content is placed
+ * in the world whether ARCore tracks or not, so the device can be left on a table while it runs.
+ */
+public class StressScene extends ARCoreScene {
+  // Time per frame given to the asset manager to finish loading assets on the GL thread.
+  private static final int ASSET_UPDATE_BUDGET_MS = 4;
+  // The origin of the world is where the session started, about where a phone is held above the
+  // floor.
+  private static final float FLOOR_HEIGHT = -1.4f;
+
+  private final AssetPreloader preloader;
+  @Nullable private final File report;
+  private AssetCache assetCache;
+  private StressTest stressTest;
+
+  /**
+   * @param preloader - holds the assets loaded before the scene was started, this can be null.
+   */
+  public StressScene(AssetPreloader preloader) {
+    this(preloader, null);
+  }
+
+  /**
+   * @param preloader - holds the assets loaded before the scene was started, this can be null.
+   * @param report - the file the CSV report is written to, null to only log it.
+   */
+  public StressScene(AssetPreloader preloader, @Nullable File report) {
+    this.preloader = preloader;
+    this.report = report;
+  }
+
+  @Override
+  public void create() {
+    super.create();
+    assetCache = AssetCache.get();
+    stressTest = new StressTest("ar", assetCache, preloader, FLOOR_HEIGHT, report);
+  }
+
+  @Override
+  public void dispose() {
+    stressTest.dispose();
+    super.dispose();
+  }
+
+  @Override
+  protected ShaderProvider createShaderProvider() {
+    return new PlaneShaderProvider();
+  }
+
+  @Override
+  protected void render(ARFrame frame, ModelBatch modelBatch) {
+    assetCache.update(ASSET_UPDATE_BUDGET_MS);
+    stressTest.update(Gdx.graphics.getDeltaTime());
+    updateLevelsOfDetail(stressTest.getInstances());
+    stressTest.render(modelBatch);
+  }
+}
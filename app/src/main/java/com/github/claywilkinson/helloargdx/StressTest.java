@@ -0,0 +1,336 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.helloargdx;
+
+import android.os.Build;
+import android.support.annotation.Nullable;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.github.claywilkinson.arcore.gdx.ARPlane;
+import com.github.claywilkinson.arcore.gdx.AssetCache;
+import com.github.claywilkinson.arcore.gdx.AssetPreloader;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Finds how many Andys and planes a device draws within the frame budget, for {@link StressScene}
+ * and {@link Stress3DScene}. The number of Andys is doubled at each step while a few planes are
+ * drawn, and then the number of planes while a few Andys are. The frame times of each step are
+ * measured after a warmup, and the steps are written as CSV to the report file once done.
+ *
+ * <p>The planes are not detected by ARCore, they are discs placed in a grid on the floor, with the
+ * Andys in front of them.
+ */
+class StressTest implements Disposable {
+  private static final String TAG = "StressTest";
+  // Frames drawn after the content changes before measuring, while the meshes are uploaded and the
+  // shaders compiled.
+  private static final int WARMUP_FRAMES = 30;
+  private static final int MEASURED_FRAMES = 150;
+  // The camera runs at 30 frames per second.
+  private static final float FRAME_BUDGET_SECONDS = 1 / 30f;
+  // A sweep stops once the median frame takes this many budgets, the next steps are only slower.
+  private static final float GIVE_UP_BUDGETS = 4;
+  private static final int MAX_INSTANCES = 512;
+  private static final int MAX_PLANES = 64;
+  // Drawn while the other one is swept.
+  private static final int BASE_INSTANCES = 8;
+  private static final int BASE_PLANES = 2;
+  // Grids of the content, in meters, starting a meter in front of the camera.
+  private static final int INSTANCE_COLUMNS = 16;
+  private static final float INSTANCE_SPACING = 0.25f;
+  private static final int PLANE_COLUMNS = 8;
+  private static final float PLANE_SPACING = 1.2f;
+  private static final float PLANE_RADIUS = 0.5f;
+  private static final int PLANE_VERTICES = 16;
+  private static final String CSV_HEADER =
+      "scene,device,renderer,sweep,instances,planes,fps,p50_ms,p95_ms,p99_ms,max_ms\n";
+
+  private enum Sweep {
+    INSTANCES,
+    PLANES
+  }
+
+  private final String sceneName;
+  private final AssetCache assetCache;
+  private final AndyModel andyModel;
+  private final Texture gridTexture;
+  private final float floorHeight;
+  @Nullable private final File report;
+  private final String device;
+  private final String renderer;
+
+  private final Array<ModelInstance> instances = new Array<>();
+  private final Array<Model> planeModels = new Array<>();
+  private final Array<ModelInstance> planeInstances = new Array<>();
+  private final float[] frameTimes = new float[MEASURED_FRAMES];
+  private final StringBuilder csv = new StringBuilder(CSV_HEADER);
+  private Sweep sweep;
+  private int count;
+  // Frames drawn in the step.
+  private int frame;
+  // The first count of the sweep over budget at the 95th percentile, 0 if there is none yet.
+  private int knee;
+  private boolean finished;
+
+  /**
+   * Starts loading Andy, the first step starts once it is loaded. This is called on the GL thread.
+   *
+   * @param sceneName - the name of the scene in the report.
+   * @param preloader - holds the assets loaded before the scene was started, this can be null.
+   * @param floorHeight - the height of the floor in world space, the content is placed on it.
+   * @param report - the file the report is written to, null to only log it.
+   */
+  StressTest(String sceneName, AssetCache assetCache, @Nullable AssetPreloader preloader,
+      float floorHeight, @Nullable File report) {
+    this.sceneName = sceneName;
+    this.assetCache = assetCache;
+    this.floorHeight = floorHeight;
+    this.report = report;
+    andyModel = new AndyModel(assetCache, preloader);
+    gridTexture = PlaneMaterial.loadGridTexture();
+    // Only read for the report, the Android framework is not there when the scene runs in the
+    // replay harness of the benchmarks.
+    device = report != null ? csvField(Build.MANUFACTURER + " " + Build.MODEL) : "";
+    renderer = csvField(Gdx.gl.glGetString(GL20.GL_RENDERER));
+  }
+
+  /** The Andys drawn, to update their levels of detail. */
+  Array<ModelInstance> getInstances() {
+    return instances;
+  }
+
+  boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * Measures the frame, and moves to the next step once the step has all its frames. This is
+   * called at the start of each frame, before {@link #render(ModelBatch)}.
+   *
+   * @param deltaSeconds - the time since the previous frame started.
+   */
+  void update(float deltaSeconds) {
+    if (finished) {
+      return;
+    }
+    if (sweep == null) {
+      if (andyModel.isInitialized() || andyModel.initialize(assetCache)) {
+        startSweep(Sweep.INSTANCES);
+      }
+      return;
+    }
+    frame++;
+    if (frame > WARMUP_FRAMES) {
+      frameTimes[frame - WARMUP_FRAMES - 1] = deltaSeconds;
+    }
+    if (frame == WARMUP_FRAMES + MEASURED_FRAMES) {
+      endStep();
+    }
+  }
+
+  void render(ModelBatch modelBatch) {
+    modelBatch.render(planeInstances);
+    modelBatch.render(instances);
+  }
+
+  private void startSweep(Sweep sweep) {
+    this.sweep = sweep;
+    knee = 0;
+    startStep(1);
+  }
+
+  private void startStep(int count) {
+    this.count = count;
+    frame = 0;
+    setInstanceCount(sweep == Sweep.INSTANCES ? count : BASE_INSTANCES);
+    setPlaneCount(sweep == Sweep.PLANES ? count : BASE_PLANES);
+  }
+
+  private void endStep() {
+    Arrays.sort(frameTimes);
+    float total = 0;
+    for (float time : frameTimes) {
+      total += time;
+    }
+    float fps = MEASURED_FRAMES / total;
+    float p50 = percentile(50);
+    float p95 = percentile(95);
+    float p99 = percentile(99);
+    float max = frameTimes[MEASURED_FRAMES - 1];
+    csv.append(String.format(Locale.US, "%s,%s,%s,%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f\n",
+        sceneName, device, renderer, sweep.name().toLowerCase(Locale.US), instances.size,
+        planeInstances.size, fps, p50 * 1000, p95 * 1000, p99 * 1000, max * 1000));
+    Gdx.app.log(TAG, String.format(Locale.US,
+        "%d instances, %d planes: %.1f fps, %.1f / %.1f / %.1f ms (p50/p95/p99)",
+        instances.size, planeInstances.size, fps, p50 * 1000, p95 * 1000, p99 * 1000));
+    if (knee == 0 && p95 > FRAME_BUDGET_SECONDS) {
+      knee = count;
+    }
+
+    int limit = sweep == Sweep.INSTANCES ? MAX_INSTANCES : MAX_PLANES;
+    if (count * 2 <= limit && p50 < GIVE_UP_BUDGETS * FRAME_BUDGET_SECONDS) {
+      startStep(count * 2);
+      return;
+    }
+    String name = sweep.name().toLowerCase(Locale.US);
+    if (knee > 0) {
+      Gdx.app.log(TAG, "Over the frame budget from " + knee + " " + name);
+    } else {
+      Gdx.app.log(TAG, "Within the frame budget up to " + count + " " + name);
+    }
+    if (sweep == Sweep.INSTANCES) {
+      startSweep(Sweep.PLANES);
+    } else {
+      finish();
+    }
+  }
+
+  private float percentile(int percentile) {
+    int index = Math.max(0, (int) Math.ceil(percentile / 100f * MEASURED_FRAMES) - 1);
+    return frameTimes[index];
+  }
+
+  private void finish() {
+    finished = true;
+    setInstanceCount(0);
+    setPlaneCount(0);
+    if (report == null) {
+      return;
+    }
+    try (Writer writer = new FileWriter(report)) {
+      writer.write(csv.toString());
+      Gdx.app.log(TAG, "Wrote the report to " + report);
+    } catch (IOException e) {
+      Gdx.app.error(TAG, "Couldn't write the report to " + report, e);
+    }
+  }
+
+  private void setInstanceCount(int n) {
+    while (instances.size < n) {
+      int i = instances.size;
+      ModelInstance instance = andyModel.createInstance();
+      instance.transform.setToTranslation(
+          (i % INSTANCE_COLUMNS - (INSTANCE_COLUMNS - 1) / 2f) * INSTANCE_SPACING,
+          floorHeight,
+          -1 - i / INSTANCE_COLUMNS * INSTANCE_SPACING);
+      instances.add(instance);
+    }
+    instances.truncate(n);
+  }
+
+  private void setPlaneCount(int n) {
+    while (planeInstances.size < n) {
+      int i = planeInstances.size;
+      float x = (i % PLANE_COLUMNS - (PLANE_COLUMNS - 1) / 2f) * PLANE_SPACING;
+      float z = -1 - i / PLANE_COLUMNS * PLANE_SPACING;
+      Model model = PlaneModel.createPlane(new DiscPlane(x, floorHeight, z), i, gridTexture);
+      ModelInstance instance = new ModelInstance(model);
+      instance.transform.setToTranslation(x, floorHeight, z);
+      planeModels.add(model);
+      planeInstances.add(instance);
+    }
+    while (planeModels.size > n) {
+      planeModels.pop().dispose();
+    }
+    planeInstances.truncate(n);
+  }
+
+  private static String csvField(@Nullable String value) {
+    return value == null ? "" : value.replace(',', ' ');
+  }
+
+  @Override
+  public void dispose() {
+    setInstanceCount(0);
+    setPlaneCount(0);
+    gridTexture.dispose();
+    // The cache keeps the assets for other scenes until it needs the room.
+    andyModel.dispose(assetCache);
+  }
+
+  /** A horizontal disc, for building the model of a plane. */
+  private static class DiscPlane implements ARPlane {
+    private final Pose pose;
+    private final FloatBuffer polygon = FloatBuffer.allocate(PLANE_VERTICES * 2);
+
+    DiscPlane(float x, float y, float z) {
+      pose = Pose.makeTranslation(x, y, z);
+      for (int i = 0; i < PLANE_VERTICES; i++) {
+        // Counterclockwise seen from above, like the polygons of ARCore.
+        double angle = -2 * Math.PI * i / PLANE_VERTICES;
+        polygon.put(i * 2, (float) (PLANE_RADIUS * Math.cos(angle)));
+        polygon.put(i * 2 + 1, (float) (PLANE_RADIUS * Math.sin(angle)));
+      }
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return TrackingState.TRACKING;
+    }
+
+    @Override
+    public Plane.Type getType() {
+      return Plane.Type.HORIZONTAL_UPWARD_FACING;
+    }
+
+    @Override
+    public Pose getCenterPose() {
+      return pose;
+    }
+
+    @Override
+    public float getExtentX() {
+      return 2 * PLANE_RADIUS;
+    }
+
+    @Override
+    public float getExtentZ() {
+      return 2 * PLANE_RADIUS;
+    }
+
+    @Override
+    public FloatBuffer getPolygon() {
+      return polygon;
+    }
+
+    @Override
+    public ARPlane getSubsumedBy() {
+      return null;
+    }
+
+    @Override
+    public boolean isPoseInPolygon(Pose pose) {
+      float x = pose.tx() - this.pose.tx();
+      float z = pose.tz() - this.pose.tz();
+      return x * x + z * z <= PLANE_RADIUS * PLANE_RADIUS;
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Races the completion of {@link AcceptableFuture} against the callbacks being added, with the
+ * callbacks run by {@link AcceptableFuture#DIRECT} on whichever thread gets there.
+ */
+public class AcceptableFutureTest {
+  private static final int ROUNDS = 2000;
+  // Callbacks added before the race, by each of the two threads during it, and after it.
+  private static final int CALLBACKS = 8;
+
+  private ExecutorService threads;
+
+  @Before
+  public void setUp() {
+    threads = Executors.newFixedThreadPool(6);
+  }
+
+  @After
+  public void tearDown() {
+    threads.shutdownNow();
+  }
+
+  @Test
+  public void completeWithNull_isDone() throws Exception {
+    AcceptableFuture<Object> future = new AcceptableFuture<>(AcceptableFuture.DIRECT);
+    assertFalse(future.isDone());
+    assertTrue(future.complete(null));
+    assertTrue(future.isDone());
+    assertFalse(future.isCancelled());
+    assertNull(future.get());
+    assertFalse(future.complete(new Object()));
+    assertNull(future.get());
+  }
+
+  @Test
+  public void racingCompletions_runEachCallbackOnce() throws Exception {
+    Exception failure = new Exception("failed");
+    for (int round = 0; round < ROUNDS; round++) {
+      AcceptableFuture<Object> future = new AcceptableFuture<>(AcceptableFuture.DIRECT);
+      // Null half of the time, to check it is not mistaken for pending.
+      Object value = round % 2 == 0 ? null : "value";
+      List<Observer> observers = Collections.synchronizedList(new ArrayList<>());
+      for (int i = 0; i < CALLBACKS; i++) {
+        observers.add(new Observer(future, i));
+      }
+
+      CountDownLatch start = new CountDownLatch(1);
+      AtomicInteger winners = new AtomicInteger();
+      List<Future<?>> tasks = new ArrayList<>();
+      tasks.add(threads.submit(() -> {
+        await(start);
+        if (future.complete(value)) {
+          winners.incrementAndGet();
+        }
+      }));
+      tasks.add(threads.submit(() -> {
+        await(start);
+        if (future.completeExceptionally(failure)) {
+          winners.incrementAndGet();
+        }
+      }));
+      tasks.add(threads.submit(() -> {
+        await(start);
+        if (future.cancel(false)) {
+          winners.incrementAndGet();
+        }
+      }));
+      for (int t = 0; t < 2; t++) {
+        tasks.add(threads.submit(() -> {
+          await(start);
+          for (int i = 0; i < CALLBACKS; i++) {
+            observers.add(new Observer(future, i));
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<?> task : tasks) {
+        task.get(10, TimeUnit.SECONDS);
+      }
+      // Added once the future is complete.
+      for (int i = 0; i < CALLBACKS; i++) {
+        observers.add(new Observer(future, i));
+      }
+
+      assertEquals("round " + round, 1, winners.get());
+      assertTrue(future.isDone());
+      Throwable outcome = outcome(future);
+      synchronized (observers) {
+        for (Observer observer : observers) {
+          observer.check(value, outcome, round);
+        }
+      }
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Returns the exception of the future, or null if it completed with a value. */
+  private static Throwable outcome(AcceptableFuture<?> future) throws InterruptedException {
+    try {
+      future.get();
+      return null;
+    } catch (CancellationException e) {
+      return e;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  /** Adds a callback to a future and counts its calls, alternating thenAccept and thenApply. */
+  private static class Observer {
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicInteger completions = new AtomicInteger();
+    final AcceptableFuture<?> dependent;
+    volatile Object received;
+
+    Observer(AcceptableFuture<Object> future, int index) {
+      if (index % 2 == 0) {
+        dependent = future.thenAccept(v -> {
+          received = v;
+          calls.incrementAndGet();
+        });
+      } else {
+        dependent = future.thenApply(v -> {
+          received = v;
+          calls.incrementAndGet();
+          return v;
+        });
+      }
+      // Runs whether the callback ran or was skipped because the future failed.
+      dependent.exceptionally(e -> null).thenAccept(v -> completions.incrementAndGet());
+    }
+
+    void check(Object value, Throwable outcome, int round) throws InterruptedException {
+      String message = "round " + round;
+      assertTrue(message, dependent.isDone());
+      assertEquals(message, 1, completions.get());
+      if (outcome == null) {
+        assertEquals(message, 1, calls.get());
+        assertSame(message, value, received);
+        return;
+      }
+      assertEquals(message, 0, calls.get());
+      try {
+        dependent.get();
+        fail(message);
+      } catch (CancellationException e) {
+        assertSame(message, outcome, e);
+      } catch (ExecutionException e) {
+        assertSame(message, outcome, e.getCause());
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.files.FileHandle;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/** Input files of the benchmarks. */
+public class BenchmarkFiles {
+  private BenchmarkFiles() {}
+
+  /**
+   * Returns a file in the assets of the app. The build passes their location in the
+   * benchmark.assets property.
+   */
+  public static FileHandle asset(String path) {
+    String assets = System.getProperty("benchmark.assets", "../app/src/main/assets");
+    FileHandle file = new FileHandle(new File(assets, path));
+    if (!file.exists()) {
+      throw new IllegalStateException(file + " not found, set -Dbenchmark.assets");
+    }
+    return file;
+  }
+
+  /**
+   * Writes an OBJ file of a wavy grid with positions, normals and uvs, like a scanned or sculpted
+   * model.
+   *
+   * @param triangles - the approximate number of triangles.
+   */
+  public static FileHandle writeGridObj(int triangles) throws IOException {
+    int size = Math.max(1, (int) Math.sqrt(triangles / 2.0));
+    File file = File.createTempFile("grid" + triangles, ".obj");
+    file.deleteOnExit();
+    try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+      for (int z = 0; z <= size; z++) {
+        for (int x = 0; x <= size; x++) {
+          float u = (float) x / size;
+          float v = (float) z / size;
+          double height = 0.05 * Math.sin(u * 20) * Math.cos(v * 20);
+          out.printf(Locale.US, "v %.6f %.6f %.6f%n", u, height, v);
+          out.printf(Locale.US, "vn %.6f %.6f %.6f%n", 0f, 1f, 0f);
+          out.printf(Locale.US, "vt %.6f %.6f%n", u, v);
+        }
+      }
+      for (int z = 0; z < size; z++) {
+        for (int x = 0; x < size; x++) {
+          int a = z * (size + 1) + x + 1;
+          int b = a + 1;
+          int c = a + size + 1;
+          int d = c + 1;
+          out.printf("f %d/%d/%d %d/%d/%d %d/%d/%d%n", a, a, a, c, c, c, b, b, b);
+          out.printf("f %d/%d/%d %d/%d/%d %d/%d/%d%n", b, b, b, c, c, c, d, d, d);
+        }
+      }
+    }
+    return new FileHandle(file);
+  }
+
+  /** Writes an MTL file with the given number of textured materials. */
+  public static FileHandle writeMtl(int materials) throws IOException {
+    File file = File.createTempFile("materials" + materials, ".mtl");
+    file.deleteOnExit();
+    try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+      for (int i = 0; i < materials; i++) {
+        out.println("newmtl material" + i);
+        out.println("Ka 0.2 0.2 0.2");
+        out.println("Kd 0.8 0.6 0.4");
+        out.println("Ks 0.5 0.5 0.5");
+        out.println("Ns 32");
+        out.println("d 1.0");
+        out.println("map_Kd texture" + i + ".png");
+        out.println();
+      }
+    }
+    return new FileHandle(file);
+  }
+}
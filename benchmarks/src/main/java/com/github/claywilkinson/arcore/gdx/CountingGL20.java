@@ -0,0 +1,1270 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * GL20 which draws nothing, and counts the calls made to it, to profile the rendering without a
+ * GPU. It keeps the state that is set, so it can tell the state changes which change nothing, and
+ * answer the queries the way a driver would: every shader compiles, and the names are unique.
+ *
+ * <p>Nothing is allocated per call, so it does not add to the allocations of the code calling it.
+ */
+public class CountingGL20 implements GL20 {
+  /** The kinds of calls. */
+  public enum Kind {
+    /** Draw calls. */
+    DRAW,
+    /** Changes of the pipeline state, such as binding textures and enabling blending. */
+    STATE,
+    /** Uniform updates. */
+    UNIFORM,
+    /** Uploads of buffer and texture data. */
+    UPLOAD,
+    /** Creating and deleting objects, and compiling shaders. */
+    RESOURCE,
+    /** Reading state or data back, which stalls the pipeline of a real driver. */
+    QUERY,
+    OTHER
+  }
+
+  /** The GL functions, and their kinds. */
+  public enum Call {
+    glActiveTexture(Kind.STATE),
+    glBindTexture(Kind.STATE),
+    glBlendFunc(Kind.STATE),
+    glClear(Kind.OTHER),
+    glClearColor(Kind.STATE),
+    glClearDepthf(Kind.STATE),
+    glClearStencil(Kind.STATE),
+    glColorMask(Kind.STATE),
+    glCompressedTexImage2D(Kind.UPLOAD),
+    glCompressedTexSubImage2D(Kind.UPLOAD),
+    glCopyTexImage2D(Kind.UPLOAD),
+    glCopyTexSubImage2D(Kind.UPLOAD),
+    glCullFace(Kind.STATE),
+    glDeleteTextures(Kind.RESOURCE),
+    glDeleteTexture(Kind.RESOURCE),
+    glDepthFunc(Kind.STATE),
+    glDepthMask(Kind.STATE),
+    glDepthRangef(Kind.STATE),
+    glDisable(Kind.STATE),
+    glDrawArrays(Kind.DRAW),
+    glDrawElements(Kind.DRAW),
+    glEnable(Kind.STATE),
+    glFinish(Kind.QUERY),
+    glFlush(Kind.OTHER),
+    glFrontFace(Kind.STATE),
+    glGenTextures(Kind.RESOURCE),
+    glGenTexture(Kind.RESOURCE),
+    glGetError(Kind.QUERY),
+    glGetIntegerv(Kind.QUERY),
+    glGetString(Kind.QUERY),
+    glHint(Kind.STATE),
+    glLineWidth(Kind.STATE),
+    glPixelStorei(Kind.STATE),
+    glPolygonOffset(Kind.STATE),
+    glReadPixels(Kind.QUERY),
+    glScissor(Kind.STATE),
+    glStencilFunc(Kind.STATE),
+    glStencilMask(Kind.STATE),
+    glStencilOp(Kind.STATE),
+    glTexImage2D(Kind.UPLOAD),
+    glTexParameterf(Kind.STATE),
+    glTexSubImage2D(Kind.UPLOAD),
+    glViewport(Kind.STATE),
+    glAttachShader(Kind.RESOURCE),
+    glBindAttribLocation(Kind.RESOURCE),
+    glBindBuffer(Kind.STATE),
+    glBindFramebuffer(Kind.STATE),
+    glBindRenderbuffer(Kind.STATE),
+    glBlendColor(Kind.STATE),
+    glBlendEquation(Kind.STATE),
+    glBlendEquationSeparate(Kind.STATE),
+    glBlendFuncSeparate(Kind.STATE),
+    glBufferData(Kind.UPLOAD),
+    glBufferSubData(Kind.UPLOAD),
+    glCheckFramebufferStatus(Kind.QUERY),
+    glCompileShader(Kind.RESOURCE),
+    glCreateProgram(Kind.RESOURCE),
+    glCreateShader(Kind.RESOURCE),
+    glDeleteBuffer(Kind.RESOURCE),
+    glDeleteBuffers(Kind.RESOURCE),
+    glDeleteFramebuffer(Kind.RESOURCE),
+    glDeleteFramebuffers(Kind.RESOURCE),
+    glDeleteProgram(Kind.RESOURCE),
+    glDeleteRenderbuffer(Kind.RESOURCE),
+    glDeleteRenderbuffers(Kind.RESOURCE),
+    glDeleteShader(Kind.RESOURCE),
+    glDetachShader(Kind.RESOURCE),
+    glDisableVertexAttribArray(Kind.STATE),
+    glEnableVertexAttribArray(Kind.STATE),
+    glFramebufferRenderbuffer(Kind.RESOURCE),
+    glFramebufferTexture2D(Kind.RESOURCE),
+    glGenBuffer(Kind.RESOURCE),
+    glGenBuffers(Kind.RESOURCE),
+    glGenerateMipmap(Kind.UPLOAD),
+    glGenFramebuffer(Kind.RESOURCE),
+    glGenFramebuffers(Kind.RESOURCE),
+    glGenRenderbuffer(Kind.RESOURCE),
+    glGenRenderbuffers(Kind.RESOURCE),
+    glGetActiveAttrib(Kind.QUERY),
+    glGetActiveUniform(Kind.QUERY),
+    glGetAttachedShaders(Kind.QUERY),
+    glGetAttribLocation(Kind.QUERY),
+    glGetBooleanv(Kind.QUERY),
+    glGetBufferParameteriv(Kind.QUERY),
+    glGetFloatv(Kind.QUERY),
+    glGetFramebufferAttachmentParameteriv(Kind.QUERY),
+    glGetProgramiv(Kind.QUERY),
+    glGetProgramInfoLog(Kind.QUERY),
+    glGetRenderbufferParameteriv(Kind.QUERY),
+    glGetShaderiv(Kind.QUERY),
+    glGetShaderInfoLog(Kind.QUERY),
+    glGetShaderPrecisionFormat(Kind.QUERY),
+    glGetTexParameterfv(Kind.QUERY),
+    glGetTexParameteriv(Kind.QUERY),
+    glGetUniformfv(Kind.QUERY),
+    glGetUniformiv(Kind.QUERY),
+    glGetUniformLocation(Kind.QUERY),
+    glGetVertexAttribfv(Kind.QUERY),
+    glGetVertexAttribiv(Kind.QUERY),
+    glGetVertexAttribPointerv(Kind.QUERY),
+    glIsBuffer(Kind.QUERY),
+    glIsEnabled(Kind.QUERY),
+    glIsFramebuffer(Kind.QUERY),
+    glIsProgram(Kind.QUERY),
+    glIsRenderbuffer(Kind.QUERY),
+    glIsShader(Kind.QUERY),
+    glIsTexture(Kind.QUERY),
+    glLinkProgram(Kind.RESOURCE),
+    glReleaseShaderCompiler(Kind.RESOURCE),
+    glRenderbufferStorage(Kind.RESOURCE),
+    glSampleCoverage(Kind.STATE),
+    glShaderBinary(Kind.RESOURCE),
+    glShaderSource(Kind.RESOURCE),
+    glStencilFuncSeparate(Kind.STATE),
+    glStencilMaskSeparate(Kind.STATE),
+    glStencilOpSeparate(Kind.STATE),
+    glTexParameterfv(Kind.STATE),
+    glTexParameteri(Kind.STATE),
+    glTexParameteriv(Kind.STATE),
+    glUniform1f(Kind.UNIFORM),
+    glUniform1fv(Kind.UNIFORM),
+    glUniform1i(Kind.UNIFORM),
+    glUniform1iv(Kind.UNIFORM),
+    glUniform2f(Kind.UNIFORM),
+    glUniform2fv(Kind.UNIFORM),
+    glUniform2i(Kind.UNIFORM),
+    glUniform2iv(Kind.UNIFORM),
+    glUniform3f(Kind.UNIFORM),
+    glUniform3fv(Kind.UNIFORM),
+    glUniform3i(Kind.UNIFORM),
+    glUniform3iv(Kind.UNIFORM),
+    glUniform4f(Kind.UNIFORM),
+    glUniform4fv(Kind.UNIFORM),
+    glUniform4i(Kind.UNIFORM),
+    glUniform4iv(Kind.UNIFORM),
+    glUniformMatrix2fv(Kind.UNIFORM),
+    glUniformMatrix3fv(Kind.UNIFORM),
+    glUniformMatrix4fv(Kind.UNIFORM),
+    glUseProgram(Kind.STATE),
+    glValidateProgram(Kind.RESOURCE),
+    glVertexAttrib1f(Kind.STATE),
+    glVertexAttrib1fv(Kind.STATE),
+    glVertexAttrib2f(Kind.STATE),
+    glVertexAttrib2fv(Kind.STATE),
+    glVertexAttrib3f(Kind.STATE),
+    glVertexAttrib3fv(Kind.STATE),
+    glVertexAttrib4f(Kind.STATE),
+    glVertexAttrib4fv(Kind.STATE),
+    glVertexAttribPointer(Kind.STATE);
+
+    public final Kind kind;
+
+    Call(Kind kind) {
+      this.kind = kind;
+    }
+  }
+
+  private static final Call[] CALLS = Call.values();
+  private static final Kind[] KINDS = Kind.values();
+
+  private final long[] callCounts = new long[CALLS.length];
+  private final long[] kindCounts = new long[KINDS.length];
+  private long redundant;
+  private long drawnVertices;
+  private long uploadedBytes;
+
+  // The state.
+  private int nextName;
+  private final ObjectIntMap<String> locations = new ObjectIntMap<>();
+  private final IntSet enabled = new IntSet();
+  private final IntIntMap boundTextures = new IntIntMap();
+  private final IntIntMap boundBuffers = new IntIntMap();
+  private int activeTexture = GL_TEXTURE0;
+  private int currentProgram;
+  private int blendSrc = GL_ONE;
+  private int blendDst = GL_ZERO;
+  private int cullFace = GL_BACK;
+  private int depthFunc = GL_LESS;
+  private boolean depthMask = true;
+
+  /** Returns the number of calls of a function since the last reset. */
+  public long getCount(Call call) {
+    return callCounts[call.ordinal()];
+  }
+
+  /** Returns the number of calls of a kind since the last reset. */
+  public long getCount(Kind kind) {
+    return kindCounts[kind.ordinal()];
+  }
+
+  /** Returns the number of calls since the last reset. */
+  public long getCount() {
+    long count = 0;
+    for (long kindCount : kindCounts) {
+      count += kindCount;
+    }
+    return count;
+  }
+
+  /** Returns the number of state changes since the last reset which set the state it had. */
+  public long getRedundantStateChanges() {
+    return redundant;
+  }
+
+  /** Returns the number of vertices, or indices, drawn since the last reset. */
+  public long getDrawnVertices() {
+    return drawnVertices;
+  }
+
+  /** Returns the number of bytes of buffer and texture data uploaded since the last reset. */
+  public long getUploadedBytes() {
+    return uploadedBytes;
+  }
+
+  /** Resets the counts, the state is kept. */
+  public void reset() {
+    Arrays.fill(callCounts, 0);
+    Arrays.fill(kindCounts, 0);
+    redundant = 0;
+    drawnVertices = 0;
+    uploadedBytes = 0;
+  }
+
+  private void record(Call call) {
+    callCounts[call.ordinal()]++;
+    kindCounts[call.kind.ordinal()]++;
+  }
+
+  private int nextName() {
+    return ++nextName;
+  }
+
+  // Every attribute and uniform exists, each name has its location in all the programs.
+  private int getLocation(String name) {
+    int location = locations.get(name, -1);
+    if (location == -1) {
+      location = locations.size;
+      locations.put(name, location);
+    }
+    return location;
+  }
+
+  private int getInteger(int pname) {
+    switch (pname) {
+      case GL_DEPTH_TEST:
+      case GL_CULL_FACE:
+      case GL_BLEND:
+      case GL_SCISSOR_TEST:
+      case GL_STENCIL_TEST:
+        return enabled.contains(pname) ? GL_TRUE : GL_FALSE;
+      case GL_DEPTH_WRITEMASK:
+        return depthMask ? GL_TRUE : GL_FALSE;
+      case GL_DEPTH_FUNC:
+        return depthFunc;
+      case GL_CURRENT_PROGRAM:
+        return currentProgram;
+      case GL_ACTIVE_TEXTURE:
+        return activeTexture;
+      case GL_MAX_TEXTURE_IMAGE_UNITS:
+      case GL_MAX_VERTEX_ATTRIBS:
+        return 16;
+      case GL_MAX_COMBINED_TEXTURE_IMAGE_UNITS:
+        return 32;
+      case GL_MAX_TEXTURE_SIZE:
+        return 4096;
+      default:
+        return 0;
+    }
+  }
+
+  private static String getString(int name) {
+    switch (name) {
+      case GL_VERSION:
+        return "OpenGL ES 2.0";
+      case GL_SHADING_LANGUAGE_VERSION:
+        return "OpenGL ES GLSL ES 1.00";
+      case GL_VENDOR:
+      case GL_RENDERER:
+        return "CountingGL20";
+      default:
+        return "";
+    }
+  }
+
+  private static long bytes(Buffer buffer) {
+    if (buffer == null) {
+      return 0;
+    } else if (buffer instanceof ByteBuffer) {
+      return buffer.remaining();
+    } else if (buffer instanceof ShortBuffer) {
+      return buffer.remaining() * 2L;
+    } else {
+      return buffer.remaining() * 4L;
+    }
+  }
+
+  @Override
+  public void glActiveTexture(int texture) {
+    record(Call.glActiveTexture);
+    if (texture == activeTexture) {
+      redundant++;
+    }
+    activeTexture = texture;
+  }
+
+  @Override
+  public void glBindTexture(int target, int texture) {
+    record(Call.glBindTexture);
+    int key = (activeTexture - GL_TEXTURE0) << 16 | target;
+    if (boundTextures.get(key, 0) == texture) {
+      redundant++;
+    }
+    boundTextures.put(key, texture);
+  }
+
+  @Override
+  public void glBlendFunc(int sfactor, int dfactor) {
+    record(Call.glBlendFunc);
+    if (sfactor == blendSrc && dfactor == blendDst) {
+      redundant++;
+    }
+    blendSrc = sfactor;
+    blendDst = dfactor;
+  }
+
+  @Override
+  public void glClear(int mask) {
+    record(Call.glClear);
+  }
+
+  @Override
+  public void glClearColor(float red, float green, float blue, float alpha) {
+    record(Call.glClearColor);
+  }
+
+  @Override
+  public void glClearDepthf(float depth) {
+    record(Call.glClearDepthf);
+  }
+
+  @Override
+  public void glClearStencil(int s) {
+    record(Call.glClearStencil);
+  }
+
+  @Override
+  public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+    record(Call.glColorMask);
+  }
+
+  @Override
+  public void glCompressedTexImage2D(
+      int target, int level, int internalformat, int width, int height, int border, int imageSize,
+      Buffer data) {
+    record(Call.glCompressedTexImage2D);
+    uploadedBytes += imageSize;
+  }
+
+  @Override
+  public void glCompressedTexSubImage2D(
+      int target, int level, int xoffset, int yoffset, int width, int height, int format,
+      int imageSize, Buffer data) {
+    record(Call.glCompressedTexSubImage2D);
+    uploadedBytes += imageSize;
+  }
+
+  @Override
+  public void glCopyTexImage2D(
+      int target, int level, int internalformat, int x, int y, int width, int height, int border) {
+    record(Call.glCopyTexImage2D);
+  }
+
+  @Override
+  public void glCopyTexSubImage2D(
+      int target, int level, int xoffset, int yoffset, int x, int y, int width, int height) {
+    record(Call.glCopyTexSubImage2D);
+  }
+
+  @Override
+  public void glCullFace(int mode) {
+    record(Call.glCullFace);
+    if (mode == cullFace) {
+      redundant++;
+    }
+    cullFace = mode;
+  }
+
+  @Override
+  public void glDeleteTextures(int n, IntBuffer textures) {
+    record(Call.glDeleteTextures);
+  }
+
+  @Override
+  public void glDeleteTexture(int texture) {
+    record(Call.glDeleteTexture);
+  }
+
+  @Override
+  public void glDepthFunc(int func) {
+    record(Call.glDepthFunc);
+    if (func == depthFunc) {
+      redundant++;
+    }
+    depthFunc = func;
+  }
+
+  @Override
+  public void glDepthMask(boolean flag) {
+    record(Call.glDepthMask);
+    if (flag == depthMask) {
+      redundant++;
+    }
+    depthMask = flag;
+  }
+
+  @Override
+  public void glDepthRangef(float zNear, float zFar) {
+    record(Call.glDepthRangef);
+  }
+
+  @Override
+  public void glDisable(int cap) {
+    record(Call.glDisable);
+    if (!enabled.remove(cap)) {
+      redundant++;
+    }
+  }
+
+  @Override
+  public void glDrawArrays(int mode, int first, int count) {
+    record(Call.glDrawArrays);
+    drawnVertices += count;
+  }
+
+  @Override
+  public void glDrawElements(int mode, int count, int type, Buffer indices) {
+    record(Call.glDrawElements);
+    drawnVertices += count;
+  }
+
+  @Override
+  public void glEnable(int cap) {
+    record(Call.glEnable);
+    if (!enabled.add(cap)) {
+      redundant++;
+    }
+  }
+
+  @Override
+  public void glFinish() {
+    record(Call.glFinish);
+  }
+
+  @Override
+  public void glFlush() {
+    record(Call.glFlush);
+  }
+
+  @Override
+  public void glFrontFace(int mode) {
+    record(Call.glFrontFace);
+  }
+
+  @Override
+  public void glGenTextures(int n, IntBuffer textures) {
+    record(Call.glGenTextures);
+    for (int i = 0; i < n; i++) {
+      textures.put(textures.position() + i, nextName());
+    }
+  }
+
+  @Override
+  public int glGenTexture() {
+    record(Call.glGenTexture);
+    return nextName();
+  }
+
+  @Override
+  public int glGetError() {
+    record(Call.glGetError);
+    return GL_NO_ERROR;
+  }
+
+  @Override
+  public void glGetIntegerv(int pname, IntBuffer params) {
+    record(Call.glGetIntegerv);
+    params.put(params.position(), getInteger(pname));
+  }
+
+  @Override
+  public String glGetString(int name) {
+    record(Call.glGetString);
+    return getString(name);
+  }
+
+  @Override
+  public void glHint(int target, int mode) {
+    record(Call.glHint);
+  }
+
+  @Override
+  public void glLineWidth(float width) {
+    record(Call.glLineWidth);
+  }
+
+  @Override
+  public void glPixelStorei(int pname, int param) {
+    record(Call.glPixelStorei);
+  }
+
+  @Override
+  public void glPolygonOffset(float factor, float units) {
+    record(Call.glPolygonOffset);
+  }
+
+  @Override
+  public void glReadPixels(
+      int x, int y, int width, int height, int format, int type, Buffer pixels) {
+    record(Call.glReadPixels);
+  }
+
+  @Override
+  public void glScissor(int x, int y, int width, int height) {
+    record(Call.glScissor);
+  }
+
+  @Override
+  public void glStencilFunc(int func, int ref, int mask) {
+    record(Call.glStencilFunc);
+  }
+
+  @Override
+  public void glStencilMask(int mask) {
+    record(Call.glStencilMask);
+  }
+
+  @Override
+  public void glStencilOp(int fail, int zfail, int zpass) {
+    record(Call.glStencilOp);
+  }
+
+  @Override
+  public void glTexImage2D(
+      int target, int level, int internalformat, int width, int height, int border, int format,
+      int type, Buffer pixels) {
+    record(Call.glTexImage2D);
+    uploadedBytes += bytes(pixels);
+  }
+
+  @Override
+  public void glTexParameterf(int target, int pname, float param) {
+    record(Call.glTexParameterf);
+  }
+
+  @Override
+  public void glTexSubImage2D(
+      int target, int level, int xoffset, int yoffset, int width, int height, int format, int type,
+      Buffer pixels) {
+    record(Call.glTexSubImage2D);
+    uploadedBytes += bytes(pixels);
+  }
+
+  @Override
+  public void glViewport(int x, int y, int width, int height) {
+    record(Call.glViewport);
+  }
+
+  @Override
+  public void glAttachShader(int program, int shader) {
+    record(Call.glAttachShader);
+  }
+
+  @Override
+  public void glBindAttribLocation(int program, int index, String name) {
+    record(Call.glBindAttribLocation);
+  }
+
+  @Override
+  public void glBindBuffer(int target, int buffer) {
+    record(Call.glBindBuffer);
+    if (boundBuffers.get(target, 0) == buffer) {
+      redundant++;
+    }
+    boundBuffers.put(target, buffer);
+  }
+
+  @Override
+  public void glBindFramebuffer(int target, int framebuffer) {
+    record(Call.glBindFramebuffer);
+  }
+
+  @Override
+  public void glBindRenderbuffer(int target, int renderbuffer) {
+    record(Call.glBindRenderbuffer);
+  }
+
+  @Override
+  public void glBlendColor(float red, float green, float blue, float alpha) {
+    record(Call.glBlendColor);
+  }
+
+  @Override
+  public void glBlendEquation(int mode) {
+    record(Call.glBlendEquation);
+  }
+
+  @Override
+  public void glBlendEquationSeparate(int modeRGB, int modeAlpha) {
+    record(Call.glBlendEquationSeparate);
+  }
+
+  @Override
+  public void glBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+    record(Call.glBlendFuncSeparate);
+  }
+
+  @Override
+  public void glBufferData(int target, int size, Buffer data, int usage) {
+    record(Call.glBufferData);
+    uploadedBytes += size;
+  }
+
+  @Override
+  public void glBufferSubData(int target, int offset, int size, Buffer data) {
+    record(Call.glBufferSubData);
+    uploadedBytes += size;
+  }
+
+  @Override
+  public int glCheckFramebufferStatus(int target) {
+    record(Call.glCheckFramebufferStatus);
+    return GL_FRAMEBUFFER_COMPLETE;
+  }
+
+  @Override
+  public void glCompileShader(int shader) {
+    record(Call.glCompileShader);
+  }
+
+  @Override
+  public int glCreateProgram() {
+    record(Call.glCreateProgram);
+    return nextName();
+  }
+
+  @Override
+  public int glCreateShader(int type) {
+    record(Call.glCreateShader);
+    return nextName();
+  }
+
+  @Override
+  public void glDeleteBuffer(int buffer) {
+    record(Call.glDeleteBuffer);
+  }
+
+  @Override
+  public void glDeleteBuffers(int n, IntBuffer buffers) {
+    record(Call.glDeleteBuffers);
+  }
+
+  @Override
+  public void glDeleteFramebuffer(int framebuffer) {
+    record(Call.glDeleteFramebuffer);
+  }
+
+  @Override
+  public void glDeleteFramebuffers(int n, IntBuffer framebuffers) {
+    record(Call.glDeleteFramebuffers);
+  }
+
+  @Override
+  public void glDeleteProgram(int program) {
+    record(Call.glDeleteProgram);
+  }
+
+  @Override
+  public void glDeleteRenderbuffer(int renderbuffer) {
+    record(Call.glDeleteRenderbuffer);
+  }
+
+  @Override
+  public void glDeleteRenderbuffers(int n, IntBuffer renderbuffers) {
+    record(Call.glDeleteRenderbuffers);
+  }
+
+  @Override
+  public void glDeleteShader(int shader) {
+    record(Call.glDeleteShader);
+  }
+
+  @Override
+  public void glDetachShader(int program, int shader) {
+    record(Call.glDetachShader);
+  }
+
+  @Override
+  public void glDisableVertexAttribArray(int index) {
+    record(Call.glDisableVertexAttribArray);
+  }
+
+  @Override
+  public void glDrawElements(int mode, int count, int type, int indices) {
+    record(Call.glDrawElements);
+    drawnVertices += count;
+  }
+
+  @Override
+  public void glEnableVertexAttribArray(int index) {
+    record(Call.glEnableVertexAttribArray);
+  }
+
+  @Override
+  public void glFramebufferRenderbuffer(
+      int target, int attachment, int renderbuffertarget, int renderbuffer) {
+    record(Call.glFramebufferRenderbuffer);
+  }
+
+  @Override
+  public void glFramebufferTexture2D(
+      int target, int attachment, int textarget, int texture, int level) {
+    record(Call.glFramebufferTexture2D);
+  }
+
+  @Override
+  public int glGenBuffer() {
+    record(Call.glGenBuffer);
+    return nextName();
+  }
+
+  @Override
+  public void glGenBuffers(int n, IntBuffer buffers) {
+    record(Call.glGenBuffers);
+    for (int i = 0; i < n; i++) {
+      buffers.put(buffers.position() + i, nextName());
+    }
+  }
+
+  @Override
+  public void glGenerateMipmap(int target) {
+    record(Call.glGenerateMipmap);
+  }
+
+  @Override
+  public int glGenFramebuffer() {
+    record(Call.glGenFramebuffer);
+    return nextName();
+  }
+
+  @Override
+  public void glGenFramebuffers(int n, IntBuffer framebuffers) {
+    record(Call.glGenFramebuffers);
+    for (int i = 0; i < n; i++) {
+      framebuffers.put(framebuffers.position() + i, nextName());
+    }
+  }
+
+  @Override
+  public int glGenRenderbuffer() {
+    record(Call.glGenRenderbuffer);
+    return nextName();
+  }
+
+  @Override
+  public void glGenRenderbuffers(int n, IntBuffer renderbuffers) {
+    record(Call.glGenRenderbuffers);
+    for (int i = 0; i < n; i++) {
+      renderbuffers.put(renderbuffers.position() + i, nextName());
+    }
+  }
+
+  @Override
+  public String glGetActiveAttrib(int program, int index, IntBuffer size, Buffer type) {
+    record(Call.glGetActiveAttrib);
+    return "";
+  }
+
+  @Override
+  public String glGetActiveUniform(int program, int index, IntBuffer size, Buffer type) {
+    record(Call.glGetActiveUniform);
+    return "";
+  }
+
+  @Override
+  public void glGetAttachedShaders(int program, int maxcount, Buffer count, IntBuffer shaders) {
+    record(Call.glGetAttachedShaders);
+  }
+
+  @Override
+  public int glGetAttribLocation(int program, String name) {
+    record(Call.glGetAttribLocation);
+    return getLocation(name);
+  }
+
+  @Override
+  public void glGetBooleanv(int pname, Buffer params) {
+    record(Call.glGetBooleanv);
+  }
+
+  @Override
+  public void glGetBufferParameteriv(int target, int pname, IntBuffer params) {
+    record(Call.glGetBufferParameteriv);
+  }
+
+  @Override
+  public void glGetFloatv(int pname, FloatBuffer params) {
+    record(Call.glGetFloatv);
+  }
+
+  @Override
+  public void glGetFramebufferAttachmentParameteriv(
+      int target, int attachment, int pname, IntBuffer params) {
+    record(Call.glGetFramebufferAttachmentParameteriv);
+  }
+
+  @Override
+  public void glGetProgramiv(int program, int pname, IntBuffer params) {
+    record(Call.glGetProgramiv);
+    // Every program links, and has no active attributes or uniforms to list.
+    params.put(params.position(), pname == GL_LINK_STATUS ? GL_TRUE : 0);
+  }
+
+  @Override
+  public String glGetProgramInfoLog(int program) {
+    record(Call.glGetProgramInfoLog);
+    return "";
+  }
+
+  @Override
+  public void glGetRenderbufferParameteriv(int target, int pname, IntBuffer params) {
+    record(Call.glGetRenderbufferParameteriv);
+  }
+
+  @Override
+  public void glGetShaderiv(int shader, int pname, IntBuffer params) {
+    record(Call.glGetShaderiv);
+    // Every shader compiles.
+    params.put(params.position(), pname == GL_COMPILE_STATUS ? GL_TRUE : 0);
+  }
+
+  @Override
+  public String glGetShaderInfoLog(int shader) {
+    record(Call.glGetShaderInfoLog);
+    return "";
+  }
+
+  @Override
+  public void glGetShaderPrecisionFormat(
+      int shadertype, int precisiontype, IntBuffer range, IntBuffer precision) {
+    record(Call.glGetShaderPrecisionFormat);
+  }
+
+  @Override
+  public void glGetTexParameterfv(int target, int pname, FloatBuffer params) {
+    record(Call.glGetTexParameterfv);
+  }
+
+  @Override
+  public void glGetTexParameteriv(int target, int pname, IntBuffer params) {
+    record(Call.glGetTexParameteriv);
+  }
+
+  @Override
+  public void glGetUniformfv(int program, int location, FloatBuffer params) {
+    record(Call.glGetUniformfv);
+  }
+
+  @Override
+  public void glGetUniformiv(int program, int location, IntBuffer params) {
+    record(Call.glGetUniformiv);
+  }
+
+  @Override
+  public int glGetUniformLocation(int program, String name) {
+    record(Call.glGetUniformLocation);
+    return getLocation(name);
+  }
+
+  @Override
+  public void glGetVertexAttribfv(int index, int pname, FloatBuffer params) {
+    record(Call.glGetVertexAttribfv);
+  }
+
+  @Override
+  public void glGetVertexAttribiv(int index, int pname, IntBuffer params) {
+    record(Call.glGetVertexAttribiv);
+  }
+
+  @Override
+  public void glGetVertexAttribPointerv(int index, int pname, Buffer pointer) {
+    record(Call.glGetVertexAttribPointerv);
+  }
+
+  @Override
+  public boolean glIsBuffer(int buffer) {
+    record(Call.glIsBuffer);
+    return buffer != 0;
+  }
+
+  @Override
+  public boolean glIsEnabled(int cap) {
+    record(Call.glIsEnabled);
+    return enabled.contains(cap);
+  }
+
+  @Override
+  public boolean glIsFramebuffer(int framebuffer) {
+    record(Call.glIsFramebuffer);
+    return framebuffer != 0;
+  }
+
+  @Override
+  public boolean glIsProgram(int program) {
+    record(Call.glIsProgram);
+    return program != 0;
+  }
+
+  @Override
+  public boolean glIsRenderbuffer(int renderbuffer) {
+    record(Call.glIsRenderbuffer);
+    return renderbuffer != 0;
+  }
+
+  @Override
+  public boolean glIsShader(int shader) {
+    record(Call.glIsShader);
+    return shader != 0;
+  }
+
+  @Override
+  public boolean glIsTexture(int texture) {
+    record(Call.glIsTexture);
+    return texture != 0;
+  }
+
+  @Override
+  public void glLinkProgram(int program) {
+    record(Call.glLinkProgram);
+  }
+
+  @Override
+  public void glReleaseShaderCompiler() {
+    record(Call.glReleaseShaderCompiler);
+  }
+
+  @Override
+  public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+    record(Call.glRenderbufferStorage);
+  }
+
+  @Override
+  public void glSampleCoverage(float value, boolean invert) {
+    record(Call.glSampleCoverage);
+  }
+
+  @Override
+  public void glShaderBinary(
+      int n, IntBuffer shaders, int binaryformat, Buffer binary, int length) {
+    record(Call.glShaderBinary);
+  }
+
+  @Override
+  public void glShaderSource(int shader, String string) {
+    record(Call.glShaderSource);
+  }
+
+  @Override
+  public void glStencilFuncSeparate(int face, int func, int ref, int mask) {
+    record(Call.glStencilFuncSeparate);
+  }
+
+  @Override
+  public void glStencilMaskSeparate(int face, int mask) {
+    record(Call.glStencilMaskSeparate);
+  }
+
+  @Override
+  public void glStencilOpSeparate(int face, int fail, int zfail, int zpass) {
+    record(Call.glStencilOpSeparate);
+  }
+
+  @Override
+  public void glTexParameterfv(int target, int pname, FloatBuffer params) {
+    record(Call.glTexParameterfv);
+  }
+
+  @Override
+  public void glTexParameteri(int target, int pname, int param) {
+    record(Call.glTexParameteri);
+  }
+
+  @Override
+  public void glTexParameteriv(int target, int pname, IntBuffer params) {
+    record(Call.glTexParameteriv);
+  }
+
+  @Override
+  public void glUniform1f(int location, float x) {
+    record(Call.glUniform1f);
+  }
+
+  @Override
+  public void glUniform1fv(int location, int count, FloatBuffer v) {
+    record(Call.glUniform1fv);
+  }
+
+  @Override
+  public void glUniform1fv(int location, int count, float v[], int offset) {
+    record(Call.glUniform1fv);
+  }
+
+  @Override
+  public void glUniform1i(int location, int x) {
+    record(Call.glUniform1i);
+  }
+
+  @Override
+  public void glUniform1iv(int location, int count, IntBuffer v) {
+    record(Call.glUniform1iv);
+  }
+
+  @Override
+  public void glUniform1iv(int location, int count, int v[], int offset) {
+    record(Call.glUniform1iv);
+  }
+
+  @Override
+  public void glUniform2f(int location, float x, float y) {
+    record(Call.glUniform2f);
+  }
+
+  @Override
+  public void glUniform2fv(int location, int count, FloatBuffer v) {
+    record(Call.glUniform2fv);
+  }
+
+  @Override
+  public void glUniform2fv(int location, int count, float v[], int offset) {
+    record(Call.glUniform2fv);
+  }
+
+  @Override
+  public void glUniform2i(int location, int x, int y) {
+    record(Call.glUniform2i);
+  }
+
+  @Override
+  public void glUniform2iv(int location, int count, IntBuffer v) {
+    record(Call.glUniform2iv);
+  }
+
+  @Override
+  public void glUniform2iv(int location, int count, int[] v, int offset) {
+    record(Call.glUniform2iv);
+  }
+
+  @Override
+  public void glUniform3f(int location, float x, float y, float z) {
+    record(Call.glUniform3f);
+  }
+
+  @Override
+  public void glUniform3fv(int location, int count, FloatBuffer v) {
+    record(Call.glUniform3fv);
+  }
+
+  @Override
+  public void glUniform3fv(int location, int count, float[] v, int offset) {
+    record(Call.glUniform3fv);
+  }
+
+  @Override
+  public void glUniform3i(int location, int x, int y, int z) {
+    record(Call.glUniform3i);
+  }
+
+  @Override
+  public void glUniform3iv(int location, int count, IntBuffer v) {
+    record(Call.glUniform3iv);
+  }
+
+  @Override
+  public void glUniform3iv(int location, int count, int v[], int offset) {
+    record(Call.glUniform3iv);
+  }
+
+  @Override
+  public void glUniform4f(int location, float x, float y, float z, float w) {
+    record(Call.glUniform4f);
+  }
+
+  @Override
+  public void glUniform4fv(int location, int count, FloatBuffer v) {
+    record(Call.glUniform4fv);
+  }
+
+  @Override
+  public void glUniform4fv(int location, int count, float v[], int offset) {
+    record(Call.glUniform4fv);
+  }
+
+  @Override
+  public void glUniform4i(int location, int x, int y, int z, int w) {
+    record(Call.glUniform4i);
+  }
+
+  @Override
+  public void glUniform4iv(int location, int count, IntBuffer v) {
+    record(Call.glUniform4iv);
+  }
+
+  @Override
+  public void glUniform4iv(int location, int count, int v[], int offset) {
+    record(Call.glUniform4iv);
+  }
+
+  @Override
+  public void glUniformMatrix2fv(int location, int count, boolean transpose, FloatBuffer value) {
+    record(Call.glUniformMatrix2fv);
+  }
+
+  @Override
+  public void glUniformMatrix2fv(
+      int location, int count, boolean transpose, float value[], int offset) {
+    record(Call.glUniformMatrix2fv);
+  }
+
+  @Override
+  public void glUniformMatrix3fv(int location, int count, boolean transpose, FloatBuffer value) {
+    record(Call.glUniformMatrix3fv);
+  }
+
+  @Override
+  public void glUniformMatrix3fv(
+      int location, int count, boolean transpose, float value[], int offset) {
+    record(Call.glUniformMatrix3fv);
+  }
+
+  @Override
+  public void glUniformMatrix4fv(int location, int count, boolean transpose, FloatBuffer value) {
+    record(Call.glUniformMatrix4fv);
+  }
+
+  @Override
+  public void glUniformMatrix4fv(
+      int location, int count, boolean transpose, float value[], int offset) {
+    record(Call.glUniformMatrix4fv);
+  }
+
+  @Override
+  public void glUseProgram(int program) {
+    record(Call.glUseProgram);
+    if (program == currentProgram) {
+      redundant++;
+    }
+    currentProgram = program;
+  }
+
+  @Override
+  public void glValidateProgram(int program) {
+    record(Call.glValidateProgram);
+  }
+
+  @Override
+  public void glVertexAttrib1f(int indx, float x) {
+    record(Call.glVertexAttrib1f);
+  }
+
+  @Override
+  public void glVertexAttrib1fv(int indx, FloatBuffer values) {
+    record(Call.glVertexAttrib1fv);
+  }
+
+  @Override
+  public void glVertexAttrib2f(int indx, float x, float y) {
+    record(Call.glVertexAttrib2f);
+  }
+
+  @Override
+  public void glVertexAttrib2fv(int indx, FloatBuffer values) {
+    record(Call.glVertexAttrib2fv);
+  }
+
+  @Override
+  public void glVertexAttrib3f(int indx, float x, float y, float z) {
+    record(Call.glVertexAttrib3f);
+  }
+
+  @Override
+  public void glVertexAttrib3fv(int indx, FloatBuffer values) {
+    record(Call.glVertexAttrib3fv);
+  }
+
+  @Override
+  public void glVertexAttrib4f(int indx, float x, float y, float z, float w) {
+    record(Call.glVertexAttrib4f);
+  }
+
+  @Override
+  public void glVertexAttrib4fv(int indx, FloatBuffer values) {
+    record(Call.glVertexAttrib4fv);
+  }
+
+  @Override
+  public void glVertexAttribPointer(
+      int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+    record(Call.glVertexAttribPointer);
+  }
+
+  @Override
+  public void glVertexAttribPointer(
+      int indx, int size, int type, boolean normalized, int stride, int ptr) {
+    record(Call.glVertexAttribPointer);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/** Metrics of each frame rendered by the {@link ReplayHarness}, and their distributions. */
+public class FrameStats {
+  /** The metrics recorded for each frame. */
+  public enum Metric {
+    CPU_MICROS("CPU time (us)"),
+    ALLOCATED_BYTES("allocated bytes"),
+    GL_CALLS("GL calls"),
+    DRAW_CALLS("draw calls"),
+    DRAWN_VERTICES("drawn vertices"),
+    STATE_CHANGES("state changes"),
+    REDUNDANT_STATE_CHANGES("redundant state changes"),
+    UNIFORM_UPDATES("uniform updates"),
+    GL_QUERIES("GL queries"),
+    UPLOADED_BYTES("uploaded bytes");
+
+    public final String label;
+
+    Metric(String label) {
+      this.label = label;
+    }
+  }
+
+  private static final Metric[] METRICS = Metric.values();
+
+  private final long[][] values;
+  private int frames;
+
+  /** @param capacity - the number of frames which will be recorded. */
+  public FrameStats(int capacity) {
+    values = new long[METRICS.length][capacity];
+  }
+
+  /** Sets a metric of the current frame. */
+  public void set(Metric metric, long value) {
+    values[metric.ordinal()][frames] = value;
+  }
+
+  /** Moves to the next frame. */
+  public void endFrame() {
+    frames++;
+  }
+
+  public int getFrameCount() {
+    return frames;
+  }
+
+  public long get(Metric metric, int frame) {
+    return values[metric.ordinal()][frame];
+  }
+
+  /** Returns the mean of a metric over the frames. */
+  public double getMean(Metric metric) {
+    long total = 0;
+    for (int i = 0; i < frames; i++) {
+      total += values[metric.ordinal()][i];
+    }
+    return frames > 0 ? (double) total / frames : 0;
+  }
+
+  /**
+   * Returns a percentile of a metric over the frames.
+   *
+   * @param percentile - between 0 and 100.
+   */
+  public long getPercentile(Metric metric, double percentile) {
+    if (frames == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(values[metric.ordinal()], frames);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100 * frames) - 1;
+    return sorted[Math.max(0, Math.min(frames - 1, index))];
+  }
+
+  /** Prints the mean, median, 95th and 99th percentiles and maximum of each metric. */
+  public void printSummary(PrintStream out) {
+    out.printf(Locale.US, "%-26s %12s %10s %10s %10s %10s%n",
+        "per frame", "mean", "p50", "p95", "p99", "max");
+    for (Metric metric : METRICS) {
+      out.printf(Locale.US, "%-26s %12.1f %10d %10d %10d %10d%n", metric.label,
+          getMean(metric), getPercentile(metric, 50), getPercentile(metric, 95),
+          getPercentile(metric, 99), getPercentile(metric, 100));
+    }
+  }
+
+  /** Writes the metrics of each frame as CSV, with a header line. */
+  public void writeCsv(Writer writer) throws IOException {
+    PrintWriter out = new PrintWriter(writer);
+    out.print("frame");
+    for (Metric metric : METRICS) {
+      out.print(',');
+      out.print(metric.name().toLowerCase(Locale.US));
+    }
+    out.println();
+    for (int i = 0; i < frames; i++) {
+      out.print(i);
+      for (Metric metric : METRICS) {
+        out.print(',');
+        out.print(values[metric.ordinal()][i]);
+      }
+      out.println();
+    }
+    out.flush();
+  }
+}
@@ -0,0 +1,359 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import android.view.View;
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.ApplicationLogger;
+import com.badlogic.gdx.Audio;
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Graphics;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.LifecycleListener;
+import com.badlogic.gdx.Net;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationLogger;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.backends.headless.HeadlessNativesLoader;
+import com.badlogic.gdx.backends.headless.HeadlessNet;
+import com.badlogic.gdx.backends.headless.HeadlessPreferences;
+import com.badlogic.gdx.backends.headless.mock.audio.MockAudio;
+import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
+import com.badlogic.gdx.backends.headless.mock.input.MockInput;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Clipboard;
+
+/**
+ * Runs an {@link ARCoreScene} without a device. The application is libGDX's headless backend, with
+ * a {@link CountingGL20} as the GL, and a {@link ScriptedSession} or a {@link
+ * com.github.claywilkinson.arcore.gdx.trace.TracePlayer} as the AR session. The frames are rendered
+ * one at a time by {@link #step()}, on the calling thread.
+ */
+public class HeadlessARHost implements Application, ARCoreHost {
+  /** The taps on the view, which are queued before each frame. */
+  public interface TapSource {
+    /** Returns the next tap of the frame, false if there is none left. */
+    boolean pollTap(TapQueue.Tap tap);
+  }
+
+  private final ApplicationListener listener;
+  private final ARSession session;
+  private final TapSource taps;
+  private final CountingGL20 gl = new CountingGL20();
+  private final Graphics graphics;
+  private final Files files = new HeadlessFiles();
+  private final Input input = new MockInput();
+  private final Audio audio = new MockAudio();
+  private final Net net = new HeadlessNet();
+  private final TapQueue tapQueue = new TapQueue(64);
+  private final TapQueue.Tap tap = new TapQueue.Tap();
+  private final Array<Runnable> runnables = new Array<>();
+  private final Array<Runnable> executedRunnables = new Array<>();
+  private final Array<LifecycleListener> lifecycleListeners = new Array<>();
+  private ApplicationLogger logger = new HeadlessApplicationLogger();
+  private int logLevel = LOG_INFO;
+
+  private final BackgroundRendererHelper backgroundHelper = new BackgroundRendererHelper();
+  private BackgroundRenderer backgroundRenderer;
+  private ARFrame currentFrame;
+
+  /**
+   * @param listener - the scene.
+   * @param session - the AR input.
+   * @param taps - the taps of each frame.
+   * @param width - the width of the view, in pixels.
+   * @param height - the height of the view, in pixels.
+   */
+  public HeadlessARHost(
+      ApplicationListener listener, ARSession session, TapSource taps, int width, int height) {
+    this.listener = listener;
+    this.session = session;
+    this.taps = taps;
+    graphics = new MockGraphics() {
+      @Override
+      public int getWidth() {
+        return width;
+      }
+
+      @Override
+      public int getHeight() {
+        return height;
+      }
+
+      @Override
+      public int getBackBufferWidth() {
+        return width;
+      }
+
+      @Override
+      public int getBackBufferHeight() {
+        return height;
+      }
+
+      // Lets GLProfiler wrap the GL, like the Android backend does.
+      @Override
+      public GL20 getGL20() {
+        return Gdx.gl20;
+      }
+
+      @Override
+      public void setGL20(GL20 gl20) {
+        Gdx.gl = gl20;
+        Gdx.gl20 = gl20;
+      }
+    };
+  }
+
+  /** Returns the GL, which counts the calls of the frames. */
+  public CountingGL20 getGL() {
+    return gl;
+  }
+
+  /** Installs the application in {@link Gdx} and creates the scene. */
+  public void create() {
+    HeadlessNativesLoader.load();
+    Gdx.app = this;
+    Gdx.graphics = graphics;
+    Gdx.files = files;
+    Gdx.input = input;
+    Gdx.audio = audio;
+    Gdx.net = net;
+    Gdx.gl = gl;
+    Gdx.gl20 = gl;
+    backgroundRenderer = new BackgroundRenderer();
+    listener.create();
+    listener.resize(graphics.getWidth(), graphics.getHeight());
+  }
+
+  /**
+   * Renders the next frame of the session.
+   *
+   * @return false if the session has no more frames, nothing is rendered then.
+   */
+  public boolean step() {
+    ((MockGraphics) graphics).updateTime();
+    currentFrame = session.update();
+    if (currentFrame == null) {
+      return false;
+    }
+    while (taps.pollTap(tap)) {
+      tapQueue.offer(tap.x, tap.y, tap.timeNanos);
+    }
+    synchronized (runnables) {
+      executedRunnables.addAll(runnables);
+      runnables.clear();
+    }
+    for (Runnable runnable : executedRunnables) {
+      runnable.run();
+    }
+    executedRunnables.clear();
+    listener.render();
+    currentFrame = null;
+    return true;
+  }
+
+  /** Disposes the scene. */
+  public void dispose() {
+    // In the order of the Android backend.
+    synchronized (lifecycleListeners) {
+      for (LifecycleListener lifecycleListener : lifecycleListeners) {
+        lifecycleListener.pause();
+      }
+    }
+    listener.pause();
+    listener.dispose();
+    backgroundRenderer.dispose();
+    synchronized (lifecycleListeners) {
+      for (LifecycleListener lifecycleListener : lifecycleListeners) {
+        lifecycleListener.dispose();
+      }
+    }
+  }
+
+  @Override
+  public ARFrame getCurrentFrame() {
+    return currentFrame;
+  }
+
+  @Override
+  public ARSession getSession() {
+    return session;
+  }
+
+  @Override
+  public TapQueue getTapQueue() {
+    return tapQueue;
+  }
+
+  @Override
+  public void drawBackground(ARFrame frame) {
+    backgroundRenderer.render(frame, backgroundHelper);
+  }
+
+  @Override
+  public View getView() {
+    return null;
+  }
+
+  @Override
+  public ApplicationListener getApplicationListener() {
+    return listener;
+  }
+
+  @Override
+  public Graphics getGraphics() {
+    return graphics;
+  }
+
+  @Override
+  public Audio getAudio() {
+    return audio;
+  }
+
+  @Override
+  public Input getInput() {
+    return input;
+  }
+
+  @Override
+  public Files getFiles() {
+    return files;
+  }
+
+  @Override
+  public Net getNet() {
+    return net;
+  }
+
+  @Override
+  public void log(String tag, String message) {
+    if (logLevel >= LOG_INFO) {
+      logger.log(tag, message);
+    }
+  }
+
+  @Override
+  public void log(String tag, String message, Throwable exception) {
+    if (logLevel >= LOG_INFO) {
+      logger.log(tag, message, exception);
+    }
+  }
+
+  @Override
+  public void error(String tag, String message) {
+    if (logLevel >= LOG_ERROR) {
+      logger.error(tag, message);
+    }
+  }
+
+  @Override
+  public void error(String tag, String message, Throwable exception) {
+    if (logLevel >= LOG_ERROR) {
+      logger.error(tag, message, exception);
+    }
+  }
+
+  @Override
+  public void debug(String tag, String message) {
+    if (logLevel >= LOG_DEBUG) {
+      logger.debug(tag, message);
+    }
+  }
+
+  @Override
+  public void debug(String tag, String message, Throwable exception) {
+    if (logLevel >= LOG_DEBUG) {
+      logger.debug(tag, message, exception);
+    }
+  }
+
+  @Override
+  public void setLogLevel(int logLevel) {
+    this.logLevel = logLevel;
+  }
+
+  @Override
+  public int getLogLevel() {
+    return logLevel;
+  }
+
+  @Override
+  public void setApplicationLogger(ApplicationLogger applicationLogger) {
+    logger = applicationLogger;
+  }
+
+  @Override
+  public ApplicationLogger getApplicationLogger() {
+    return logger;
+  }
+
+  @Override
+  public ApplicationType getType() {
+    return ApplicationType.HeadlessDesktop;
+  }
+
+  @Override
+  public int getVersion() {
+    return 0;
+  }
+
+  @Override
+  public long getJavaHeap() {
+    return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+  }
+
+  @Override
+  public long getNativeHeap() {
+    return getJavaHeap();
+  }
+
+  @Override
+  public Preferences getPreferences(String name) {
+    return new HeadlessPreferences(name, ".prefs/");
+  }
+
+  @Override
+  public Clipboard getClipboard() {
+    return null;
+  }
+
+  @Override
+  public void postRunnable(Runnable runnable) {
+    synchronized (runnables) {
+      runnables.add(runnable);
+    }
+  }
+
+  @Override
+  public void exit() {}
+
+  @Override
+  public void addLifecycleListener(LifecycleListener listener) {
+    synchronized (lifecycleListeners) {
+      lifecycleListeners.add(listener);
+    }
+  }
+
+  @Override
+  public void removeLifecycleListener(LifecycleListener listener) {
+    synchronized (lifecycleListeners) {
+      lifecycleListeners.removeValue(listener, true);
+    }
+  }
+}
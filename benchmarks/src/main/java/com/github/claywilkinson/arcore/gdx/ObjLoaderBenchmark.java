@@ -0,0 +1,70 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g3d.model.data.ModelData;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and building the model data of OBJ files, on the Andy model and on synthetic grids of
+ * increasing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjLoaderBenchmark {
+  /** "andy" for the Andy model, otherwise the number of triangles of a synthetic grid. */
+  @Param({"andy", "2000", "20000", "200000"})
+  public String model;
+
+  /** The loader options: plain, parallel parsing, or welded and reordered like Andy. */
+  @Param({"plain", "parallel", "optimize"})
+  public String options;
+
+  private FileHandle file;
+
+  @Setup
+  public void setUp() throws IOException {
+    file =
+        model.equals("andy")
+            ? BenchmarkFiles.asset("models/andy.obj")
+            : BenchmarkFiles.writeGridObj(Integer.parseInt(model));
+  }
+
+  @Benchmark
+  public ModelData loadModelData() {
+    ObjLoaderImproved.ObjLoaderParameters parameters = new ObjLoaderImproved.ObjLoaderParameters();
+    parameters.parallel = options.equals("parallel");
+    parameters.optimize = options.equals("optimize");
+    return new ObjLoaderImproved().loadModelData(file, parameters);
+  }
+}
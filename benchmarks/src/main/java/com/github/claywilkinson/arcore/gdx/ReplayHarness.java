@@ -0,0 +1,231 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.github.claywilkinson.arcore.gdx.FrameStats.Metric;
+import com.github.claywilkinson.arcore.gdx.trace.TracePlayer;
+import com.github.claywilkinson.arcore.gdx.trace.TraceRecorder;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders a scene for thousands of frames without a device or a GPU, and reports the CPU time,
+ * allocations, draw calls and state changes of each frame, to catch regressions of the render loop
+ * before they reach a device. The AR input follows a {@link ScriptedSession}, or replays a trace
+ * recorded on a device with {@code ARFragmentApplication.startTraceRecording}, so the runs are
+ * reproducible.
+ *
+ * <p>Run with {@code ./gradlew :benchmarks:replay}, arguments are passed with -Preplay, for example
+ * -Preplay="--frames 5000 --csv frames.csv". The scene loads its assets as internal files, so the
+ * assets directory of the app has to be the working directory, or on the classpath.
+ *
+ * <pre>
+ *   --scene CLASS       the scene, HelloScene by default. It needs a constructor without
+ *                       arguments, or taking an AssetPreloader.
+ *   --frames N          frames measured, 3000 by default.
+ *   --warmup N          frames rendered before, while the JIT compiles the render loop, 300 by
+ *                       default.
+ *   --planes N          planes found by the script, 3 by default.
+ *   --tap-interval N    frames between the taps of the script, 30 by default, 0 for none.
+ *   --trace FILE        replays the trace instead of the script, until its end.
+ *   --record FILE       records the script to a trace.
+ *   --hud               shows the performance overlay, to measure its cost.
+ *   --size WxH          size of the view, 1080x1920 by default.
+ *   --csv FILE          writes the metrics of each frame to the file.
+ *   --spans FILE        writes the spans of the last frames as a Chrome trace, see
+ *                       {@link FrameTracer}.
+ * </pre>
+ */
+public class ReplayHarness {
+  private static final String DEFAULT_SCENE = "com.github.claywilkinson.helloargdx.HelloScene";
+
+  public static void main(String[] args) throws Exception {
+    String sceneName = DEFAULT_SCENE;
+    int frames = 3000;
+    int warmup = 300;
+    int width = 1080;
+    int height = 1920;
+    String csv = null;
+    String spans = null;
+    String trace = null;
+    String record = null;
+    boolean hud = false;
+    ScriptedSession.Script script = new ScriptedSession.Script();
+    for (int i = 0; i < args.length; i++) {
+      String value = i + 1 < args.length ? args[i + 1] : null;
+      switch (args[i]) {
+        case "--scene":
+          sceneName = value;
+          break;
+        case "--frames":
+          frames = Integer.parseInt(value);
+          break;
+        case "--warmup":
+          warmup = Integer.parseInt(value);
+          break;
+        case "--planes":
+          script.planes = Integer.parseInt(value);
+          break;
+        case "--tap-interval":
+          script.tapInterval = Integer.parseInt(value);
+          break;
+        case "--size":
+          String[] size = value.split("x");
+          width = Integer.parseInt(size[0]);
+          height = Integer.parseInt(size[1]);
+          break;
+        case "--csv":
+          csv = value;
+          break;
+        case "--spans":
+          spans = value;
+          break;
+        case "--trace":
+          trace = value;
+          break;
+        case "--record":
+          record = value;
+          break;
+        case "--hud":
+          hud = true;
+          // The only option without a value.
+          i--;
+          break;
+        default:
+          System.err.println("Unknown argument " + args[i] + ", see the ReplayHarness javadoc");
+          System.exit(1);
+      }
+      i++;
+    }
+
+    ARSession session;
+    HeadlessARHost.TapSource taps;
+    TraceRecorder recorder = null;
+    if (trace != null) {
+      TracePlayer player = new TracePlayer(new File(trace));
+      session = player;
+      taps = player::pollTap;
+    } else {
+      ScriptedSession scripted = new ScriptedSession(script, width, height);
+      session = scripted;
+      taps = scripted::pollTap;
+      if (record != null) {
+        session = recorder = new TraceRecorder(scripted, new File(record));
+      }
+    }
+    FrameTracer.setEnabled(spans != null);
+    ARCoreScene scene = createScene(sceneName);
+    scene.setPerformanceHudEnabled(hud);
+    HeadlessARHost host = new HeadlessARHost(scene, session, taps, width, height);
+    host.create();
+    long[] callTotals = new long[CountingGL20.Call.values().length];
+    FrameStats stats = run(host, warmup, frames, callTotals);
+    host.dispose();
+    if (recorder != null) {
+      recorder.close();
+    }
+
+    System.out.printf(Locale.US, "%s, %d frames after %d warmup frames, %dx%d%n",
+        sceneName, stats.getFrameCount(), warmup, width, height);
+    stats.printSummary(System.out);
+    printTopCalls(callTotals, stats.getFrameCount());
+    if (csv != null) {
+      try (Writer writer = new FileWriter(csv)) {
+        stats.writeCsv(writer);
+      }
+    }
+    if (spans != null) {
+      FrameTracer.write(new File(spans));
+    }
+  }
+
+  /**
+   * Renders the frames, and measures the frames after the warmup. This stops early at the end of
+   * the session.
+   *
+   * @param callTotals - receives the number of calls of each GL function in the measured frames,
+   *     indexed by the ordinal of {@link CountingGL20.Call}.
+   * @return the metrics of the measured frames.
+   */
+  public static FrameStats run(HeadlessARHost host, int warmup, int frames, long[] callTotals) {
+    // The allocations are only measured by HotSpot.
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    CountingGL20 gl = host.getGL();
+    CountingGL20.Call[] calls = CountingGL20.Call.values();
+    FrameStats stats = new FrameStats(frames);
+
+    for (int i = 0; i < warmup + frames; i++) {
+      gl.reset();
+      long cpu = threads.getCurrentThreadCpuTime();
+      long allocated = threads.getThreadAllocatedBytes(thread);
+      boolean rendered = host.step();
+      cpu = threads.getCurrentThreadCpuTime() - cpu;
+      allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+      if (!rendered) {
+        break;
+      }
+      if (i < warmup) {
+        continue;
+      }
+      stats.set(Metric.CPU_MICROS, cpu / 1000);
+      stats.set(Metric.ALLOCATED_BYTES, allocated);
+      stats.set(Metric.GL_CALLS, gl.getCount());
+      stats.set(Metric.DRAW_CALLS, gl.getCount(CountingGL20.Kind.DRAW));
+      stats.set(Metric.DRAWN_VERTICES, gl.getDrawnVertices());
+      stats.set(Metric.STATE_CHANGES, gl.getCount(CountingGL20.Kind.STATE));
+      stats.set(Metric.REDUNDANT_STATE_CHANGES, gl.getRedundantStateChanges());
+      stats.set(Metric.UNIFORM_UPDATES, gl.getCount(CountingGL20.Kind.UNIFORM));
+      stats.set(Metric.GL_QUERIES, gl.getCount(CountingGL20.Kind.QUERY));
+      stats.set(Metric.UPLOADED_BYTES, gl.getUploadedBytes());
+      stats.endFrame();
+      for (CountingGL20.Call call : calls) {
+        callTotals[call.ordinal()] += gl.getCount(call);
+      }
+    }
+    return stats;
+  }
+
+  private static void printTopCalls(long[] totals, int frames) {
+    List<CountingGL20.Call> sorted = new ArrayList<>();
+    for (CountingGL20.Call call : CountingGL20.Call.values()) {
+      if (totals[call.ordinal()] > 0) {
+        sorted.add(call);
+      }
+    }
+    sorted.sort((a, b) -> Long.compare(totals[b.ordinal()], totals[a.ordinal()]));
+    System.out.println("most frequent GL calls, per frame");
+    for (CountingGL20.Call call : sorted.subList(0, Math.min(10, sorted.size()))) {
+      System.out.printf(Locale.US, "  %-28s %10.1f%n", call,
+          (double) totals[call.ordinal()] / frames);
+    }
+  }
+
+  private static ARCoreScene createScene(String name) throws ReflectiveOperationException {
+    Class<? extends ARCoreScene> type = Class.forName(name).asSubclass(ARCoreScene.class);
+    try {
+      return type.getConstructor(AssetPreloader.class).newInstance((AssetPreloader) null);
+    } catch (NoSuchMethodException e) {
+      return type.getConstructor().newInstance();
+    }
+  }
+}
@@ -0,0 +1,354 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * AR session following a script, for running scenes without a device. The camera looks around a
+ * room, starts tracking after a second, and finds floor planes which grow for a few seconds. The
+ * user taps the center of the screen at a regular interval, see {@link #pollTap(TapQueue.Tap)}.
+ */
+public class ScriptedSession implements ARSession {
+  // Frames per second of the camera.
+  private static final int FRAME_RATE = 30;
+  // Frames between the updates of the plane polygons, as ARCore does a few times per second.
+  private static final int POLYGON_UPDATE_INTERVAL = 10;
+  // Frames a plane grows for after it is found.
+  private static final int PLANE_GROWTH_FRAMES = 300;
+
+  /** Settings of the script. */
+  public static class Script {
+    /** The number of planes found. */
+    public int planes = 3;
+    /** Frame at which tracking starts, and the first plane is found. */
+    public int trackingStartFrame = FRAME_RATE;
+    /** Frames between the planes being found. */
+    public int planeInterval = 2 * FRAME_RATE;
+    /** Frames between the taps, 0 for none. */
+    public int tapInterval = FRAME_RATE;
+    /** Seed of the shapes of the planes. */
+    public long seed = 1;
+  }
+
+  private final Script script;
+  private final int width;
+  private final int height;
+  private final Random random;
+
+  private final ScriptedFrame frame = new ScriptedFrame();
+  private final List<ScriptedPlane> planes = new ArrayList<>();
+  private final List<ARPlane> allPlanes = new ArrayList<>();
+  private final List<ARPlane> updatedPlanes = new ArrayList<>();
+  private final List<ARAnchor> anchors = new ArrayList<>();
+  private final List<ARAnchor> updatedAnchors = new ArrayList<>();
+  private final Collection<ARPlane> allPlanesView = Collections.unmodifiableList(allPlanes);
+  private final Collection<ARPlane> updatedPlanesView = Collections.unmodifiableList(updatedPlanes);
+  private final Collection<ARAnchor> anchorsView = Collections.unmodifiableList(anchors);
+  private final Collection<ARAnchor> updatedAnchorsView =
+      Collections.unmodifiableList(updatedAnchors);
+
+  private int frameIndex = -1;
+  private boolean tracking;
+  private boolean tapPending;
+  private final Matrix4 view = new Matrix4();
+  private final Matrix4 projection = new Matrix4();
+  private final Vector3 position = new Vector3();
+  private final Vector3 target = new Vector3();
+
+  /**
+   * @param script - the settings of the script.
+   * @param width - the width of the view, in pixels.
+   * @param height - the height of the view, in pixels.
+   */
+  public ScriptedSession(Script script, int width, int height) {
+    this.script = script;
+    this.width = width;
+    this.height = height;
+    random = new Random(script.seed);
+  }
+
+  /** Returns the number of frames returned by {@link #update()}. */
+  public int getFrameCount() {
+    return frameIndex + 1;
+  }
+
+  /** Advances the script by a frame. */
+  @Override
+  public ARFrame update() {
+    frameIndex++;
+    tracking = frameIndex >= script.trackingStartFrame;
+    tapPending = script.tapInterval > 0
+        && frameIndex % script.tapInterval == script.tapInterval - 1;
+
+    // Look around slowly, from the height of a phone held in front of the user.
+    float time = (float) frameIndex / FRAME_RATE;
+    position.set(0.3f * (float) Math.sin(time * 0.5f), 1.4f, 0.2f * (float) Math.cos(time * 0.3f));
+    target.set(1.5f * (float) Math.sin(time * 0.2f), 0, -1.5f);
+    view.setToLookAt(position, target, Vector3.Y);
+
+    updatedPlanes.clear();
+    // Like ARCore, the anchors created during the frame are updated in the next one.
+    updatedAnchors.clear();
+    if (tracking) {
+      updatedAnchors.addAll(anchors);
+      int trackedFrames = frameIndex - script.trackingStartFrame;
+      if (planes.size() < script.planes && trackedFrames == planes.size() * script.planeInterval) {
+        ScriptedPlane plane = new ScriptedPlane(planes.size());
+        planes.add(plane);
+        allPlanes.add(plane);
+      }
+      for (ScriptedPlane plane : planes) {
+        if (plane.update(frameIndex)) {
+          updatedPlanes.add(plane);
+        }
+      }
+    }
+    return frame;
+  }
+
+  /**
+   * Returns the tap of the current frame, once, if the user taps in it.
+   *
+   * @param tap - receives the tap in the center of the view.
+   * @return false if there is no tap left in the frame.
+   */
+  public boolean pollTap(TapQueue.Tap tap) {
+    if (!tapPending) {
+      return false;
+    }
+    tapPending = false;
+    tap.x = width / 2f;
+    tap.y = height / 2f;
+    tap.timeNanos = frame.getTimestamp();
+    return true;
+  }
+
+  @Override
+  public Collection<ARPlane> getAllPlanes() {
+    return allPlanesView;
+  }
+
+  @Override
+  public Collection<ARAnchor> getAllAnchors() {
+    return anchorsView;
+  }
+
+  @Override
+  public ARAnchor createAnchor(Pose pose) {
+    ScriptedAnchor anchor = new ScriptedAnchor(pose);
+    anchors.add(anchor);
+    return anchor;
+  }
+
+  /** The current frame, the same object is reused by every update. */
+  private class ScriptedFrame implements ARFrame {
+    @Override
+    public long getTimestamp() {
+      return frameIndex * 1000_000_000L / FRAME_RATE;
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return tracking ? TrackingState.TRACKING : TrackingState.PAUSED;
+    }
+
+    @Override
+    public void getProjectionMatrix(float[] dest, int offset, float near, float far) {
+      projection.setToProjection(near, far, 60, (float) width / height);
+      System.arraycopy(projection.val, 0, dest, offset, 16);
+    }
+
+    @Override
+    public void getViewMatrix(float[] dest, int offset) {
+      System.arraycopy(view.val, 0, dest, offset, 16);
+    }
+
+    @Override
+    public boolean hasDisplayGeometryChanged() {
+      return frameIndex == 0;
+    }
+
+    @Override
+    public void transformDisplayUvCoords(FloatBuffer uvCoords, FloatBuffer outUvCoords) {
+      for (int i = 0; i < uvCoords.limit(); i++) {
+        outUvCoords.put(i, uvCoords.get(i));
+      }
+    }
+
+    @Override
+    public List<ARHitResult> hitTest(float x, float y) {
+      List<ARHitResult> hits = new ArrayList<>();
+      if (!tracking || planes.isEmpty()) {
+        return hits;
+      }
+      // The planes are in front of the user, so hit the one closest to where the camera looks.
+      ScriptedPlane closest = planes.get(0);
+      for (ScriptedPlane plane : planes) {
+        if (plane.center.dst2(target) < closest.center.dst2(target)) {
+          closest = plane;
+        }
+      }
+      Pose pose = Pose.makeTranslation(closest.center.x + 0.1f * (random.nextFloat() - 0.5f),
+          closest.center.y, closest.center.z + 0.1f * (random.nextFloat() - 0.5f));
+      hits.add(new ARHitResult(closest, pose, position.dst(closest.center)));
+      return hits;
+    }
+
+    @Override
+    public Collection<ARPlane> getUpdatedPlanes() {
+      return updatedPlanesView;
+    }
+
+    @Override
+    public Collection<ARAnchor> getUpdatedAnchors() {
+      return updatedAnchorsView;
+    }
+  }
+
+  /** A floor plane, with a polygon which grows after it is found. */
+  private class ScriptedPlane implements ARPlane {
+    final Vector3 center = new Vector3();
+    final Pose pose;
+    final int vertices;
+    final float[] radii;
+    // The frame the plane was found in.
+    int firstFrame = -1;
+    float radius;
+    FloatBuffer polygon;
+
+    ScriptedPlane(int index) {
+      // Spread the planes in front of the user.
+      center.set((index - 1) * 1.2f, 0, -1.5f - 0.5f * (index % 2));
+      pose = Pose.makeTranslation(center.x, center.y, center.z);
+      vertices = 8 + random.nextInt(17);
+      radii = new float[vertices];
+      for (int i = 0; i < vertices; i++) {
+        radii[i] = 0.8f + 0.4f * random.nextFloat();
+      }
+    }
+
+    /** Returns true if the polygon changed. */
+    boolean update(int frameIndex) {
+      if (firstFrame < 0) {
+        firstFrame = frameIndex;
+      }
+      int age = frameIndex - firstFrame;
+      if (age > PLANE_GROWTH_FRAMES || age % POLYGON_UPDATE_INTERVAL != 0) {
+        return false;
+      }
+      radius = 0.2f + 0.8f * age / PLANE_GROWTH_FRAMES;
+      // ARCore returns a new buffer when the polygon changes.
+      polygon = ByteBuffer.allocateDirect(vertices * 2 * 4)
+          .order(ByteOrder.nativeOrder())
+          .asFloatBuffer();
+      for (int i = 0; i < vertices; i++) {
+        double angle = -2 * Math.PI * i / vertices;
+        polygon.put(i * 2, (float) (radius * radii[i] * Math.cos(angle)));
+        polygon.put(i * 2 + 1, (float) (radius * radii[i] * Math.sin(angle)));
+      }
+      return true;
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return tracking ? TrackingState.TRACKING : TrackingState.PAUSED;
+    }
+
+    @Override
+    public Plane.Type getType() {
+      return Plane.Type.HORIZONTAL_UPWARD_FACING;
+    }
+
+    @Override
+    public Pose getCenterPose() {
+      return pose;
+    }
+
+    @Override
+    public float getExtentX() {
+      return 2 * radius;
+    }
+
+    @Override
+    public float getExtentZ() {
+      return 2 * radius;
+    }
+
+    @Override
+    public FloatBuffer getPolygon() {
+      return polygon;
+    }
+
+    @Override
+    public ARPlane getSubsumedBy() {
+      return null;
+    }
+
+    @Override
+    public boolean isPoseInPolygon(Pose pose) {
+      // The plane is not rotated, so the polygon is around the center in world space.
+      float x = pose.tx() - center.x;
+      float z = pose.tz() - center.z;
+      boolean inside = false;
+      for (int i = 0, j = vertices - 1; i < vertices; j = i++) {
+        float xi = polygon.get(i * 2);
+        float zi = polygon.get(i * 2 + 1);
+        float xj = polygon.get(j * 2);
+        float zj = polygon.get(j * 2 + 1);
+        if ((zi > z) != (zj > z) && x < xi + (z - zi) * (xj - xi) / (zj - zi)) {
+          inside = !inside;
+        }
+      }
+      return inside;
+    }
+  }
+
+  private class ScriptedAnchor implements ARAnchor {
+    final Pose pose;
+
+    ScriptedAnchor(Pose pose) {
+      this.pose = pose;
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+      return anchors.contains(this) ? TrackingState.TRACKING : TrackingState.STOPPED;
+    }
+
+    @Override
+    public Pose getPose() {
+      return pose;
+    }
+
+    @Override
+    public void detach() {
+      anchors.remove(this);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.arcore.gdx.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Completing futures and dispatching their callbacks. The callbacks run on the completing thread,
+ * so this measures the future itself rather than a handler's message queue.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AcceptableFutureBenchmark {
+  private final Integer value = 42;
+
+  /** Completing a future nobody is waiting on. */
+  @Benchmark
+  public boolean complete() {
+    return new AcceptableFuture<Integer>(AcceptableFuture.DIRECT).complete(value);
+  }
+
+  /** Adding a callback before completion, then completing. */
+  @Benchmark
+  public AcceptableFuture<Integer> callbackThenComplete() {
+    AcceptableFuture<Integer> future = new AcceptableFuture<>(AcceptableFuture.DIRECT);
+    AcceptableFuture<Integer> next = future.thenApply(v -> v + 1);
+    future.complete(value);
+    return next;
+  }
+
+  /** Adding a callback to a completed future, which runs it right away. */
+  @Benchmark
+  public AcceptableFuture<Integer> completeThenCallback() {
+    AcceptableFuture<Integer> future = new AcceptableFuture<>(AcceptableFuture.DIRECT);
+    future.complete(value);
+    return future.thenApply(v -> v + 1);
+  }
+
+  /** A chain of four stages, completed at its head. */
+  @Benchmark
+  public AcceptableFuture<Void> chain() {
+    AcceptableFuture<Integer> future = new AcceptableFuture<>(AcceptableFuture.DIRECT);
+    AcceptableFuture<Void> end =
+        future
+            .thenApply(v -> v + 1)
+            .thenCompose(v -> {
+              AcceptableFuture<Integer> inner = new AcceptableFuture<>(AcceptableFuture.DIRECT);
+              inner.complete(v * 2);
+              return inner;
+            })
+            .exceptionally(t -> 0)
+            .thenAccept(v -> {});
+    future.complete(value);
+    return end;
+  }
+
+  /** Waiting on eight futures. */
+  @Benchmark
+  public AcceptableFuture<Void> allOf() {
+    AcceptableFuture<?>[] futures = new AcceptableFuture<?>[8];
+    for (int i = 0; i < futures.length; i++) {
+      futures[i] = new AcceptableFuture<Integer>(AcceptableFuture.DIRECT);
+    }
+    AcceptableFuture<Void> all = AcceptableFuture.allOf(AcceptableFuture.DIRECT, futures);
+    for (AcceptableFuture<?> future : futures) {
+      ((AcceptableFuture<Integer>) future).complete(value);
+    }
+    return all;
+  }
+}
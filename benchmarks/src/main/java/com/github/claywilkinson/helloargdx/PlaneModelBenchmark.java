@@ -0,0 +1,68 @@
+/*
+Copyright 2018 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.github.claywilkinson.helloargdx;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Triangulating the polygon of a detected plane, on synthetic polygons. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlaneModelBenchmark {
+  /** The number of vertices of the polygon, ARCore planes usually have a few dozen. */
+  @Param({"8", "32", "128"})
+  public int vertices;
+
+  private FloatBuffer polygon;
+
+  @Setup
+  public void setUp() {
+    // A roughly circular polygon, 1 to 2 meters across, in a direct buffer like ARCore's.
+    polygon = ByteBuffer.allocateDirect(vertices * 2 * 4).order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+    for (int i = 0; i < vertices; i++) {
+      double angle = 2 * Math.PI * i / vertices;
+      double radius = 0.75 + 0.25 * Math.sin(angle * 3);
+      polygon.put((float) (radius * Math.cos(angle)));
+      polygon.put((float) (radius * Math.sin(angle)));
+    }
+    polygon.flip();
+  }
+
+  @Benchmark
+  public void triangulate(Blackhole blackhole) {
+    blackhole.consume(PlaneModel.buildVertices(polygon, 2f, 2f));
+    blackhole.consume(PlaneModel.buildIndices(vertices));
+  }
+}